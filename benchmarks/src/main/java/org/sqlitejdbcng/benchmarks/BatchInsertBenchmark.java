@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting rows with executeBatch() in a transaction, with and without
+ * the multi-row insert rewrite.  The scores are per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchInsertBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({ "false", "true" })
+    public boolean rewriteBatchedInserts;
+
+    private File file;
+    private Connection conn;
+    private PreparedStatement ps;
+    private long nextId;
+
+    @Setup
+    public void setup() throws Exception {
+        Properties info = new Properties();
+
+        info.setProperty("rewrite_batched_inserts", Boolean.toString(this.rewriteBatchedInserts));
+        info.setProperty("journal_mode", "WAL");
+        info.setProperty("synchronous", "NORMAL");
+        this.file = Databases.createFile();
+        this.conn = Databases.open(this.file, info);
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT, value REAL)");
+        }
+        this.ps = this.conn.prepareStatement("INSERT INTO test VALUES (?, ?, ?)");
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM test");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.ps.close();
+        this.conn.close();
+        Databases.delete(this.file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insert() throws Exception {
+        this.conn.setAutoCommit(false);
+        for (int lpc = 0; lpc < BATCH_SIZE; lpc++) {
+            this.nextId += 1;
+            this.ps.setLong(1, this.nextId);
+            this.ps.setString(2, "row");
+            this.ps.setDouble(3, lpc);
+            this.ps.addBatch();
+        }
+
+        int[] retval = this.ps.executeBatch();
+
+        this.conn.commit();
+        this.conn.setAutoCommit(true);
+
+        return retval;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding a single parameter and running the statement.  Values are only
+ * passed to SQLite when the statement is executed, so each operation
+ * includes one step of a trivial query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindBenchmark {
+    @Param({ "16", "4096" })
+    public int size;
+
+    private File file;
+    private Connection conn;
+    private PreparedStatement ps;
+    private String text;
+    private byte[] blob;
+    private long counter;
+
+    @Setup
+    public void setup() throws Exception {
+        char[] chars = new char[this.size];
+
+        Arrays.fill(chars, 'x');
+        this.text = new String(chars);
+        this.blob = new byte[this.size];
+        this.file = Databases.createFile();
+        this.conn = Databases.open(this.file);
+        this.ps = this.conn.prepareStatement("SELECT length(?)");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.ps.close();
+        this.conn.close();
+        Databases.delete(this.file);
+    }
+
+    private int run() throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Benchmark
+    public int bindInt() throws Exception {
+        this.counter += 1;
+        this.ps.setInt(1, (int) this.counter);
+        return this.run();
+    }
+
+    @Benchmark
+    public int bindLong() throws Exception {
+        this.counter += 1;
+        this.ps.setLong(1, this.counter);
+        return this.run();
+    }
+
+    @Benchmark
+    public int bindDouble() throws Exception {
+        this.counter += 1;
+        this.ps.setDouble(1, this.counter);
+        return this.run();
+    }
+
+    @Benchmark
+    public int bindString() throws Exception {
+        this.ps.setString(1, this.text);
+        return this.run();
+    }
+
+    @Benchmark
+    public int bindBytes() throws Exception {
+        this.ps.setBytes(1, this.blob);
+        return this.run();
+    }
+}
@@ -24,51 +24,44 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-package org.sqlitejdbcng.internal;
+package org.sqlitejdbcng.benchmarks;
 
-import org.bridj.Pointer;
-import org.sqlitejdbcng.SqliteConnection;
-import org.sqlitejdbcng.SqliteConnectionProgressCallback;
+import org.sqlitejdbcng.SqliteDriver;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Properties;
 
-public class TimeoutProgressCallback extends SqliteConnectionProgressCallback {
-    private long expirationTime;
+/**
+ * Helpers for creating the scratch databases used by the benchmarks.
+ */
+final class Databases {
+    static final SqliteDriver DRIVER = new SqliteDriver();
 
-    public TimeoutProgressCallback(SqliteConnection conn) {
-        super(conn);
+    private Databases() {
     }
 
-    public TimeoutProgressCallback setExpiration(long expirationTime) throws SQLException {
-        TimeoutProgressCallback retval = null;
+    static File createFile() throws IOException {
+        File retval = File.createTempFile("sqlitejdbcng-bench", ".db");
 
-        if (expirationTime == 0) {
-            this.expirationTime = expirationTime;
-        }
-        else {
-            this.expirationTime = System.currentTimeMillis() + expirationTime;
-            this.conn.pushCallback(this);
-            retval = this;
-        }
+        retval.deleteOnExit();
 
         return retval;
     }
 
-    @Override
-    public int apply(Pointer<Void> context) {
-        if (other != null && other.apply(context) != 0)
-            return 1;
-        if (System.currentTimeMillis() > this.expirationTime)
-            return 1;
+    static Connection open(File file, Properties info) throws SQLException {
+        return DRIVER.connect("jdbc:sqlite:" + file.getAbsolutePath(), info);
+    }
 
-        return 0;
+    static Connection open(File file) throws SQLException {
+        return open(file, new Properties());
     }
 
-    @Override
-    public void close() throws SQLException {
-        if (this.expirationTime != 0) {
-            this.conn.popCallback();
-            this.expirationTime = 0;
+    static void delete(File file) {
+        for (String suffix : new String[] { "", "-journal", "-wal", "-shm" }) {
+            new File(file.getPath() + suffix).delete();
         }
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the text dates, times and timestamps that SQLite stores into
+ * java.sql values.  The scores are per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBenchmark {
+    private static final int ROWS = 1000;
+
+    private File file;
+    private Connection conn;
+    private PreparedStatement ps;
+
+    @Setup
+    public void setup() throws Exception {
+        this.file = Databases.createFile();
+        this.conn = Databases.open(this.file);
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE test (d DATE, t TIME, ts DATETIME)");
+            stmt.executeUpdate("WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " +
+                    ROWS + ") INSERT INTO test SELECT date('2000-01-01', '+' || n || ' days'), " +
+                    "time('00:00:00', '+' || n || ' seconds'), " +
+                    "strftime('%Y-%m-%d %H:%M:%f', '2000-01-01', '+' || n || ' minutes') FROM seq");
+        }
+        this.ps = this.conn.prepareStatement("SELECT d, t, ts FROM test");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.ps.close();
+        this.conn.close();
+        Databases.delete(this.file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getDate(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getDate(1));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getTime(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getTime(2));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getTimestamp(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getTimestamp(3));
+            }
+        }
+    }
+}
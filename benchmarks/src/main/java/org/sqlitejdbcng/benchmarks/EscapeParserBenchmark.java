@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.sqlitejdbcng.internal.EscapeHandler;
+import org.sqlitejdbcng.internal.EscapeParser;
+import org.sqlitejdbcng.internal.FunctionEscapeHandler;
+import org.sqlitejdbcng.internal.PassthruEscapeHandler;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC escape processing, both the parser on its own and through
+ * Connection.nativeSQL(), which caches the results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeParserBenchmark {
+    private static final String PLAIN_SQL = "SELECT id, name FROM test WHERE id > ? AND name LIKE ? ORDER BY id";
+    private static final String ESCAPED_SQL = "SELECT {fn ucase(name)}, {fn length(name)} FROM test " +
+            "WHERE born > {d '2001-01-01'} AND name LIKE 'a\\_%' {escape '\\'} {limit 10}";
+
+    private final Map<String, EscapeHandler> handlerMap = new HashMap<>();
+    private Connection conn;
+
+    @Setup
+    public void setup() throws Exception {
+        EscapeHandler passThruPair = new PassthruEscapeHandler(true);
+        EscapeHandler passThruArg = new PassthruEscapeHandler(false);
+
+        this.handlerMap.put("limit", passThruPair);
+        this.handlerMap.put("escape", passThruPair);
+        this.handlerMap.put("fn", new FunctionEscapeHandler());
+        this.handlerMap.put("d", passThruArg);
+        this.handlerMap.put("t", passThruArg);
+        this.handlerMap.put("ts", passThruArg);
+        this.handlerMap.put("oj", passThruArg);
+        this.conn = Databases.DRIVER.connect("jdbc:sqlite::memory:", new Properties());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.conn.close();
+    }
+
+    @Benchmark
+    public String transformPlain() throws Exception {
+        return EscapeParser.transform(PLAIN_SQL, this.handlerMap);
+    }
+
+    @Benchmark
+    public String transformEscaped() throws Exception {
+        return EscapeParser.transform(ESCAPED_SQL, this.handlerMap);
+    }
+
+    @Benchmark
+    public String nativeSqlPlain() throws Exception {
+        return this.conn.nativeSQL(PLAIN_SQL);
+    }
+
+    @Benchmark
+    public String nativeSqlEscaped() throws Exception {
+        return this.conn.nativeSQL(ESCAPED_SQL);
+    }
+}
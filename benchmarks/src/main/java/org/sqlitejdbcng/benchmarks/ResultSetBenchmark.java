@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a large result set.  The scores are per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark {
+    private static final int ROWS = 10000;
+
+    private File file;
+    private Connection conn;
+    private PreparedStatement ps;
+
+    @Setup
+    public void setup() throws Exception {
+        this.file = Databases.createFile();
+        this.conn = Databases.open(this.file);
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT, data BLOB)");
+            stmt.executeUpdate("WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " +
+                    ROWS + ") INSERT INTO test SELECT n, 'name-' || n, randomblob(64) FROM seq");
+        }
+        this.ps = this.conn.prepareStatement("SELECT id, name, data FROM test");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.ps.close();
+        this.conn.close();
+        Databases.delete(this.file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void next(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getInt(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getInt(1));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getString(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getString(2));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getStringByLabel(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getString("name"));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getBytes(Blackhole bh) throws Exception {
+        try (ResultSet rs = this.ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getBytes(3));
+            }
+        }
+    }
+}
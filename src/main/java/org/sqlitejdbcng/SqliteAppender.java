@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.sqlitejdbcng.internal.ParameterSlots;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.Types;
+
+/**
+ * Bulk loader for appending rows to a table.
+ *
+ * The values for a row are given one column at a time with the append
+ * methods, in the order of the columns passed to
+ * SqliteConnection.appender(), and the row is finished with endRow().
+ * Rows are staged in primitive arrays and written out in multi-row INSERT
+ * statements, so there is no boxing or per-row JDBC overhead.
+ *
+ * If the connection is in auto-commit mode, the appender opens a
+ * transaction and commits it every commitInterval rows and when it is
+ * closed.  If writing the rows fails, the rows appended since the last
+ * commit are rolled back.  Otherwise, the rows become part of the
+ * application's transaction.
+ *
+ * <pre>
+ * try (SqliteAppender app = conn.appender("points", "x", "y", "label")) {
+ *     for (Point p : points) {
+ *         app.appendDouble(p.x).appendDouble(p.y).appendText(p.label).endRow();
+ *     }
+ * }
+ * </pre>
+ */
+public class SqliteAppender implements AutoCloseable {
+    public static final int DEFAULT_COMMIT_INTERVAL = 100000;
+    /** The number of rows buffered before they are written to the database. */
+    static final int FLUSH_ROWS = 4096;
+
+    private final SqliteConnection conn;
+    private final SqlitePreparedStatement stmt;
+    private final ParameterSlots row;
+    private final int width;
+    private int column;
+    private int bufferedRows;
+    private int uncommittedRows;
+    private long rowCount;
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private boolean ownTransaction;
+    private boolean closed;
+
+    SqliteAppender(SqliteConnection conn, SqlitePreparedStatement stmt) {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.width = stmt.getParameterCount();
+        this.row = new ParameterSlots(this.width);
+        this.stmt.setAlwaysRewrite(true);
+    }
+
+    /**
+     * Set the number of rows to insert between commits when the appender is
+     * managing the transaction.
+     */
+    public void setCommitInterval(int rows) throws SQLException {
+        if (rows < 1)
+            throw new SQLNonTransientException("Commit interval must be greater than zero");
+
+        this.commitInterval = rows;
+    }
+
+    public int getCommitInterval() {
+        return this.commitInterval;
+    }
+
+    /**
+     * @return The number of complete rows appended so far.
+     */
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    private int nextColumn() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Appender is closed");
+        if (this.column >= this.width)
+            throw new SQLNonTransientException("Too many values for a row of " + this.width + " columns");
+
+        return this.column++;
+    }
+
+    public SqliteAppender appendNull() throws SQLException {
+        this.row.setNull(this.nextColumn());
+
+        return this;
+    }
+
+    public SqliteAppender appendInt(int value) throws SQLException {
+        this.row.setLong(this.nextColumn(), Types.INTEGER, value);
+
+        return this;
+    }
+
+    public SqliteAppender appendLong(long value) throws SQLException {
+        this.row.setLong(this.nextColumn(), Types.BIGINT, value);
+
+        return this;
+    }
+
+    public SqliteAppender appendDouble(double value) throws SQLException {
+        this.row.setDouble(this.nextColumn(), value);
+
+        return this;
+    }
+
+    public SqliteAppender appendText(String value) throws SQLException {
+        if (value == null)
+            return this.appendNull();
+
+        this.row.setObject(this.nextColumn(), Types.VARCHAR, value);
+
+        return this;
+    }
+
+    public SqliteAppender appendBlob(byte[] value) throws SQLException {
+        if (value == null)
+            return this.appendNull();
+
+        this.row.setObject(this.nextColumn(), Types.VARBINARY, value);
+
+        return this;
+    }
+
+    /**
+     * Finish the current row.  Every column must have been given a value.
+     */
+    public void endRow() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Appender is closed");
+        if (this.column != this.width) {
+            throw new SQLNonTransientException("Row has " + this.column + " values, expected " + this.width);
+        }
+
+        this.stmt.addBatch(this.row);
+        this.column = 0;
+        this.bufferedRows += 1;
+        this.rowCount += 1;
+        if (this.bufferedRows >= FLUSH_ROWS)
+            this.flush();
+    }
+
+    /**
+     * Write the buffered rows to the database.  The rows are only committed
+     * once the commit interval has been reached or the appender is closed.
+     */
+    public void flush() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Appender is closed");
+        if (this.bufferedRows == 0)
+            return;
+
+        if (this.conn.getAutoCommit()) {
+            this.conn.executeCanned("BEGIN");
+            this.ownTransaction = true;
+        }
+
+        try {
+            this.stmt.executeBatch();
+        }
+        catch (SQLException e) {
+            this.bufferedRows = 0;
+            if (this.ownTransaction) {
+                this.ownTransaction = false;
+                this.uncommittedRows = 0;
+                if (!this.conn.getAutoCommit())
+                    this.conn.executeCanned("ROLLBACK");
+            }
+            throw e;
+        }
+
+        this.uncommittedRows += this.bufferedRows;
+        this.bufferedRows = 0;
+        if (this.ownTransaction && this.uncommittedRows >= this.commitInterval)
+            this.commit();
+    }
+
+    private void commit() throws SQLException {
+        this.ownTransaction = false;
+        this.uncommittedRows = 0;
+        this.conn.executeCanned("COMMIT");
+    }
+
+    /**
+     * Write out any buffered rows and commit the appender's transaction.
+     * A partially appended row is discarded.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (this.closed)
+            return;
+
+        try {
+            this.flush();
+            if (this.ownTransaction)
+                this.commit();
+        }
+        finally {
+            this.closed = true;
+            this.stmt.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An exponential backoff schedule for waiting on a locked database.  The
+ * delay starts at the initial delay, doubles on every attempt up to the
+ * maximum delay and then has a random portion, given by the jitter
+ * fraction, removed so that competing writers do not wake up in lockstep.
+ * Waiting stops after the maximum wait time or when the query timeout of
+ * the statement that is executing expires, whichever comes first.
+ *
+ * @see SqliteConnection#setBusyPolicy(SqliteBusyPolicy)
+ * @see SqliteConnection#setRetryPolicy(org.sqlitejdbcng.bridj.Sqlite3.ExtendedReturnCodes, SqliteBusyPolicy)
+ */
+public class SqliteBusyPolicy {
+    public static final SqliteBusyPolicy DEFAULT = new SqliteBusyPolicy(1, 100, 5000, 0.5);
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxWaitMillis;
+    private final double jitter;
+
+    public SqliteBusyPolicy(long initialDelayMillis, long maxDelayMillis, long maxWaitMillis, double jitter) {
+        if (initialDelayMillis < 1)
+            throw new IllegalArgumentException("Initial delay must be at least one millisecond");
+        if (maxDelayMillis < initialDelayMillis)
+            throw new IllegalArgumentException("Maximum delay must not be less than the initial delay");
+        if (maxWaitMillis < 0)
+            throw new IllegalArgumentException("Maximum wait must not be negative");
+        if (jitter < 0.0 || jitter > 1.0)
+            throw new IllegalArgumentException("Jitter must be between zero and one");
+
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.jitter = jitter;
+    }
+
+    public long getInitialDelayMillis() {
+        return this.initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return this.maxDelayMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return this.maxWaitMillis;
+    }
+
+    public double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * @param attempt The number of previous attempts, starting at zero.
+     * @return The number of milliseconds to sleep before the next attempt.
+     */
+    public long getDelay(int attempt) {
+        long retval = this.maxDelayMillis;
+
+        if (attempt < 62 && (this.initialDelayMillis << attempt) >> attempt == this.initialDelayMillis)
+            retval = Math.min(this.initialDelayMillis << attempt, this.maxDelayMillis);
+        if (this.jitter > 0.0)
+            retval -= (long) (retval * this.jitter * ThreadLocalRandom.current().nextDouble());
+
+        return Math.max(retval, 1);
+    }
+
+    /**
+     * Compute how long to sleep before the next attempt.
+     *
+     * @param attempt The number of previous attempts.
+     * @param startTime The time, in milliseconds, of the first attempt.
+     * @param deadline The time the query timeout expires or zero if there
+     *   is no query timeout.
+     * @return The number of milliseconds to sleep or -1 if it is time to
+     *   give up.
+     */
+    long getDelay(int attempt, long startTime, long deadline) {
+        long now = System.currentTimeMillis();
+        long end = startTime + this.maxWaitMillis;
+
+        if (deadline != 0)
+            end = Math.min(end, deadline);
+        if (now >= end)
+            return -1;
+
+        return Math.min(this.getDelay(attempt), end - now);
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteBusyPolicy{initialDelay=" + this.initialDelayMillis +
+                ", maxDelay=" + this.maxDelayMillis +
+                ", maxWait=" + this.maxWaitMillis +
+                ", jitter=" + this.jitter + "}";
+    }
+}
@@ -30,9 +30,14 @@ import org.bridj.Pointer;
 import org.sqlitejdbcng.bridj.Sqlite3;
 import org.sqlitejdbcng.internal.*;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -84,6 +89,19 @@ public class SqliteConnection extends SqliteCommon implements Connection {
         HANDLER_MAP.put("oj", passThruArg);
     }
 
+    private static final int ESCAPE_CACHE_SIZE = 256;
+
+    /*
+     * The escape handlers do not depend on the connection, so the results
+     * of escape processing can be shared by all connections.
+     */
+    private static final Map<String, String> ESCAPE_CACHE = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return this.size() > ESCAPE_CACHE_SIZE;
+        }
+    };
+
     private final String url;
     private final Pointer<Sqlite3.Sqlite3Db> db;
     private final Properties properties;
@@ -94,17 +112,34 @@ public class SqliteConnection extends SqliteCommon implements Connection {
     private boolean halfClosed;
     private int savepointId;
     private int progressStep = 100;
-    private SqliteConnectionProgressCallback callback;
+    private boolean rewriteBatchedInserts;
+    private final Object progressLock = new Object();
+    private volatile SqliteConnectionProgressCallback[] progressCallbacks = new SqliteConnectionProgressCallback[0];
+    private volatile int registeredStep;
+    private ProgressDispatcher progressDispatcher;
+    private Pointer<Sqlite3.ProgressCallbackBase> progressDispatcherPtr;
+    private QueryTimeout queryTimeout;
+    private BusyHandler busyHandler;
+    private final Map<Integer, SqliteBusyPolicy> retryPolicies = new HashMap<>();
+    private int busyTimeout;
+    private Semaphore writerLock;
+    private SqliteConnectionStats stats;
+    private final StatementStats statementStats = new StatementStats();
+    private final ColumnTypeCache columnTypes;
+    private final Map<String, SqliteDatabaseMetadata.Schema> schemaCache = new HashMap<>();
+    private boolean statsRegistered;
+    private boolean writerLockHeld;
+    private final StatementCache statementCache = new StatementCache(StatementCache.DEFAULT_CAPACITY);
+    private final Pointer<Pointer<Sqlite3.Statement>> stmtOut = Pointer.allocatePointer(Sqlite3.Statement.class);
 
     public SqliteConnection(String url, Properties properties) throws SQLException {
         Pointer<Pointer<Sqlite3.Sqlite3Db>> db_out = Pointer.allocatePointer(Sqlite3.Sqlite3Db.class);
         SqliteUrl sqliteUrl = new SqliteUrl(url);
+        Map<String, String> settings = SqliteProperty.validate(sqliteUrl.merge(properties));
         int rc = Sqlite3.sqlite3_open_v2(
                 Pointer.pointerToCString(sqliteUrl.getPath()),
                 db_out,
-                Sqlite3.OpenFlag.SQLITE_OPEN_READWRITE.intValue() |
-                        Sqlite3.OpenFlag.SQLITE_OPEN_CREATE.intValue() |
-                        Sqlite3.OpenFlag.SQLITE_OPEN_URI.intValue(),
+                SqliteProperty.getOpenFlags(settings),
                 null);
 
         try {
@@ -116,9 +151,19 @@ public class SqliteConnection extends SqliteCommon implements Connection {
         this.url = url;
         this.db = Sqlite3.withDbReleaser(db_out.get());
         this.properties = properties;
+        this.columnTypes = new ColumnTypeCache(this.db);
 
         Sqlite3.checkOk(rc);
 
+        Sqlite3.sqlite3_extended_result_codes(this.db, 1);
+        try {
+            SqliteProperty.applyAll(this, settings);
+        }
+        catch (SQLException e) {
+            this.close();
+            throw e;
+        }
+
         /*
          * Do an initial query to make sure the database is valid.  If there
          * is something wrong with it, it will throw a SQLITE_NOTADB error.
@@ -166,12 +211,92 @@ public class SqliteConnection extends SqliteCommon implements Connection {
         requireOpened();
 
         try (Statement stmt = this.createStatement()) {
+            stmt.setPoolable(true);
             stmt.executeUpdate(sql);
         }
     }
 
+    /**
+     * Execute a PRAGMA, or other statement, and discard any rows it returns.
+     */
+    void executePragma(String sql) throws SQLException {
+        requireOpened();
+
+        Pointer<Sqlite3.Statement> stmt = this.prepare(sql);
+
+        try {
+            int rc;
+
+            do {
+                rc = Sqlite3.sqlite3_step(stmt);
+            } while (rc == Sqlite3.ReturnCodes.SQLITE_ROW.value());
+            if (rc != Sqlite3.ReturnCodes.SQLITE_DONE.value())
+                Sqlite3.checkOk(rc, this.db);
+        }
+        finally {
+            this.releaseStatement(sql, stmt, false);
+        }
+    }
+
+    /**
+     * Execute a PRAGMA that reports its result as a single value, like
+     * "PRAGMA journal_mode = WAL".
+     *
+     * @return The first column of the first row or null if there were no
+     *   rows.
+     */
+    String queryPragma(String sql) throws SQLException {
+        requireOpened();
+
+        Pointer<Sqlite3.Statement> stmt = this.prepare(sql);
+
+        try {
+            String retval = null;
+            int rc = Sqlite3.sqlite3_step(stmt);
+
+            if (rc == Sqlite3.ReturnCodes.SQLITE_ROW.value()) {
+                Pointer<Byte> text = Sqlite3.sqlite3_column_text(stmt, 0);
+
+                if (text != null)
+                    retval = text.getCString();
+                do {
+                    rc = Sqlite3.sqlite3_step(stmt);
+                } while (rc == Sqlite3.ReturnCodes.SQLITE_ROW.value());
+            }
+            if (rc != Sqlite3.ReturnCodes.SQLITE_DONE.value())
+                Sqlite3.checkOk(rc, this.db);
+
+            return retval;
+        }
+        finally {
+            this.releaseStatement(sql, stmt, false);
+        }
+    }
+
+    /**
+     * @param step The default number of virtual machine instructions
+     *   between calls to a progress callback that does not ask for its own.
+     */
     public void setProgressStep(int step) {
-        this.progressStep = step;
+        synchronized (this.progressLock) {
+            this.progressStep = step;
+            this.updateProgressHandler();
+        }
+    }
+
+    /**
+     * Enable rewriting the batches of simple "INSERT ... VALUES (?, ...)"
+     * prepared statements into multi-row inserts.  This is much faster for
+     * large batches, but the update counts are only exact when every row
+     * in a chunk is inserted.  It can also be enabled with the
+     * "rewrite_batched_inserts" connection property.
+     */
+    public void setRewriteBatchedInserts(boolean rewriteBatchedInserts) {
+        this.rewriteBatchedInserts = rewriteBatchedInserts;
+    }
+
+    public boolean getRewriteBatchedInserts() {
+        return this.rewriteBatchedInserts;
     }
 
     public void pushCallback(SqliteConnectionProgressCallback callback) throws SQLException {
@@ -180,33 +305,666 @@ public class SqliteConnection extends SqliteCommon implements Connection {
         if (callback == null)
             throw new SQLNonTransientException("Callback cannot be null");
 
-        callback.setOther(this.callback);
-        this.callback = callback;
-        Sqlite3.sqlite3_progress_handler(
-                this.db,
-                this.progressStep,
-                Pointer.pointerTo((Sqlite3.ProgressCallbackBase) this.callback),
-                null);
+        synchronized (this.progressLock) {
+            SqliteConnectionProgressCallback[] callbacks = Arrays.copyOf(
+                    this.progressCallbacks, this.progressCallbacks.length + 1);
+
+            callbacks[callbacks.length - 1] = callback;
+            this.progressCallbacks = callbacks;
+            this.updateProgressHandler();
+        }
     }
 
     public void popCallback() throws SQLException {
         requireOpened();
 
-        if (this.callback == null)
-            throw new SQLNonTransientException("Callback stack is empty");
+        synchronized (this.progressLock) {
+            if (this.progressCallbacks.length == 0)
+                throw new SQLNonTransientException("Callback stack is empty");
 
-        this.callback = this.callback.getOther();
-        Sqlite3.sqlite3_progress_handler(
-                this.db,
-                this.progressStep,
-                Pointer.pointerTo((Sqlite3.ProgressCallbackBase) this.callback),
-                null);
+            this.progressCallbacks = Arrays.copyOf(this.progressCallbacks, this.progressCallbacks.length - 1);
+            this.updateProgressHandler();
+        }
+    }
+
+    /**
+     * Remove a callback regardless of where it is in the stack.
+     *
+     * @return True if the callback was found.
+     */
+    public boolean removeCallback(SqliteConnectionProgressCallback callback) throws SQLException {
+        requireOpened();
+
+        synchronized (this.progressLock) {
+            List<SqliteConnectionProgressCallback> callbacks = new ArrayList<>(Arrays.asList(this.progressCallbacks));
+
+            if (!callbacks.remove(callback))
+                return false;
+
+            this.progressCallbacks = callbacks.toArray(new SqliteConnectionProgressCallback[callbacks.size()]);
+            this.updateProgressHandler();
+
+            return true;
+        }
+    }
+
+    /**
+     * @return The number of instructions between calls to the native
+     *   progress handler or zero if it is not registered.
+     */
+    int getRegisteredProgressStep() {
+        return this.registeredStep;
+    }
+
+    /**
+     * Register the dispatcher at the smallest step any of the callbacks
+     * needs, or unregister it if there are none.  The handler is only
+     * touched when the step changes.
+     */
+    private void updateProgressHandler() {
+        int step = 0;
+
+        for (SqliteConnectionProgressCallback callback : this.progressCallbacks) {
+            int callbackStep = callback.getProgressStep();
+
+            if (callbackStep <= 0)
+                callbackStep = this.progressStep;
+            callback.effectiveStep = callbackStep;
+            callback.elapsed = 0;
+            if (callbackStep > 0 && (step == 0 || callbackStep < step))
+                step = callbackStep;
+        }
+
+        if (step == this.registeredStep || this.closer.isClosed())
+            return;
+
+        if (step == 0) {
+            Sqlite3.sqlite3_progress_handler(this.db, 0, null, null);
+        }
+        else {
+            if (this.progressDispatcher == null) {
+                this.progressDispatcher = new ProgressDispatcher(this);
+                this.progressDispatcherPtr = Pointer.pointerTo((Sqlite3.ProgressCallbackBase) this.progressDispatcher);
+            }
+            Sqlite3.sqlite3_progress_handler(this.db, step, this.progressDispatcherPtr, null);
+        }
+        this.registeredStep = step;
+    }
+
+    /**
+     * Track a query timeout that is running, so the busy handler and the
+     * writer lock can give up waiting when it expires.
+     */
+    public void pushTimeout(QueryTimeout timeout) {
+        timeout.setOther(this.queryTimeout);
+        this.queryTimeout = timeout;
+    }
+
+    public void popTimeout(QueryTimeout timeout) {
+        if (this.queryTimeout == timeout) {
+            this.queryTimeout = timeout.getOther();
+        }
+        else {
+            for (QueryTimeout curr = this.queryTimeout; curr != null; curr = curr.getOther()) {
+                if (curr.getOther() == timeout) {
+                    curr.setOther(timeout.getOther());
+                    break;
+                }
+            }
+        }
+        timeout.setOther(null);
+    }
+
+    /**
+     * Wait for locks held by other connections using the given backoff
+     * policy instead of failing immediately with SQLITE_BUSY.  This
+     * replaces any handler installed by the "busy_timeout" property.
+     *
+     * @param policy The policy to use or null to fail immediately.
+     */
+    public synchronized void setBusyPolicy(SqliteBusyPolicy policy) throws SQLException {
+        requireOpened();
+
+        if (policy == null) {
+            Sqlite3.checkOk(Sqlite3.sqlite3_busy_handler(this.db, null, null), this.db);
+            this.busyHandler = null;
+        }
+        else {
+            BusyHandler handler = new BusyHandler(this, policy);
+
+            Sqlite3.checkOk(Sqlite3.sqlite3_busy_handler(
+                    this.db, Pointer.pointerTo((Sqlite3.BusyHandlerBase) handler), null), this.db);
+            /* Keep a reference so the callback is not collected while installed. */
+            this.busyHandler = handler;
+        }
+    }
+
+    public synchronized SqliteBusyPolicy getBusyPolicy() {
+        return this.busyHandler == null ? null : this.busyHandler.policy;
+    }
+
+    /**
+     * Retry statements that fail with the given result code, after a reset,
+     * using the given backoff policy.  This covers the conditions that
+     * SQLite does not call the busy handler for, like
+     * SQLITE_LOCKED_SHAREDCACHE, and statements that exhausted the busy
+     * handler.  Statements are only retried in auto-commit mode, since a
+     * failed statement in a transaction may require the whole transaction
+     * to be restarted.
+     *
+     * @param resultCode An extended result code or a primary code that
+     *   applies to all of its extended codes that do not have a policy.
+     * @param policy The policy to use or null to remove the policy.
+     */
+    public void setRetryPolicy(int resultCode, SqliteBusyPolicy policy) {
+        synchronized (this.retryPolicies) {
+            if (policy == null)
+                this.retryPolicies.remove(resultCode);
+            else
+                this.retryPolicies.put(resultCode, policy);
+        }
+    }
+
+    public void setRetryPolicy(Sqlite3.ExtendedReturnCodes resultCode, SqliteBusyPolicy policy) {
+        this.setRetryPolicy(resultCode.value(), policy);
+    }
+
+    private SqliteBusyPolicy getRetryPolicy(int resultCode) {
+        synchronized (this.retryPolicies) {
+            if (this.retryPolicies.isEmpty())
+                return null;
+
+            SqliteBusyPolicy retval = this.retryPolicies.get(resultCode);
+
+            if (retval == null)
+                retval = this.retryPolicies.get(resultCode & 0xff);
+
+            return retval;
+        }
+    }
+
+    /**
+     * @return The time, in milliseconds, when the query timeout of the
+     *   statement that is currently executing expires or zero if there is
+     *   no timeout.
+     */
+    long getQueryDeadline() {
+        long retval = 0;
+
+        for (QueryTimeout timeout = this.queryTimeout; timeout != null; timeout = timeout.getOther()) {
+            long expiration = timeout.getExpirationTime();
+
+            if (expiration != 0 && (retval == 0 || expiration < retval))
+                retval = expiration;
+        }
+
+        return retval;
+    }
+
+    /**
+     * Step a statement that has not returned any rows yet, retrying it
+     * according to the retry policies.  A lock that could not be acquired
+     * before the query timeout expired is reported as a timeout.
+     */
+    int step(Pointer<Sqlite3.Statement> stmt) throws SQLException {
+        this.beginWrite(stmt);
+        try {
+            return this.stepWithRetry(stmt);
+        }
+        finally {
+            this.endWrite();
+        }
+    }
+
+    private int stepWithRetry(Pointer<Sqlite3.Statement> stmt) throws SQLException {
+        int rc = Sqlite3.sqlite3_step(stmt);
+
+        NativeCallCounter.record();
+        if (rc == Sqlite3.ReturnCodes.SQLITE_ROW.value() || rc == Sqlite3.ReturnCodes.SQLITE_DONE.value())
+            return rc;
+
+        long startTime = System.currentTimeMillis();
+
+        for (int attempt = 0; ; attempt++) {
+            SqliteBusyPolicy policy = this.getRetryPolicy(rc);
+
+            if (policy == null || Sqlite3.sqlite3_get_autocommit(this.db) == 0)
+                break;
+
+            long delay = policy.getDelay(attempt, startTime, this.getQueryDeadline());
+
+            if (delay < 0)
+                break;
+
+            Sqlite3.sqlite3_reset(stmt);
+
+            DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.BUSY_WAIT);
+
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            finally {
+                if (event != null) {
+                    event.setSql(Sqlite3.sqlite3_sql(stmt).getCString());
+                    event.setRows(attempt + 1);
+                    event.commit();
+                }
+            }
+            rc = Sqlite3.sqlite3_step(stmt);
+            NativeCallCounter.record();
+            if (rc == Sqlite3.ReturnCodes.SQLITE_ROW.value() || rc == Sqlite3.ReturnCodes.SQLITE_DONE.value())
+                return rc;
+        }
+
+        if ((rc & 0xff) == Sqlite3.ReturnCodes.SQLITE_BUSY.value()) {
+            long deadline = this.getQueryDeadline();
+
+            if (deadline != 0 && System.currentTimeMillis() >= deadline)
+                throw new SQLTimeoutException("Query timeout reached while waiting for a lock");
+        }
+
+        return rc;
+    }
+
+    void setBusyTimeout(int milliseconds) throws SQLException {
+        Sqlite3.checkOk(Sqlite3.sqlite3_busy_timeout(this.db, milliseconds), this.db);
+        this.busyTimeout = milliseconds;
+    }
+
+    /**
+     * Coordinate write transactions with the other connections in this JVM
+     * that have enabled the writer lock for the same file.  In-memory and
+     * temporary databases are not shared, so they do not need it.
+     */
+    void enableWriterLock() throws SQLException {
+        Pointer<Byte> filename = Sqlite3.sqlite3_db_filename(this.db, Pointer.pointerToCString("main"));
+
+        if (filename == null || filename.getCString().isEmpty())
+            return;
+
+        try {
+            this.writerLock = WriterLocks.forPath(new File(filename.getCString()).getCanonicalPath());
+        }
+        catch (IOException e) {
+            throw new SQLNonTransientConnectionException("Unable to resolve database path", e);
+        }
+    }
+
+    /**
+     * @return True if this connection is holding the in-JVM writer lock.
+     */
+    synchronized boolean holdsWriterLock() {
+        return this.writerLockHeld;
+    }
+
+    /**
+     * Take the writer lock, if it is enabled, before running a statement
+     * that starts or continues a write transaction.  The lock is held until
+     * the connection goes back to auto-commit mode.  The wait is bounded by
+     * the query timeout or, failing that, the busy timeout.
+     */
+    void beginWrite(Pointer<Sqlite3.Statement> stmt) throws SQLException {
+        if (this.writerLock == null || this.holdsWriterLock() || !isWrite(stmt))
+            return;
+
+        long queryDeadline = this.getQueryDeadline();
+        long deadline = queryDeadline;
+
+        if (deadline == 0 && this.busyTimeout > 0)
+            deadline = System.currentTimeMillis() + this.busyTimeout;
+
+        DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.BUSY_WAIT);
+
+        try {
+            /*
+             * Without a timeout SQLite would fail right away with
+             * SQLITE_BUSY, so don't wait at all.
+             */
+            boolean acquired = deadline == 0 ?
+                    this.writerLock.tryAcquire() :
+                    this.writerLock.tryAcquire(Math.max(deadline - System.currentTimeMillis(), 0),
+                            TimeUnit.MILLISECONDS);
+
+            if (!acquired) {
+                if (deadline == 0)
+                    throw new SQLTransientException("The writer lock is held by another connection", "",
+                            (int) Sqlite3.ReturnCodes.SQLITE_BUSY.value());
+                if (queryDeadline != 0)
+                    throw new SQLTimeoutException("Query timeout reached while waiting for the writer lock");
+                throw new SQLTransientException("Timed out waiting for the writer lock", "",
+                        (int) Sqlite3.ReturnCodes.SQLITE_BUSY.value());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while waiting for the writer lock", e);
+        }
+        finally {
+            if (event != null) {
+                event.setSql(Sqlite3.sqlite3_sql(stmt).getCString());
+                event.commit();
+            }
+        }
+        synchronized (this) {
+            this.writerLockHeld = true;
+        }
+    }
+
+    /**
+     * Release the writer lock if the write transaction is over.
+     */
+    synchronized void endWrite() {
+        if (this.writerLockHeld && (this.closer.isClosed() || Sqlite3.sqlite3_get_autocommit(this.db) != 0)) {
+            this.writerLockHeld = false;
+            this.writerLock.release();
+        }
+    }
+
+    private static boolean isWrite(Pointer<Sqlite3.Statement> stmt) {
+        if (Sqlite3.stmt_readonly(stmt) != 1)
+            return true;
+
+        /*
+         * Transaction control statements are always read-only, but an
+         * immediate or exclusive BEGIN takes the write lock right away.
+         */
+        Pointer<Byte> sql = Sqlite3.sqlite3_sql(stmt);
+
+        if (sql == null)
+            return false;
+
+        String upper = sql.getCString().trim().toUpperCase();
+
+        return upper.startsWith("BEGIN") && (upper.contains("IMMEDIATE") || upper.contains("EXCLUSIVE"));
+    }
+
+    /**
+     * Copy the main database of this connection to a file with the online
+     * backup API.  The file is created if it does not exist and replaced
+     * if it does.
+     *
+     * @see #backupTo(SqliteConnection, int, long, SqliteBackupListener)
+     */
+    public boolean backupTo(String path, int pagesPerStep, long pauseMillis, SqliteBackupListener listener)
+            throws SQLException {
+        try (SqliteConnection dest = new SqliteConnection(SqliteUrl.PREFIX + path, null)) {
+            return this.backupTo(dest, pagesPerStep, pauseMillis, listener);
+        }
+    }
+
+    /**
+     * Copy the main database of this connection into the main database of
+     * another connection, which can be an in-memory database.  The copy is
+     * done a few pages at a time and the source is only locked while a step
+     * is running, so writers can make progress in between steps.  If the
+     * source is changed by another connection in the middle of the backup,
+     * SQLite restarts the copy.
+     *
+     * @param dest The connection to copy into, it must not be in the middle
+     *   of a transaction.
+     * @param pagesPerStep The number of pages to copy in each step or a
+     *   negative number to copy everything in a single step.
+     * @param pauseMillis The time to sleep between steps.
+     * @param listener Notified after each step, can be null.
+     * @return True if the backup completed, false if it was cancelled by
+     *   the listener.
+     */
+    public boolean backupTo(SqliteConnection dest, int pagesPerStep, long pauseMillis, SqliteBackupListener listener)
+            throws SQLException {
+        return runBackup(dest, this, pagesPerStep, pauseMillis, listener);
+    }
+
+    /**
+     * Replace the main database of this connection with a copy of the given
+     * file, e.g. to load a database into memory.  The file is opened
+     * read-only and has to exist.
+     *
+     * @see #backupTo(SqliteConnection, int, long, SqliteBackupListener)
+     */
+    public boolean restoreFrom(String path, int pagesPerStep, long pauseMillis, SqliteBackupListener listener)
+            throws SQLException {
+        File file = new File(path).getAbsoluteFile();
+
+        if (!file.isFile())
+            throw new SQLNonTransientException("Database file does not exist -- " + path);
+
+        /* A URI so a file that goes missing in the meantime is not created empty. */
+        String url = SqliteUrl.PREFIX + file.toURI() + "?mode=ro";
+
+        try (SqliteConnection source = new SqliteConnection(url, null)) {
+            return runBackup(this, source, pagesPerStep, pauseMillis, listener);
+        }
+    }
+
+    private static boolean runBackup(SqliteConnection dest,
+                                     SqliteConnection source,
+                                     int pagesPerStep,
+                                     long pauseMillis,
+                                     SqliteBackupListener listener) throws SQLException {
+        source.requireOpened();
+        dest.requireOpened();
+        dest.requireNoTransaction();
+
+        Pointer<Byte> main = Pointer.pointerToCString("main");
+        Pointer<Sqlite3.Backup> backup = Sqlite3.sqlite3_backup_init(dest.db, main, source.db, main);
+        boolean completed = false;
+
+        if (backup == null)
+            Sqlite3.checkOk(Sqlite3.sqlite3_extended_errcode(dest.db), dest.db);
+
+        try {
+            while (true) {
+                int rc = Sqlite3.sqlite3_backup_step(backup, pagesPerStep);
+
+                if (rc == Sqlite3.ReturnCodes.SQLITE_DONE.value()) {
+                    completed = true;
+                    if (listener != null)
+                        listener.progress(0, Sqlite3.sqlite3_backup_pagecount(backup));
+                    break;
+                }
+
+                switch (Sqlite3.ReturnCodes.valueOf(rc)) {
+                    case SQLITE_OK:
+                    case SQLITE_BUSY:
+                    case SQLITE_LOCKED:
+                        /* Locked by a writer, try again after the pause. */
+                        break;
+                    default:
+                        Sqlite3.checkOk(rc);
+                        break;
+                }
+
+                if (listener != null && !listener.progress(
+                        Sqlite3.sqlite3_backup_remaining(backup),
+                        Sqlite3.sqlite3_backup_pagecount(backup))) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    try {
+                        Thread.sleep(pauseMillis);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLTransientException("Backup was interrupted", e);
+                    }
+                }
+            }
+        }
+        finally {
+            int rc = Sqlite3.sqlite3_backup_finish(backup);
+
+            if (completed)
+                Sqlite3.checkOk(rc, dest.db);
+        }
+
+        return completed;
+    }
+
+    /**
+     * @return The memory and page cache statistics for this connection.  If
+     *   the connection has no mutex, they must only be read by the thread
+     *   that is using the connection.
+     */
+    public synchronized SqliteConnectionStats getStats() {
+        if (this.stats == null)
+            this.stats = new SqliteConnectionStats(this);
+
+        return this.stats;
+    }
+
+    /**
+     * Register the statistics MBean for this connection, it is
+     * unregistered when the connection is closed.  A connection without a
+     * mutex cannot be read from a JMX thread while its owner is using it.
+     */
+    synchronized void registerStats() throws SQLException {
+        if (!this.isMutexEnabled()) {
+            throw new SQLNonTransientConnectionException(
+                    "The jmx property cannot be used with a connection that has no mutex");
+        }
+        try {
+            this.getStats().register();
+            this.statsRegistered = true;
+        }
+        catch (JMException e) {
+            throw new SQLNonTransientException("Unable to register statistics MBean", e);
+        }
+    }
+
+    /**
+     * @return The per-statement counters that are collected when the
+     *   "statement_stats" property is set, and the slow statement thresholds.
+     */
+    public StatementStats getStatementStats() {
+        return this.statementStats;
+    }
+
+    /**
+     * @return The cache of parsed declared types used by result set metadata.
+     */
+    public ColumnTypeCache getColumnTypeCache() {
+        return this.columnTypes;
+    }
+
+    /**
+     * @return The schemas read by DatabaseMetaData, keyed by catalog.
+     */
+    Map<String, SqliteDatabaseMetadata.Schema> getSchemaCache() {
+        return this.schemaCache;
+    }
+
+    public StatementCache getStatementCache() {
+        return this.statementCache;
+    }
+
+    public void setStatementCacheSize(int size) {
+        this.statementCache.setCapacity(size);
+    }
+
+    /**
+     * Get a prepared statement handle for the given SQL, either from the
+     * statement cache or by preparing a new one.  The SQL should have
+     * already gone through escape processing.
+     */
+    Pointer<Sqlite3.Statement> prepare(String sql) throws SQLException {
+        Pointer<Sqlite3.Statement> retval = this.statementCache.take(sql);
+
+        if (retval == null) {
+            DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.PREPARE, sql);
+
+            synchronized (this.stmtOut) {
+                try {
+                    Sqlite3.checkOk(Sqlite3.sqlite3_prepare_v2(this.db,
+                            Pointer.pointerToCString(sql), -1, this.stmtOut, Pointer.NULL),
+                            this.db);
+                    NativeCallCounter.record();
+                    retval = this.stmtOut.get();
+                }
+                finally {
+                    if (event != null)
+                        event.commit();
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * Prepare the first statement in a NUL-terminated UTF-8 buffer.  The
+     * handle is not cached and must be finalized by the caller.
+     *
+     * @param tailOut Receives a pointer to the text after the statement.
+     * @return The statement handle or null if the text only contained
+     *   whitespace or comments.
+     */
+    Pointer<Sqlite3.Statement> prepare(Pointer<Byte> sql, Pointer<Pointer<Byte>> tailOut) throws SQLException {
+        DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.PREPARE);
+
+        synchronized (this.stmtOut) {
+            try {
+                Sqlite3.checkOk(Sqlite3.sqlite3_prepare_v2(this.db, sql, -1, this.stmtOut, tailOut), this.db);
+                NativeCallCounter.record();
+
+                return this.stmtOut.get();
+            }
+            finally {
+                if (event != null) {
+                    Pointer<Sqlite3.Statement> stmt = this.stmtOut.get();
+
+                    if (stmt != null)
+                        event.setSql(Sqlite3.sqlite3_sql(stmt).getCString());
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hand a statement handle that was obtained from prepare() back to the
+     * connection.  Poolable handles are reset and kept in the statement
+     * cache, everything else is finalized.
+     */
+    void releaseStatement(String sql, Pointer<Sqlite3.Statement> stmt, boolean poolable) {
+        if (stmt == null)
+            return;
+
+        this.statementStats.record(stmt);
+
+        if (poolable && sql != null && !this.halfClosed && !this.closer.isClosed()) {
+            /*
+             * A failed step leaves its error code to be returned by the
+             * reset, but that error has already been reported to the user,
+             * so it is ignored here.
+             */
+            Sqlite3.sqlite3_reset(stmt);
+            Sqlite3.sqlite3_clear_bindings(stmt);
+            if (this.statementCache.offer(sql, stmt))
+                return;
+        }
+
+        Sqlite3.sqlite3_finalize(stmt);
     }
 
     public String getURL() {
         return this.url;
     }
 
+    /**
+     * @return False if the connection was opened without a mutex, using
+     *   the "threading_mode=MULTITHREAD" property, and must be confined to
+     *   one thread at a time.
+     */
+    public boolean isMutexEnabled() throws SQLException {
+        requireOpened();
+
+        return Sqlite3.sqlite3_db_mutex(this.db) != null;
+    }
+
     public Pointer<Sqlite3.Sqlite3Db> getHandle() {
         return this.db;
     }
@@ -238,6 +996,76 @@ public class SqliteConnection extends SqliteCommon implements Connection {
                 ResultSet.CLOSE_CURSORS_AT_COMMIT));
     }
 
+    /**
+     * Create an appender for bulk loading rows into a table.
+     *
+     * @param table The name of the table, it is quoted as a single identifier.
+     * @param columns The columns the appended values go into, in order.  If
+     *   none are given, all of the columns in the table are used, except
+     *   for hidden and generated ones.
+     */
+    public SqliteAppender appender(String table, String... columns) throws SQLException {
+        requireOpened();
+
+        if (columns.length == 0)
+            columns = this.getInsertableColumns(table);
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        int width = columns.length;
+
+        sql.append(quoteIdentifier(table));
+        sql.append(" (");
+        for (int lpc = 0; lpc < columns.length; lpc++) {
+            if (lpc > 0)
+                sql.append(", ");
+            sql.append(quoteIdentifier(columns[lpc]));
+        }
+        sql.append(")");
+        sql.append(" VALUES (");
+        for (int lpc = 0; lpc < width; lpc++) {
+            sql.append(lpc > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
+
+        String sqlStr = sql.toString();
+        SqlitePreparedStatement stmt = new SqlitePreparedStatement(this, this.prepare(sqlStr), sqlStr, sqlStr);
+
+        this.trackStatement(stmt);
+
+        return new SqliteAppender(this, stmt);
+    }
+
+    /** The first release with PRAGMA table_xinfo. */
+    private static final int TABLE_XINFO_VERSION = 3026000;
+
+    /**
+     * @return The columns of a table that can be given a value, hidden and
+     *   generated columns are left out.
+     */
+    private String[] getInsertableColumns(String table) throws SQLException {
+        boolean xinfo = Sqlite3.sqlite3_libversion_number() >= TABLE_XINFO_VERSION;
+        List<String> retval = new ArrayList<>();
+
+        try (Statement stmt = this.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf("PRAGMA %s(%Q)",
+                    xinfo ? "table_xinfo" : "table_info", table))) {
+                while (rs.next()) {
+                    if (xinfo && rs.getInt("hidden") != 0)
+                        continue;
+                    retval.add(rs.getString("name"));
+                }
+            }
+        }
+        if (retval.isEmpty())
+            throw new SQLNonTransientException("No such table: " + table);
+
+        return retval.toArray(new String[retval.size()]);
+    }
+
+    private static String quoteIdentifier(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
     @Override
     public CallableStatement prepareCall(String s) throws SQLException {
         throw new SQLFeatureNotSupportedException("SQLite does not support stored procedures");
@@ -245,7 +1073,20 @@ public class SqliteConnection extends SqliteCommon implements Connection {
 
     @Override
     public String nativeSQL(String s) throws SQLException {
-        String retval = transform(s, HANDLER_MAP);
+        if (!EscapeParser.mayContainEscapes(s))
+            return s;
+
+        String retval;
+
+        synchronized (ESCAPE_CACHE) {
+            retval = ESCAPE_CACHE.get(s);
+        }
+        if (retval == null) {
+            retval = transform(s, HANDLER_MAP);
+            synchronized (ESCAPE_CACHE) {
+                ESCAPE_CACHE.put(s, retval);
+            }
+        }
 
         return retval;
     }
@@ -273,44 +1114,74 @@ public class SqliteConnection extends SqliteCommon implements Connection {
 
     @Override
     public void commit() throws SQLException {
-        this.executeCanned("COMMIT");
-        this.setAutoCommit(false);
+        this.endTransaction("COMMIT");
     }
 
     @Override
     public void rollback() throws SQLException {
-        this.executeCanned("ROLLBACK");
+        this.endTransaction("ROLLBACK");
+    }
+
+    private void endTransaction(String sql) throws SQLException {
+        DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.TRANSACTION, sql);
+
+        try {
+            this.executeCanned(sql);
+        }
+        finally {
+            if (event != null)
+                event.commit();
+        }
         this.setAutoCommit(false);
     }
 
     @Override
     public synchronized void close() throws SQLException {
         if (!this.closer.isClosed()) {
-            synchronized (this.statements) {
-                /*
-                 * JDBC Spec 9.4.4.1: All Statement objects created from a given
-                 * Connection object will be closed when the close method for
-                 * the Connection object is called.
-                 */
-
-                while (!this.statements.isEmpty()) {
-                    WeakRefWithEquals<Statement> stmtRef = this.statements.remove(this.statements.size() - 1);
-                    Statement stmt = stmtRef.get();
-
-                    if (stmt == null)
-                        continue;
-
-                    if (!stmt.isClosed()) {
-                        LOGGER.log(Level.WARNING,
-                                "Statement was not explicitly closed -- {0}",
-                                new Object[] { stmt.toString() });
-                        stmt.close();
-                    }
+            /*
+             * JDBC Spec 9.4.4.1: All Statement objects created from a given
+             * Connection object will be closed when the close method for
+             * the Connection object is called.
+             */
+            this.closeStatements();
+
+            if (this.statsRegistered) {
+                try {
+                    this.stats.unregister();
                 }
+                catch (JMException e) {
+                    LOGGER.log(Level.WARNING, "Unable to unregister statistics MBean", e);
+                }
+                this.statsRegistered = false;
             }
-
+            this.statementCache.clear();
             this.db.release();
             this.closer.close();
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Close any statements that are still open on this connection.  This is
+     * also done when a pooled connection is handed back to its pool, the
+     * cached statement handles are kept.
+     */
+    void closeStatements() throws SQLException {
+        synchronized (this.statements) {
+            while (!this.statements.isEmpty()) {
+                WeakRefWithEquals<Statement> stmtRef = this.statements.remove(this.statements.size() - 1);
+                Statement stmt = stmtRef.get();
+
+                if (stmt == null)
+                    continue;
+
+                if (!stmt.isClosed()) {
+                    LOGGER.log(Level.WARNING,
+                            "Statement was not explicitly closed -- {0}",
+                            new Object[] { stmt.toString() });
+                    stmt.close();
+                }
+            }
         }
     }
 
@@ -502,13 +1373,9 @@ public class SqliteConnection extends SqliteCommon implements Connection {
         this.clearWarnings();
         requireResultSetType(resultSetType, resultSetConcurrency, resultSetHoldability);
 
-        Pointer<Pointer<Sqlite3.Statement>> stmt_out = Pointer.allocatePointer(Sqlite3.Statement.class);
+        String sql = this.nativeSQL(s);
 
-        Sqlite3.checkOk(Sqlite3.sqlite3_prepare_v2(this.db,
-                Pointer.pointerToCString(this.nativeSQL(s)), -1, stmt_out, Pointer.NULL),
-                this.db);
-
-        return new SqlitePreparedStatement(this, stmt_out.get(), s);
+        return new SqlitePreparedStatement(this, this.prepare(sql), s, sql);
     }
 
     @Override
@@ -666,4 +1533,89 @@ public class SqliteConnection extends SqliteCommon implements Connection {
             this.close();
         }
     }
+
+    /**
+     * The one native progress handler for a connection.  It reads the
+     * callback array without locking and calls each callback once its own
+     * step worth of instructions has gone by, newest first.  A slow
+     * callback can hold up the VM long enough that the interrupt from the
+     * watchdog is not seen for a while, so the query deadline is checked
+     * after each one that runs.
+     */
+    private static class ProgressDispatcher extends Sqlite3.ProgressCallbackBase {
+        private final SqliteConnection conn;
+
+        ProgressDispatcher(SqliteConnection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public int apply(Pointer<Void> context) {
+            SqliteConnectionProgressCallback[] callbacks = this.conn.progressCallbacks;
+            int step = this.conn.registeredStep;
+
+            for (int lpc = callbacks.length - 1; lpc >= 0; lpc--) {
+                SqliteConnectionProgressCallback callback = callbacks[lpc];
+
+                callback.elapsed += step;
+                if (callback.elapsed >= callback.effectiveStep) {
+                    callback.elapsed = 0;
+                    if (callback.apply(context) != 0)
+                        return 1;
+
+                    long deadline = this.conn.getQueryDeadline();
+
+                    if (deadline != 0 && System.currentTimeMillis() >= deadline)
+                        return 1;
+                }
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Sleeps between attempts to get a lock according to a backoff policy.
+     * The query timeout of the executing statement is checked here since
+     * sqlite3_interrupt() does not stop a wait that is in progress.
+     */
+    private static class BusyHandler extends Sqlite3.BusyHandlerBase {
+        private final SqliteConnection conn;
+        private final SqliteBusyPolicy policy;
+        private long startTime;
+
+        BusyHandler(SqliteConnection conn, SqliteBusyPolicy policy) {
+            this.conn = conn;
+            this.policy = policy;
+        }
+
+        @Override
+        public int apply(Pointer<Void> context, int count) {
+            if (count == 0)
+                this.startTime = System.currentTimeMillis();
+
+            long delay = this.policy.getDelay(count, this.startTime, this.conn.getQueryDeadline());
+
+            if (delay < 0)
+                return 0;
+
+            DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.BUSY_WAIT);
+
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+            finally {
+                if (event != null) {
+                    event.setRows(count + 1);
+                    event.commit();
+                }
+            }
+
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,481 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * The logical connection that is handed out by SqliteDataSource and
+ * SqlitePooledConnection.  The physical connection is only borrowed from
+ * the pool when it is first needed, so a call to setReadOnly(true) before
+ * any work is done routes the handle to a reader connection.  Closing the
+ * handle rolls back any open transaction, closes the statements that are
+ * still open and returns the physical connection to its source, which keeps
+ * the warmed statement cache.
+ */
+public class SqliteConnectionHandle extends SqliteCommon implements Connection {
+    /**
+     * Where a handle gets its physical connection from.
+     */
+    interface Source {
+        SqliteConnection acquire(boolean readOnly) throws SQLException;
+
+        void release(SqliteConnection conn) throws SQLException;
+
+        /**
+         * Called after the handle has been closed and its physical
+         * connection, if any, has been released.
+         */
+        void handleClosed(SqliteConnectionHandle handle);
+    }
+
+    private final Source source;
+    private SqliteConnection physical;
+    private boolean readOnly;
+    private boolean closed;
+
+    SqliteConnectionHandle(Source source) {
+        this.source = source;
+    }
+
+    private synchronized SqliteConnection physical() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Database is closed for business");
+
+        if (this.physical == null) {
+            SqliteConnection conn = this.source.acquire(this.readOnly);
+
+            try {
+                if (conn.isReadOnly() != this.readOnly)
+                    conn.setReadOnly(this.readOnly);
+            }
+            catch (SQLException e) {
+                this.source.release(conn);
+                throw e;
+            }
+            this.physical = conn;
+        }
+
+        return this.physical;
+    }
+
+    /**
+     * Clean up the physical connection and hand it back to the source.
+     */
+    private void releasePhysical() throws SQLException {
+        SqliteConnection conn = this.physical;
+
+        if (conn == null)
+            return;
+
+        this.physical = null;
+        try {
+            if (!conn.isClosed()) {
+                conn.closeStatements();
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                conn.clearWarnings();
+            }
+        }
+        finally {
+            this.source.release(conn);
+        }
+    }
+
+    /**
+     * @return The physical connection the handle is currently using or null
+     *   if it has not borrowed one yet.
+     */
+    synchronized SqliteConnection getPhysicalConnection() {
+        return this.physical;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (!this.closed) {
+            this.closed = true;
+            try {
+                this.releasePhysical();
+            }
+            finally {
+                this.source.handleClosed(this);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isClosed() throws SQLException {
+        return this.closed || (this.physical != null && this.physical.isClosed());
+    }
+
+    @Override
+    public synchronized void setReadOnly(boolean b) throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Database is closed for business");
+
+        if (b == this.readOnly)
+            return;
+
+        if (this.physical != null) {
+            /*
+             * Switching between the writer and a reader is only possible
+             * between transactions, let the physical connection report the
+             * error otherwise.
+             */
+            if (!this.physical.getAutoCommit()) {
+                this.physical.setReadOnly(b);
+                return;
+            }
+            this.releasePhysical();
+        }
+        this.readOnly = b;
+    }
+
+    @Override
+    public synchronized boolean isReadOnly() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientException("Database is closed for business");
+
+        return this.readOnly;
+    }
+
+    @Override
+    public synchronized boolean isValid(int timeout) throws SQLException {
+        if (this.closed)
+            return false;
+
+        return this.physical == null || this.physical.isValid(timeout);
+    }
+
+    @Override
+    public synchronized void abort(Executor executor) throws SQLException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        if (this.physical != null) {
+            SqliteConnection conn = this.physical;
+
+            this.physical = null;
+            try {
+                conn.abort(executor);
+            }
+            finally {
+                this.source.release(conn);
+            }
+        }
+    }
+
+    @Override
+    public synchronized SQLWarning getWarnings() throws SQLException {
+        if (this.physical == null)
+            return null;
+
+        return this.physical().getWarnings();
+    }
+
+    @Override
+    public synchronized void clearWarnings() throws SQLException {
+        if (this.physical != null)
+            this.physical().clearWarnings();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> tClass) throws SQLException {
+        if (tClass.isInstance(this))
+            return tClass.cast(this);
+        if (tClass.isAssignableFrom(SqliteConnection.class))
+            return tClass.cast(this.physical());
+
+        return super.unwrap(tClass);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> aClass) throws SQLException {
+        return aClass.isInstance(this) || aClass.isAssignableFrom(SqliteConnection.class);
+    }
+
+    /**
+     * Make a statement report this handle from getConnection(), so the
+     * physical connection does not leak out of the pool.
+     */
+    private <T extends Statement> T adopt(T stmt) {
+        if (stmt instanceof SqliteStatement)
+            ((SqliteStatement) stmt).setLogicalConnection(this);
+
+        return stmt;
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return this.adopt(this.physical().createStatement());
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s) throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String s) throws SQLException {
+        return this.adopt(this.physical().prepareCall(s));
+    }
+
+    @Override
+    public String nativeSQL(String s) throws SQLException {
+        return this.physical().nativeSQL(s);
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        this.physical().setAutoCommit(autoCommit);
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return this.physical().getAutoCommit();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        this.physical().commit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        this.physical().rollback();
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return new SqliteDatabaseMetadata(this.physical(), this);
+    }
+
+    @Override
+    public void setCatalog(String s) throws SQLException {
+        this.physical().setCatalog(s);
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        return this.physical().getCatalog();
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        this.physical().setTransactionIsolation(level);
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return this.physical().getTransactionIsolation();
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        return this.adopt(this.physical().createStatement(resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s, resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String s, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return this.adopt(this.physical().prepareCall(s, resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return this.physical().getTypeMap();
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> stringClassMap) throws SQLException {
+        this.physical().setTypeMap(stringClassMap);
+    }
+
+    @Override
+    public void setHoldability(int holdability) throws SQLException {
+        this.physical().setHoldability(holdability);
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return this.physical().getHoldability();
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        return this.physical().setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) throws SQLException {
+        return this.physical().setSavepoint(name);
+    }
+
+    @Override
+    public void rollback(Savepoint savepoint) throws SQLException {
+        this.physical().rollback(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        this.physical().releaseSavepoint(savepoint);
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        return this.adopt(this.physical().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s,
+                                              int resultSetType,
+                                              int resultSetConcurrency,
+                                              int resultSetHoldability) throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s, resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String s,
+                                         int resultSetType,
+                                         int resultSetConcurrency,
+                                         int resultSetHoldability) throws SQLException {
+        return this.adopt(this.physical().prepareCall(s, resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s, int autoGeneratedKeys) throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s, autoGeneratedKeys));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s, int[] columnIndexes) throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s, columnIndexes));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String s, String[] columnNames) throws SQLException {
+        return this.adopt(this.physical().prepareStatement(s, columnNames));
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return this.physical().createClob();
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return this.physical().createBlob();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return this.physical().createNClob();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return this.physical().createSQLXML();
+    }
+
+    @Override
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        try {
+            this.physical().setClientInfo(name, value);
+        }
+        catch (SQLClientInfoException e) {
+            throw e;
+        }
+        catch (SQLException e) {
+            throw new SQLClientInfoException(e.getMessage(), null, e);
+        }
+    }
+
+    @Override
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        try {
+            this.physical().setClientInfo(properties);
+        }
+        catch (SQLClientInfoException e) {
+            throw e;
+        }
+        catch (SQLException e) {
+            throw new SQLClientInfoException(e.getMessage(), null, e);
+        }
+    }
+
+    @Override
+    public String getClientInfo(String name) throws SQLException {
+        return this.physical().getClientInfo(name);
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return this.physical().getClientInfo();
+    }
+
+    @Override
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return this.physical().createArrayOf(typeName, elements);
+    }
+
+    @Override
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        return this.physical().createStruct(typeName, attributes);
+    }
+
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        this.physical().setSchema(schema);
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return this.physical().getSchema();
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        this.physical().setNetworkTimeout(executor, milliseconds);
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return this.physical().getNetworkTimeout();
+    }
+}
@@ -26,27 +26,40 @@
 
 package org.sqlitejdbcng;
 
-import org.sqlitejdbcng.bridj.Sqlite3;
+import org.bridj.Pointer;
 
 import java.sql.SQLException;
 
-public abstract class SqliteConnectionProgressCallback
-        extends Sqlite3.ProgressCallbackBase
-        implements AutoCloseable {
+/**
+ * A listener for the SQLite progress handler of a connection, added with
+ * SqliteConnection.pushCallback().  All of the listeners on a connection
+ * share one native handler, which is only registered while there are
+ * listeners, so these objects are plain Java objects.
+ */
+public abstract class SqliteConnectionProgressCallback implements AutoCloseable {
     protected final SqliteConnection conn;
-    protected SqliteConnectionProgressCallback other;
+
+    /* Maintained by the connection's dispatcher. */
+    int effectiveStep;
+    int elapsed;
 
     public SqliteConnectionProgressCallback(SqliteConnection conn) {
         this.conn = conn;
     }
 
-    void setOther(SqliteConnectionProgressCallback other) {
-        this.other = other;
+    /**
+     * @return The number of virtual machine instructions between calls to
+     *   apply(), or zero to use the connection's progress step.  The native
+     *   handler runs at the smallest step of all the listeners.
+     */
+    public int getProgressStep() {
+        return 0;
     }
 
-    SqliteConnectionProgressCallback getOther() {
-        return this.other;
-    }
+    /**
+     * @return Non-zero to interrupt the statement that is running.
+     */
+    public abstract int apply(Pointer<Void> context);
 
     @Override
     public void close() throws SQLException {
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Statistics for a single connection, read from sqlite3_db_status() when
+ * an attribute is requested.  Use the cache hit and miss counts to size
+ * the "cache_size" property and the lookaside counts to size lookaside.
+ *
+ * @see SqliteConnection#getStats()
+ */
+public class SqliteConnectionStats implements SqliteConnectionStatsMBean {
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+
+    private final SqliteConnection conn;
+    private final int id = ID_COUNTER.incrementAndGet();
+    private final Pointer<Integer> current = Pointer.allocateInt();
+    private final Pointer<Integer> highwater = Pointer.allocateInt();
+    private final ObjectName objectName;
+
+    SqliteConnectionStats(SqliteConnection conn) {
+        this.conn = conn;
+        try {
+            this.objectName = new ObjectName("org.sqlitejdbcng:type=Connection,id=" + this.id +
+                    ",url=" + ObjectName.quote(conn.getURL()));
+        }
+        catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Register this MBean, and the global memory MBean, with the platform
+     * MBean server.
+     */
+    public void register() throws JMException {
+        SqliteMemoryStats.register();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+    }
+
+    public void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        if (server.isRegistered(this.objectName))
+            server.unregisterMBean(this.objectName);
+    }
+
+    private long dbStatus(Sqlite3.DbStatusOp op, boolean wantHighwater, boolean reset) {
+        /*
+         * Hold the connection lock, like close() does, so the handle cannot
+         * be released under us.  It also guards the out-parameters.  The
+         * lock does not keep the thread that owns the connection out of
+         * SQLite, so a connection without a mutex cannot be registered
+         * with JMX.
+         */
+        synchronized (this.conn) {
+            try {
+                if (this.conn.isClosed())
+                    return -1;
+            }
+            catch (SQLException e) {
+                return -1;
+            }
+
+            Sqlite3.sqlite3_db_status(this.conn.getHandle(), op.value(),
+                    this.current, this.highwater, reset ? 1 : 0);
+
+            return wantHighwater ? this.highwater.getInt() : this.current.getInt();
+        }
+    }
+
+    @Override
+    public String getUrl() {
+        return this.conn.getURL();
+    }
+
+    @Override
+    public long getCacheUsed() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_USED, false, false);
+    }
+
+    @Override
+    public long getCacheHits() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_HIT, false, false);
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_MISS, false, false);
+    }
+
+    @Override
+    public long getCacheWrites() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_WRITE, false, false);
+    }
+
+    @Override
+    public long getCacheSpills() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_SPILL, false, false);
+    }
+
+    @Override
+    public long getSchemaUsed() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_SCHEMA_USED, false, false);
+    }
+
+    @Override
+    public long getStatementUsed() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_STMT_USED, false, false);
+    }
+
+    @Override
+    public long getLookasideUsed() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_USED, false, false);
+    }
+
+    @Override
+    public long getLookasideUsedHighwater() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_USED, true, false);
+    }
+
+    /* The lookaside hit and miss counts are only reported as high-water marks. */
+
+    @Override
+    public long getLookasideHits() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_HIT, true, false);
+    }
+
+    @Override
+    public long getLookasideMissSize() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE, true, false);
+    }
+
+    @Override
+    public long getLookasideMissFull() {
+        return this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL, true, false);
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return this.conn.getStatementCache().getHits();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return this.conn.getStatementCache().getMisses();
+    }
+
+    @Override
+    public int getStatementCacheSize() {
+        return this.conn.getStatementCache().size();
+    }
+
+    @Override
+    public void resetCounters() {
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_HIT, false, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_MISS, false, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_WRITE, false, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_CACHE_SPILL, false, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_USED, true, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_HIT, true, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE, true, true);
+        this.dbStatus(Sqlite3.DbStatusOp.SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL, true, true);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+/**
+ * Per-connection statistics from sqlite3_db_status() and the driver's
+ * statement cache.  The values are -1 once the connection is closed.
+ */
+public interface SqliteConnectionStatsMBean {
+    String getUrl();
+
+    long getCacheUsed();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheWrites();
+
+    long getCacheSpills();
+
+    long getSchemaUsed();
+
+    long getStatementUsed();
+
+    long getLookasideUsed();
+
+    long getLookasideUsedHighwater();
+
+    long getLookasideHits();
+
+    long getLookasideMissSize();
+
+    long getLookasideMissFull();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    int getStatementCacheSize();
+
+    void resetCounters();
+}
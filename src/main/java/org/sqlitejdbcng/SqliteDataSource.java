@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A DataSource that pools connections to a single database following the
+ * SQLite locking model: there is one writer connection and up to
+ * "readerCount" reader connections.  The database is switched to WAL mode
+ * when the writer is opened, unless the "journal_mode" property says
+ * otherwise, so the readers can run concurrently with the writer.
+ *
+ * A connection from getConnection() borrows the writer when it is first
+ * used, unless setReadOnly(true) is called first, in which case it borrows
+ * a reader.  Each pooled connection keeps its own statement cache, so it
+ * stays warm across borrowers.  In-memory databases cannot be shared, so
+ * they only get the writer.
+ *
+ * The getPooledConnection() methods are for external connection pools and
+ * return a new, unpooled physical connection every time.
+ */
+public class SqliteDataSource implements DataSource, ConnectionPoolDataSource, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SqliteDataSource.class.getPackage().getName());
+
+    /** Seconds to wait for a pooled connection when no login timeout is set. */
+    private static final int DEFAULT_LOGIN_TIMEOUT = 30;
+
+    private String url;
+    private final Properties properties = new Properties();
+    private int readerCount = Runtime.getRuntime().availableProcessors();
+    private int loginTimeout;
+    private PrintWriter logWriter;
+
+    private final Pool pool = new Pool();
+    private SqliteWriteExecutor writeExecutor;
+
+    public SqliteDataSource() {
+    }
+
+    public SqliteDataSource(String url) {
+        this.setUrl(url);
+    }
+
+    public synchronized String getUrl() {
+        return this.url;
+    }
+
+    public synchronized void setUrl(String url) {
+        if (!SqliteUrl.isSqliteUrl(url))
+            throw new IllegalArgumentException("Not a JDBC sqlite URL: " + url);
+
+        this.url = url;
+    }
+
+    /**
+     * Set a connection property, see SqliteProperty for the list.  The
+     * properties only affect connections that are opened after the call.
+     */
+    public synchronized void setProperty(String key, String value) {
+        this.properties.setProperty(key, value);
+    }
+
+    public synchronized Properties getProperties() {
+        Properties retval = new Properties();
+
+        retval.putAll(this.properties);
+
+        return retval;
+    }
+
+    public synchronized int getReaderCount() {
+        return this.readerCount;
+    }
+
+    /**
+     * @param readerCount The maximum number of reader connections to open,
+     *   zero sends read-only work to the writer.
+     */
+    public synchronized void setReaderCount(int readerCount) {
+        if (readerCount < 0)
+            throw new IllegalArgumentException("Reader count must not be negative");
+
+        this.readerCount = readerCount;
+    }
+
+    /**
+     * @return The number of physical connections the pool currently has
+     *   open, including the writer.
+     */
+    public int getOpenConnectionCount() {
+        return this.pool.getOpenCount();
+    }
+
+    /**
+     * @return The group-commit executor for this database, it shares the
+     *   writer connection with the rest of the pool.
+     */
+    public synchronized SqliteWriteExecutor getWriteExecutor() throws SQLException {
+        if (this.writeExecutor == null)
+            this.writeExecutor = new SqliteWriteExecutor(this.pool);
+
+        return this.writeExecutor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new SqliteConnectionHandle(this.pool);
+    }
+
+    /**
+     * SQLite does not have users, so the credentials are ignored.
+     */
+    @Override
+    public Connection getConnection(String user, String password) throws SQLException {
+        return this.getConnection();
+    }
+
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        return new SqlitePooledConnection(this.openConnection(false));
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+        return this.getPooledConnection();
+    }
+
+    /**
+     * Close the idle connections in the pool, connections that are in use
+     * are closed when they are returned.
+     */
+    @Override
+    public void close() throws SQLException {
+        SqliteWriteExecutor executor;
+
+        synchronized (this) {
+            executor = this.writeExecutor;
+            this.writeExecutor = null;
+        }
+        if (executor != null)
+            executor.close();
+        this.pool.close();
+    }
+
+    @Override
+    public synchronized PrintWriter getLogWriter() throws SQLException {
+        return this.logWriter;
+    }
+
+    @Override
+    public synchronized void setLogWriter(PrintWriter out) throws SQLException {
+        this.logWriter = out;
+    }
+
+    /**
+     * @param seconds How long to wait for a pooled connection to become
+     *   available, zero uses the default of 30 seconds.
+     */
+    @Override
+    public synchronized void setLoginTimeout(int seconds) throws SQLException {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public synchronized int getLoginTimeout() throws SQLException {
+        return this.loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return LOGGER;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> tClass) throws SQLException {
+        if (tClass.isInstance(this))
+            return tClass.cast(this);
+
+        throw new SQLNonTransientException("No object implements the given class");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> aClass) throws SQLException {
+        return aClass.isInstance(this);
+    }
+
+    private synchronized boolean canHaveReaders() {
+        if (this.url == null || this.readerCount == 0)
+            return false;
+
+        String path = new SqliteUrl(this.url).getPath();
+
+        return !(path.isEmpty() || path.equals(":memory:") || path.contains("mode=memory"));
+    }
+
+    private SqliteConnection openConnection(boolean reader) throws SQLException {
+        String connUrl;
+        Properties connProps;
+
+        synchronized (this) {
+            if (this.url == null)
+                throw new SQLNonTransientConnectionException("The data source does not have a URL");
+
+            connUrl = this.url;
+            connProps = this.getProperties();
+        }
+
+        SqliteUrl sqliteUrl = new SqliteUrl(connUrl);
+
+        if (reader) {
+            /* The writer takes care of the journal mode for everyone. */
+            connProps.remove(SqliteProperty.JOURNAL_MODE.getKey());
+            sqliteUrl.getProperties().remove(SqliteProperty.JOURNAL_MODE.getKey());
+            connUrl = SqliteUrl.PREFIX + sqliteUrl.getPath();
+            connProps = sqliteUrl.merge(connProps);
+        }
+        else if (sqliteUrl.getProperties().getProperty(SqliteProperty.JOURNAL_MODE.getKey()) == null &&
+                connProps.getProperty(SqliteProperty.JOURNAL_MODE.getKey()) == null &&
+                this.canHaveReaders()) {
+            connProps.setProperty(SqliteProperty.JOURNAL_MODE.getKey(), "WAL");
+        }
+
+        SqliteConnection retval = new SqliteConnection(connUrl, connProps);
+
+        if (reader) {
+            try {
+                retval.setReadOnly(true);
+            }
+            catch (SQLException e) {
+                retval.close();
+                throw e;
+            }
+        }
+
+        return retval;
+    }
+
+    private class Pool implements SqliteConnectionHandle.Source {
+        private final Object lock = new Object();
+        private final Deque<SqliteConnection> idleReaders = new ArrayDeque<>();
+        private SqliteConnection writer;
+        private boolean writerBusy;
+        private Thread writerOwner;
+        private int openReaders;
+        private boolean closed;
+
+        int getOpenCount() {
+            synchronized (this.lock) {
+                return this.openReaders + (this.writer == null ? 0 : 1);
+            }
+        }
+
+        @Override
+        public SqliteConnection acquire(boolean readOnly) throws SQLException {
+            int seconds = getLoginTimeout();
+            long deadline = System.currentTimeMillis() +
+                    (seconds == 0 ? DEFAULT_LOGIN_TIMEOUT : seconds) * 1000L;
+
+            if (readOnly && canHaveReaders())
+                return this.acquireReader(deadline);
+
+            return this.acquireWriter(deadline);
+        }
+
+        private SqliteConnection acquireWriter(long deadline) throws SQLException {
+            SqliteConnection retval;
+
+            synchronized (this.lock) {
+                while (true) {
+                    this.requireOpen();
+                    if (!this.writerBusy)
+                        break;
+                    /* Waiting would only time out, the thread has to let go first. */
+                    if (this.writerOwner == Thread.currentThread()) {
+                        throw new SQLTransientConnectionException(
+                                "The writer connection is already in use by this thread");
+                    }
+                    this.await(deadline);
+                }
+                this.writerBusy = true;
+                this.writerOwner = Thread.currentThread();
+                retval = this.writer;
+            }
+
+            /* Opening can block on the file lock, so do it outside the pool lock. */
+            if (retval == null || retval.isClosed()) {
+                try {
+                    retval = openConnection(false);
+                }
+                catch (SQLException | RuntimeException e) {
+                    synchronized (this.lock) {
+                        this.writer = null;
+                        this.writerBusy = false;
+                        this.writerOwner = null;
+                        this.lock.notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this.lock) {
+                    this.writer = retval;
+                }
+            }
+
+            return retval;
+        }
+
+        private SqliteConnection acquireReader(long deadline) throws SQLException {
+            boolean needWriter;
+
+            synchronized (this.lock) {
+                this.requireOpen();
+                needWriter = this.writer == null || this.writer.isClosed();
+            }
+            /* The writer creates the database and switches it to WAL. */
+            if (needWriter)
+                this.release(this.acquireWriter(deadline));
+
+            synchronized (this.lock) {
+                while (true) {
+                    this.requireOpen();
+
+                    /* Take the most recently used reader since its cache is the warmest. */
+                    SqliteConnection reader = this.idleReaders.pollFirst();
+
+                    if (reader != null) {
+                        if (!reader.isClosed())
+                            return reader;
+                        this.openReaders -= 1;
+                        continue;
+                    }
+                    if (this.openReaders < getReaderCount()) {
+                        this.openReaders += 1;
+                        break;
+                    }
+                    this.await(deadline);
+                }
+            }
+
+            try {
+                return openConnection(true);
+            }
+            catch (SQLException e) {
+                synchronized (this.lock) {
+                    this.openReaders -= 1;
+                    this.lock.notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        private void requireOpen() throws SQLException {
+            if (this.closed)
+                throw new SQLNonTransientConnectionException("Data source is closed");
+        }
+
+        private void await(long deadline) throws SQLException {
+            try {
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0)
+                    throw new SQLTransientConnectionException("Timed out waiting for a pooled connection");
+                this.lock.wait(remaining);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while waiting for a pooled connection", e);
+            }
+        }
+
+        @Override
+        public void release(SqliteConnection conn) throws SQLException {
+            synchronized (this.lock) {
+                try {
+                    if (conn == this.writer) {
+                        this.writerBusy = false;
+                        this.writerOwner = null;
+                        if (this.closed || conn.isClosed()) {
+                            this.writer = null;
+                            conn.close();
+                        }
+                    }
+                    else if (this.closed || conn.isClosed()) {
+                        this.openReaders -= 1;
+                        conn.close();
+                    }
+                    else {
+                        this.idleReaders.addFirst(conn);
+                    }
+                }
+                finally {
+                    this.lock.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void handleClosed(SqliteConnectionHandle handle) {
+        }
+
+        void close() throws SQLException {
+            synchronized (this.lock) {
+                this.closed = true;
+                try {
+                    while (!this.idleReaders.isEmpty()) {
+                        this.openReaders -= 1;
+                        this.idleReaders.pollFirst().close();
+                    }
+                    if (this.writer != null && !this.writerBusy) {
+                        this.writer.close();
+                        this.writer = null;
+                    }
+                }
+                finally {
+                    this.lock.notifyAll();
+                }
+            }
+        }
+    }
+}
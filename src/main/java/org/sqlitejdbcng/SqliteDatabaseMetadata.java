@@ -26,12 +26,14 @@
 
 package org.sqlitejdbcng;
 
+import org.bridj.Pointer;
 import org.sqlitejdbcng.bridj.Sqlite3;
 import org.sqlitejdbcng.internal.ColumnData;
 import org.sqlitejdbcng.internal.SQLKeywords;
 
 import java.sql.*;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class SqliteDatabaseMetadata implements DatabaseMetaData {
     private static final String KEYWORD_LIST;
@@ -46,9 +48,21 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
     }
 
     private final SqliteConnection conn;
+    private final Connection owner;
+    private final Map<String, Schema> schemas;
 
     public SqliteDatabaseMetadata(SqliteConnection conn) {
+        this(conn, conn);
+    }
+
+    /**
+     * @param owner The connection to report from getConnection(), which is
+     *   the logical connection when the physical one is pooled.
+     */
+    SqliteDatabaseMetadata(SqliteConnection conn, Connection owner) {
         this.conn = conn;
+        this.owner = owner;
+        this.schemas = conn.getSchemaCache();
     }
 
     @Override
@@ -655,6 +669,206 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
         }
     }
 
+    /**
+     * Run a query over a list of rows built in memory.  The rows are written
+     * into the query as a VALUES clause of literals, since there would be
+     * too many parameters to bind for a large schema.
+     *
+     * @param query The select list, ending in "FROM ", that refers to the
+     *   values as column1, column2, ...
+     */
+    private ResultSet executeRowsQuery(String query, int columnCount, List<Object[]> rows, String orderBy)
+            throws SQLException {
+        StringBuilder sb = new StringBuilder(query);
+
+        sb.append("(VALUES ");
+        if (rows.isEmpty()) {
+            sb.append("(");
+            sb.append(Sqlite3.join(Collections.nCopies(columnCount, "NULL").toArray(), ", "));
+            sb.append("))");
+            sb.append(orderBy);
+            sb.append(" LIMIT 0");
+        }
+        else {
+            for (int lpc = 0; lpc < rows.size(); lpc++) {
+                Object[] row = rows.get(lpc);
+
+                sb.append(lpc == 0 ? "(" : ", (");
+                for (int col = 0; col < row.length; col++) {
+                    if (col > 0)
+                        sb.append(", ");
+                    appendLiteral(sb, row[col]);
+                }
+                sb.append(")");
+            }
+            sb.append(")");
+            sb.append(orderBy);
+        }
+
+        return this.executeConstantQuery(sb.toString());
+    }
+
+    private static void appendLiteral(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("NULL");
+        }
+        else if (value instanceof Number) {
+            sb.append(value);
+        }
+        else {
+            String str = value.toString();
+
+            sb.append('\'');
+            for (int lpc = 0; lpc < str.length(); lpc++) {
+                char ch = str.charAt(lpc);
+
+                if (ch == '\'')
+                    sb.append('\'');
+                sb.append(ch);
+            }
+            sb.append('\'');
+        }
+    }
+
+    /**
+     * Convert a JDBC search pattern into a regular expression that matches
+     * the same way as SQLite's case-insensitive LIKE.
+     */
+    static Pattern likePattern(String pattern) {
+        StringBuilder sb = new StringBuilder();
+        int start = 0;
+
+        for (int lpc = 0; lpc < pattern.length(); lpc++) {
+            char ch = pattern.charAt(lpc);
+
+            if (ch != '%' && ch != '_')
+                continue;
+            if (start < lpc)
+                sb.append(Pattern.quote(pattern.substring(start, lpc)));
+            sb.append(ch == '%' ? ".*" : ".");
+            start = lpc + 1;
+        }
+        if (start < pattern.length())
+            sb.append(Pattern.quote(pattern.substring(start)));
+
+        return Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    /**
+     * The columns and foreign keys of every table in an attached database,
+     * as of a given schema version of a given file.
+     */
+    static class Schema {
+        final String filename;
+        final int version;
+        final List<ColumnData> columns = new ArrayList<>();
+        final List<ForeignKeyData> foreignKeys = new ArrayList<>();
+
+        Schema(String filename, int version) {
+            this.filename = filename;
+            this.version = version;
+        }
+    }
+
+    /** The first release with table-valued pragma functions. */
+    private static final int PRAGMA_FUNCTIONS_VERSION = 3016000;
+
+    private static final String SCHEMA_COLUMNS_QUERY =
+            "SELECT m.name AS tbl_name, p.cid AS cid, p.name AS name, p.type AS type, " +
+                    "p.\"notnull\" AS \"notnull\", p.dflt_value AS dflt_value, p.pk AS pk " +
+                    "FROM %Q.sqlite_master AS m, pragma_table_info(m.name, %Q) AS p " +
+                    "WHERE m.type = 'table' ORDER BY m.name, p.cid";
+
+    private static final String SCHEMA_FOREIGN_KEYS_QUERY =
+            "SELECT m.name AS tbl_name, f.id AS id, f.seq AS seq, f.\"table\" AS \"table\", " +
+                    "f.\"from\" AS \"from\", f.\"to\" AS \"to\", f.on_update AS on_update, " +
+                    "f.on_delete AS on_delete, f.\"match\" AS \"match\" " +
+                    "FROM %Q.sqlite_master AS m, pragma_foreign_key_list(m.name, %Q) AS f " +
+                    "WHERE m.type = 'table' ORDER BY m.name, f.id, f.seq";
+
+    /**
+     * Get the columns and foreign keys of an attached database.  Frameworks
+     * ask about every table one at a time at startup, so the whole schema is
+     * read in one pass and kept until the schema_version changes.
+     */
+    private Schema getSchema(String catalog) throws SQLException {
+        /* The cache belongs to the connection and is shared with pooled handles. */
+        synchronized (this.schemas) {
+            try (Statement stmt = this.conn.createStatement()) {
+                int version;
+
+                try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf("PRAGMA %Q.schema_version", catalog))) {
+                    if (!rs.next())
+                        throw new SQLNonTransientException("Unknown database -- " + catalog);
+                    version = rs.getInt(1);
+                }
+
+                /*
+                 * A different file can be attached under the same name with
+                 * the same schema_version, so the file has to match too.
+                 * Attached in-memory databases have no name to tell them
+                 * apart, so their schema is always read again.
+                 */
+                Pointer<Byte> filenamePtr = Sqlite3.sqlite3_db_filename(this.conn.getHandle(),
+                        Pointer.pointerToCString(catalog));
+                String filename = filenamePtr == null ? "" : filenamePtr.getCString();
+                boolean cacheable = !filename.isEmpty() || "main".equalsIgnoreCase(catalog) ||
+                        "temp".equalsIgnoreCase(catalog);
+                Schema retval = this.schemas.get(catalog);
+
+                if (cacheable && retval != null && retval.version == version && retval.filename.equals(filename))
+                    return retval;
+
+                retval = new Schema(filename, version);
+                if (Sqlite3.sqlite3_libversion_number() >= PRAGMA_FUNCTIONS_VERSION) {
+                    try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf(SCHEMA_COLUMNS_QUERY, catalog, catalog))) {
+                        while (rs.next()) {
+                            retval.columns.add(new ColumnData(this.conn.getColumnTypeCache(),
+                                    catalog, rs.getString("tbl_name"), rs));
+                        }
+                    }
+                    try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf(SCHEMA_FOREIGN_KEYS_QUERY, catalog, catalog))) {
+                        while (rs.next()) {
+                            retval.foreignKeys.add(new ForeignKeyData(rs.getString("tbl_name"), rs));
+                        }
+                    }
+                }
+                else {
+                    List<String> allTables = new ArrayList<>();
+
+                    try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf(
+                            "SELECT name FROM %Q.sqlite_master WHERE type='table' ORDER BY name", catalog))) {
+                        while (rs.next()) {
+                            allTables.add(rs.getString(1));
+                        }
+                    }
+
+                    for (String tableName : allTables) {
+                        try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf("PRAGMA %Q.table_info(%Q)",
+                                catalog, tableName))) {
+                            while (rs.next()) {
+                                retval.columns.add(new ColumnData(this.conn.getColumnTypeCache(),
+                                        catalog, tableName, rs));
+                            }
+                        }
+                        try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf("PRAGMA %Q.foreign_key_list(%Q)",
+                                catalog, tableName))) {
+                            while (rs.next()) {
+                                retval.foreignKeys.add(new ForeignKeyData(tableName, rs));
+                            }
+                        }
+                    }
+                }
+                if (cacheable)
+                    this.schemas.put(catalog, retval);
+                else
+                    this.schemas.remove(catalog);
+
+                return retval;
+            }
+        }
+    }
+
     @Override
     public ResultSet getProcedures(String s, String s2, String s3) throws SQLException {
         return this.executeConstantQuery(
@@ -772,22 +986,19 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
     }
 
     private static final String COLUMN_QUERY =
-            "SELECT ? AS TABLE_CAT, null AS TABLE_SCHEM, ? AS TABLE_NAME, " +
-                    "? AS COLUMN_NAME, ? AS DATA_TYPE, ? AS TYPE_NAME, ? AS COLUMN_SIZE, " +
-                    "null AS BUFFER_LENGTH, ? AS DECIMAL_DIGITS, 10 AS NUM_PREC_RADIX, " +
-                    "? AS NULLABLE, '' AS REMARKS, ? AS COLUMN_DEF, null AS SQL_DATA_TYPE, " +
-                    "null AS SQL_DATETIME_SUB, ? AS ORDINAL_POSITION, ? AS IS_NULLABLE, " +
+            "SELECT column1 AS TABLE_CAT, null AS TABLE_SCHEM, column2 AS TABLE_NAME, " +
+                    "column3 AS COLUMN_NAME, column4 AS DATA_TYPE, column5 AS TYPE_NAME, column6 AS COLUMN_SIZE, " +
+                    "null AS BUFFER_LENGTH, column7 AS DECIMAL_DIGITS, 10 AS NUM_PREC_RADIX, " +
+                    "column8 AS NULLABLE, '' AS REMARKS, column9 AS COLUMN_DEF, null AS SQL_DATA_TYPE, " +
+                    "null AS SQL_DATETIME_SUB, column10 AS ORDINAL_POSITION, column11 AS IS_NULLABLE, " +
                     "null AS SCOPE_CATALOG, null AS SCOPE_SCHEMA, null AS SCOPE_TABLE, " +
-                    "null AS SOURCE_DATA_TYPE, ? AS IS_AUTOINCREMENT, ? AS IS_GENERATEDCOLUMN ";
+                    "null AS SOURCE_DATA_TYPE, column12 AS IS_AUTOINCREMENT, column13 AS IS_GENERATEDCOLUMN FROM ";
 
     @Override
     public ResultSet getColumns(String catalog,
                                 String schemaPattern,
                                 String tableNamePattern,
                                 String columnNamePattern) throws SQLException {
-        List<String> tableList = new ArrayList<>();
-        String query;
-
         /* XXX We should iterate over the catalogs instead of just defaulting to "main" */
         if (catalog == null)
             catalog = "main";
@@ -797,74 +1008,35 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
         if (columnNamePattern == null)
             columnNamePattern = "%";
 
-        query = Sqlite3.mprintf("SELECT tbl_name FROM %Q.sqlite_master WHERE type='table' AND tbl_name LIKE ?",
-                catalog);
-        try (PreparedStatement ps = this.conn.prepareStatement(query)) {
-            ps.setString(1, tableNamePattern);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    tableList.add(rs.getString(1));
-                }
-            }
-        }
-
-        List<ColumnData> columnList = new ArrayList<>();
-
-        columnNamePattern = columnNamePattern.replaceAll("%", ".*");
-        try (Statement stmt = this.conn.createStatement()) {
-            for (String tableName : tableList) {
-
-                query = Sqlite3.mprintf("PRAGMA %Q.table_info(%Q)", catalog, tableName);
-
-                try (ResultSet rs = stmt.executeQuery(query)) {
-                    while (rs.next()) {
-                        ColumnData cd = new ColumnData(this.conn.getHandle(), catalog, tableName, rs);
-
-                        if (!cd.name.matches(columnNamePattern))
-                            continue;
-                        columnList.add(cd);
-                    }
-                }
-            }
-        }
-
-        String constantQuery = "", limit = "";
-
-        for (int lpc = 0; lpc < columnList.size(); lpc++) {
-            if (!constantQuery.isEmpty())
-                constantQuery += " UNION ALL ";
-            constantQuery += COLUMN_QUERY;
-        }
-        if (constantQuery.isEmpty()) {
-            constantQuery = COLUMN_QUERY;
-            limit = " LIMIT 0";
-        }
-        constantQuery += " ORDER BY TABLE_CAT, TABLE_SCHEM, TABLE_NAME, ORDINAL_POSITION";
-        constantQuery += limit;
-
-        PreparedStatement ps = this.conn.prepareStatement(constantQuery);
+        Pattern tablePattern = likePattern(tableNamePattern);
+        Pattern columnPattern = likePattern(columnNamePattern);
+        List<Object[]> rows = new ArrayList<>();
 
-        ps.closeOnCompletion();
+        for (ColumnData column : this.getSchema(catalog).columns) {
+            if (!tablePattern.matcher(column.tableName).matches())
+                continue;
+            if (!columnPattern.matcher(column.name).matches())
+                continue;
 
-        int index = 1;
-
-        for (ColumnData column : columnList) {
-            ps.setString(index++, catalog);
-            ps.setString(index++, column.tableName);
-            ps.setString(index++, column.name);
-            ps.setInt(index++, column.sqlType);
-            ps.setString(index++, column.type);
-            ps.setInt(index++, 0);
-            ps.setInt(index++, 0);
-            ps.setInt(index++, column.notNull);
-            ps.setString(index++, column.defaultValue);
-            ps.setInt(index++, column.index);
-            ps.setString(index++, column.notNull == columnNoNulls ? "NO" : "YES");
-            ps.setInt(index++, 0);
-            ps.setInt(index++, 0);
+            rows.add(new Object[] {
+                    catalog,
+                    column.tableName,
+                    column.name,
+                    column.sqlType,
+                    column.type,
+                    0,
+                    0,
+                    column.notNull,
+                    column.defaultValue,
+                    column.index,
+                    column.notNull == columnNoNulls ? "NO" : "YES",
+                    0,
+                    0,
+            });
         }
 
-        return ps.executeQuery();
+        return this.executeRowsQuery(COLUMN_QUERY, 13, rows,
+                " ORDER BY TABLE_CAT, TABLE_SCHEM, TABLE_NAME, ORDINAL_POSITION");
     }
 
     @Override
@@ -896,59 +1068,36 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
     }
 
     private static final String PRIMARY_KEY_QUERY =
-            "SELECT ? AS TABLE_CAT, null AS TABLE_SCHEM, ? AS TABLE_NAME, ? AS COLUMN_NAME, " +
-                    "? AS KEY_SEQ, null AS PK_NAME ";
+            "SELECT column1 AS TABLE_CAT, null AS TABLE_SCHEM, column2 AS TABLE_NAME, column3 AS COLUMN_NAME, " +
+                    "column4 AS KEY_SEQ, null AS PK_NAME FROM ";
+
+    /* An unqualified table name is looked up in the temp database first, like SQLite does. */
+    private static final String[] DEFAULT_CATALOGS = { "temp", "main" };
+
+    private static String[] searchCatalogs(String catalog) {
+        return catalog == null ? DEFAULT_CATALOGS : new String[] { catalog };
+    }
 
     @Override
     public ResultSet getPrimaryKeys(String catalog, String schema, String tableName) throws SQLException {
-        List<ColumnData> columnList = new ArrayList<>();
-        String query, limit = "";
+        List<Object[]> rows = new ArrayList<>();
 
-        try (Statement stmt = this.conn.createStatement()) {
-            if (catalog != null)
-                query = Sqlite3.mprintf("PRAGMA %Q.table_info(%Q)", catalog, tableName);
-            else
-                query = Sqlite3.mprintf("PRAGMA table_info(%Q)", tableName);
+        for (String searchCatalog : searchCatalogs(catalog)) {
+            boolean found = false;
 
-            try (ResultSet rs = stmt.executeQuery(query)) {
-                while (rs.next()) {
-                    ColumnData cd = new ColumnData(this.conn.getHandle(), catalog, tableName, rs);
+            for (ColumnData column : this.getSchema(searchCatalog).columns) {
+                if (!column.tableName.equalsIgnoreCase(tableName))
+                    continue;
 
-                    if (cd.primaryKey == 0)
-                        continue;
-                    columnList.add(cd);
-                }
+                found = true;
+                if (column.primaryKey != 0)
+                    rows.add(new Object[] { catalog, tableName, column.name, column.primaryKey });
             }
+            if (found)
+                break;
         }
 
-        String constantQuery = "";
-
-        for (int lpc = 0; lpc < columnList.size(); lpc++) {
-            if (!constantQuery.isEmpty())
-                constantQuery += " UNION ALL ";
-            constantQuery += PRIMARY_KEY_QUERY;
-        }
-        if (constantQuery.isEmpty()) {
-            constantQuery = PRIMARY_KEY_QUERY;
-            limit = " LIMIT 0";
-        }
-        constantQuery += " ORDER BY COLUMN_NAME";
-        constantQuery += limit;
-
-        PreparedStatement ps = this.conn.prepareStatement(constantQuery);
-
-        ps.closeOnCompletion();
-
-        int index = 1;
-
-        for (ColumnData column : columnList) {
-            ps.setString(index++, catalog);
-            ps.setString(index++, tableName);
-            ps.setString(index++, column.name);
-            ps.setInt(index++, column.primaryKey);
-        }
-
-        return ps.executeQuery();
+        return this.executeRowsQuery(PRIMARY_KEY_QUERY, 4, rows, " ORDER BY COLUMN_NAME");
     }
 
     public static class ForeignKeyData {
@@ -1006,111 +1155,39 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
         }
     }
 
-    private Map<String, List<ForeignKeyData>> getForeignKeyData(String catalog) throws SQLException {
-        Map<String, List<ForeignKeyData>> table2Key = new HashMap<>();
-
-        try (Statement stmt = this.conn.createStatement()) {
-            List<String> allTables = new ArrayList<>();
-            String tableQuery;
-
-            /* XXX We need to iterate over all of the catalogs */
-            if (catalog != null) {
-                tableQuery = Sqlite3.mprintf(
-                    "SELECT name FROM %Q.sqlite_master WHERE type='table'", catalog);
-            }
-            else {
-                tableQuery = "SELECT name FROM sqlite_master WHERE type='table'";
-            }
-
-            try (ResultSet rs = stmt.executeQuery(tableQuery)) {
-                while (rs.next()) {
-                    allTables.add(rs.getString(1));
-                }
-            }
-
-            for (String catalogTable : allTables) {
-                try (ResultSet rs = stmt.executeQuery(Sqlite3.mprintf("PRAGMA %Q.foreign_key_list(%Q)",
-                        catalog, catalogTable))) {
-                    while (rs.next()) {
-                        ForeignKeyData fkd = new ForeignKeyData(catalogTable, rs);
-
-                        if (!table2Key.containsKey(fkd.fromTable))
-                            table2Key.put(fkd.fromTable, new ArrayList<ForeignKeyData>());
-                        if (!table2Key.containsKey(fkd.toTable))
-                            table2Key.put(fkd.toTable, new ArrayList<ForeignKeyData>());
-
-                        table2Key.get(fkd.fromTable).add(fkd);
-                        table2Key.get(fkd.toTable).add(fkd);
-                    }
-                }
-            }
-        }
-
-        return table2Key;
-    }
-
-    private static final String FOREIGN_KEY_QUERY = "SELECT ? AS PKTABLE_CAT, " +
-            "NULL AS PKTABLE_SCHEM, ? AS PKTABLE_NAME, " +
-            "? AS PKCOLUMN_NAME, ? AS FKTABLE_CAT, NULL AS FKTABLE_SCHEM, " +
-            "? AS FKTABLE_NAME, ? AS FKCOLUMN_NAME, ? AS KEY_SEQ, ? AS UPDATE_RULE, " +
-            "? AS DELETE_RULE, NULL AS FK_NAME, NULL AS PK_NAME, ? AS DEFERRABILITY ";
+    private static final String FOREIGN_KEY_QUERY = "SELECT column1 AS PKTABLE_CAT, " +
+            "NULL AS PKTABLE_SCHEM, column2 AS PKTABLE_NAME, " +
+            "column3 AS PKCOLUMN_NAME, column4 AS FKTABLE_CAT, NULL AS FKTABLE_SCHEM, " +
+            "column5 AS FKTABLE_NAME, column6 AS FKCOLUMN_NAME, column7 AS KEY_SEQ, column8 AS UPDATE_RULE, " +
+            "column9 AS DELETE_RULE, NULL AS FK_NAME, NULL AS PK_NAME, column10 AS DEFERRABILITY FROM ";
 
     private ResultSet getForeignKeys(String catalog, String fromTable, String toTable) throws SQLException {
-        Map<String, List<ForeignKeyData>> table2Key = getForeignKeyData(catalog);
-        List<ForeignKeyData> columnList = new ArrayList<>();
-        String limit = "";
-
-        if (table2Key.containsKey(fromTable)) {
-            columnList.addAll(table2Key.get(fromTable));
-        }
-        if (table2Key.containsKey(toTable)) {
-            columnList.addAll(table2Key.get(toTable));
-        }
-
-        String constantQuery = "";
-
-        for (ForeignKeyData fkd : columnList) {
-            if (fromTable != null && !fromTable.equals(fkd.fromTable))
-                continue;
-            if (toTable != null && !toTable.equals(fkd.toTable))
-                continue;
-
-            if (!constantQuery.isEmpty())
-                constantQuery += " UNION ALL ";
-            constantQuery += FOREIGN_KEY_QUERY;
-        }
-        if (constantQuery.isEmpty()) {
-            constantQuery = FOREIGN_KEY_QUERY;
-            limit = " LIMIT 0";
-        }
-        constantQuery += " ORDER BY PKTABLE_CAT, PKTABLE_SCHEM, PKTABLE_NAME, KEY_SEQ";
-        constantQuery += limit;
-
-        PreparedStatement ps = this.conn.prepareStatement(constantQuery);
-
-        ps.closeOnCompletion();
-
-        int index = 1;
-
-        for (ForeignKeyData fkd : columnList) {
-            if (fromTable != null && !fromTable.equals(fkd.fromTable))
-                continue;
-            if (toTable != null && !toTable.equals(fkd.toTable))
-                continue;
-
-            ps.setString(index++, catalog);
-            ps.setString(index++, fkd.toTable);
-            ps.setString(index++, fkd.toColumn);
-            ps.setString(index++, catalog);
-            ps.setString(index++, fkd.fromTable);
-            ps.setString(index++, fkd.fromColumn);
-            ps.setInt(index++, fkd.seq + 1);
-            ps.setInt(index++, fkd.onUpdate);
-            ps.setInt(index++, fkd.onDelete);
-            ps.setInt(index++, importedKeyInitiallyImmediate); // XXX
+        List<Object[]> rows = new ArrayList<>();
+
+        for (String searchCatalog : searchCatalogs(catalog)) {
+            for (ForeignKeyData fkd : this.getSchema(searchCatalog).foreignKeys) {
+                if (fromTable != null && !fromTable.equalsIgnoreCase(fkd.fromTable))
+                    continue;
+                if (toTable != null && !toTable.equalsIgnoreCase(fkd.toTable))
+                    continue;
+
+                rows.add(new Object[] {
+                        catalog,
+                        fkd.toTable,
+                        fkd.toColumn,
+                        catalog,
+                        fkd.fromTable,
+                        fkd.fromColumn,
+                        fkd.seq + 1,
+                        fkd.onUpdate,
+                        fkd.onDelete,
+                        importedKeyInitiallyImmediate, // XXX
+                });
+            }
         }
 
-        return ps.executeQuery();
+        return this.executeRowsQuery(FOREIGN_KEY_QUERY, 10, rows,
+                " ORDER BY PKTABLE_CAT, PKTABLE_SCHEM, PKTABLE_NAME, KEY_SEQ");
     }
 
     /**
@@ -1224,7 +1301,7 @@ public class SqliteDatabaseMetadata implements DatabaseMetaData {
 
     @Override
     public Connection getConnection() throws SQLException {
-        return this.conn;
+        return this.owner;
     }
 
     @Override
@@ -79,7 +79,14 @@ public class SqliteDriver implements Driver {
 
     @Override
     public DriverPropertyInfo[] getPropertyInfo(String s, Properties properties) throws SQLException {
-        return new DriverPropertyInfo[0];
+        Properties merged = properties;
+
+        if (SqliteUrl.isSqliteUrl(s))
+            merged = new SqliteUrl(s).merge(properties);
+        else if (merged == null)
+            merged = new Properties();
+
+        return SqliteProperty.getPropertyInfo(merged);
     }
 
     @Override
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Process-wide memory statistics for the SQLite library.  The values are
+ * read from the library when an attribute is requested, so there is no
+ * cost when nobody is looking.
+ */
+public class SqliteMemoryStats implements SqliteMemoryStatsMBean {
+    public static final String OBJECT_NAME = "org.sqlitejdbcng:type=Memory";
+
+    private static final SqliteMemoryStats INSTANCE = new SqliteMemoryStats();
+
+    private static boolean registered;
+
+    private final Pointer<Long> current = Pointer.allocateLong();
+    private final Pointer<Long> highwater = Pointer.allocateLong();
+    private final Pointer<Integer> current32 = Pointer.allocateInt();
+    private final Pointer<Integer> highwater32 = Pointer.allocateInt();
+    private boolean haveStatus64 = true;
+
+    private SqliteMemoryStats() {
+    }
+
+    public static SqliteMemoryStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register the MBean with the platform MBean server, if it has not
+     * been registered already.
+     */
+    public static synchronized void register() throws JMException {
+        if (!registered) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (!server.isRegistered(name))
+                server.registerMBean(INSTANCE, name);
+            registered = true;
+        }
+    }
+
+    public static synchronized void unregister() throws JMException {
+        if (registered) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+            registered = false;
+        }
+    }
+
+    private synchronized long status(Sqlite3.StatusOp op, boolean wantHighwater, boolean reset) {
+        int resetFlag = reset ? 1 : 0;
+
+        if (this.haveStatus64) {
+            try {
+                Sqlite3.sqlite3_status64(op.value(), this.current, this.highwater, resetFlag);
+                return wantHighwater ? this.highwater.getLong() : this.current.getLong();
+            }
+            catch (UnsatisfiedLinkError e) {
+                this.haveStatus64 = false;
+            }
+        }
+
+        Sqlite3.sqlite3_status(op.value(), this.current32, this.highwater32, resetFlag);
+
+        return wantHighwater ? this.highwater32.getInt() : this.current32.getInt();
+    }
+
+    @Override
+    public long getMemoryUsed() {
+        return Sqlite3.sqlite3_memory_used();
+    }
+
+    @Override
+    public long getMemoryHighwater() {
+        return Sqlite3.sqlite3_memory_highwater(0);
+    }
+
+    @Override
+    public long getPageCacheUsed() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_PAGECACHE_USED, false, false);
+    }
+
+    @Override
+    public long getPageCacheOverflow() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_PAGECACHE_OVERFLOW, false, false);
+    }
+
+    @Override
+    public long getPageCacheOverflowHighwater() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_PAGECACHE_OVERFLOW, true, false);
+    }
+
+    @Override
+    public long getLargestAllocation() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_MALLOC_SIZE, true, false);
+    }
+
+    @Override
+    public long getMallocCount() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_MALLOC_COUNT, false, false);
+    }
+
+    @Override
+    public long getParserStackHighwater() {
+        return this.status(Sqlite3.StatusOp.SQLITE_STATUS_PARSER_STACK, true, false);
+    }
+
+    @Override
+    public void resetHighwater() {
+        Sqlite3.sqlite3_memory_highwater(1);
+        for (Sqlite3.StatusOp op : Sqlite3.StatusOp.values()) {
+            this.status(op, true, true);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A physical connection that is managed by an external connection pool,
+ * as returned by SqliteDataSource.getPooledConnection().
+ */
+public class SqlitePooledConnection implements PooledConnection, SqliteConnectionHandle.Source {
+    private final SqliteConnection conn;
+    private final List<ConnectionEventListener> connectionListeners = new CopyOnWriteArrayList<>();
+    private SqliteConnectionHandle handle;
+    private boolean closed;
+
+    SqlitePooledConnection(SqliteConnection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * JDBC Spec 11.4: Only one logical connection can be open at a time,
+     * asking for another one closes the previous one.
+     */
+    @Override
+    public synchronized Connection getConnection() throws SQLException {
+        if (this.closed)
+            throw new SQLNonTransientConnectionException("Pooled connection is closed");
+
+        SqliteConnectionHandle previous = this.handle;
+
+        this.handle = new SqliteConnectionHandle(this);
+        if (previous != null)
+            previous.close();
+
+        return this.handle;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (!this.closed) {
+            this.closed = true;
+            this.conn.close();
+        }
+    }
+
+    @Override
+    public SqliteConnection acquire(boolean readOnly) throws SQLException {
+        synchronized (this) {
+            if (this.closed)
+                throw new SQLNonTransientConnectionException("Pooled connection is closed");
+        }
+
+        return this.conn;
+    }
+
+    @Override
+    public void release(SqliteConnection conn) throws SQLException {
+        ConnectionEvent event = new ConnectionEvent(this);
+
+        if (conn.isClosed()) {
+            for (ConnectionEventListener listener : this.connectionListeners) {
+                listener.connectionErrorOccurred(event);
+            }
+        }
+    }
+
+    @Override
+    public void handleClosed(SqliteConnectionHandle closedHandle) {
+        ConnectionEvent event = new ConnectionEvent(this);
+
+        synchronized (this) {
+            if (closedHandle != this.handle)
+                return;
+            this.handle = null;
+        }
+        for (ConnectionEventListener listener : this.connectionListeners) {
+            listener.connectionClosed(event);
+        }
+    }
+
+    @Override
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        this.connectionListeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        this.connectionListeners.remove(listener);
+    }
+
+    /**
+     * Statement pooling is done by the statement cache of the physical
+     * connection, so there are no statement events to report.
+     */
+    @Override
+    public void addStatementEventListener(StatementEventListener listener) {
+    }
+
+    @Override
+    public void removeStatementEventListener(StatementEventListener listener) {
+    }
+}
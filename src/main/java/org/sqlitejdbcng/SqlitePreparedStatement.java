@@ -26,11 +26,17 @@
 
 package org.sqlitejdbcng;
 
-import org.bridj.BridJ;
 import org.bridj.Pointer;
-import org.bridj.util.Pair;
 import org.sqlitejdbcng.bridj.Sqlite3;
-import org.sqlitejdbcng.internal.TimeoutProgressCallback;
+import org.sqlitejdbcng.internal.BindArena;
+import org.sqlitejdbcng.internal.ColumnData;
+import org.sqlitejdbcng.internal.ColumnLabelMap;
+import org.sqlitejdbcng.internal.DriverEvents;
+import org.sqlitejdbcng.internal.InsertRewriter;
+import org.sqlitejdbcng.internal.NativeCallCounter;
+import org.sqlitejdbcng.internal.ParameterBatch;
+import org.sqlitejdbcng.internal.ParameterSlots;
+import org.sqlitejdbcng.internal.QueryTimeout;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -38,32 +44,82 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.List;
 
 public class SqlitePreparedStatement extends SqliteStatement implements PreparedStatement {
-    private static final Integer INTEGER_ZERO = 0;
-    private static final Integer INTEGER_ONE = 1;
+    /** The most rows that are inserted at once when rewriting a batch. */
+    private static final int MAX_CHUNK_ROWS = 256;
 
     private final Pointer<Sqlite3.Statement> stmt;
+    private final String nativeSql;
     private ParameterMetaData metadata;
     private final int paramCount;
-    private final Object[] paramValues;
-    private final int[] paramTypes;
-    private final List<Pair<Object[], int[]>> batchParamList = new ArrayList<>();
+    private final ParameterSlots params;
+    private final BindArena arena;
+    private final ParameterBatch batch;
+    private InsertRewriter rewriter;
+    private int maxChunkRows;
+    private ParameterSlots chunkParams;
+    private BindArena chunkArena;
+    private boolean alwaysRewrite;
+    private ColumnLabelMap labelMap;
+    private ColumnData[] columnCache;
 
-    public SqlitePreparedStatement(SqliteConnection conn, Pointer<Sqlite3.Statement> stmt, String query)
+    /**
+     * The columns of a prepared statement only change when SQLite
+     * re-prepares it after a schema change, so the label map and column
+     * metadata are kept across executions until a result set reports that
+     * happening.
+     */
+    @Override
+    ColumnLabelMap getColumnLabelMap(Pointer<Sqlite3.Statement> stmt) {
+        if (!stmt.equals(this.stmt))
+            return super.getColumnLabelMap(stmt);
+
+        if (this.labelMap == null)
+            this.labelMap = ColumnLabelMap.fromStatement(stmt);
+
+        return this.labelMap;
+    }
+
+    @Override
+    ColumnData[] getColumnDataCache(Pointer<Sqlite3.Statement> stmt) {
+        if (!stmt.equals(this.stmt))
+            return super.getColumnDataCache(stmt);
+
+        if (this.columnCache == null)
+            this.columnCache = new ColumnData[Sqlite3.sqlite3_column_count(stmt)];
+
+        return this.columnCache;
+    }
+
+    @Override
+    boolean isWatchingColumns(Pointer<Sqlite3.Statement> stmt) {
+        return (this.labelMap != null || this.columnCache != null) && stmt.equals(this.stmt);
+    }
+
+    @Override
+    void columnsChanged() {
+        this.labelMap = null;
+        this.columnCache = null;
+    }
+
+    public SqlitePreparedStatement(SqliteConnection conn,
+                                   Pointer<Sqlite3.Statement> stmt,
+                                   String query,
+                                   String nativeSql)
             throws SQLException {
         super(conn);
 
         this.stmt = stmt;
+        this.nativeSql = nativeSql;
         this.lastQuery = query;
+        this.poolable = true;
         this.paramCount = Sqlite3.sqlite3_bind_parameter_count(stmt);
-        this.paramValues = new Object[this.paramCount];
-        this.paramTypes = new int[this.paramCount];
-        Arrays.fill(this.paramTypes, -1);
+        this.params = new ParameterSlots(this.paramCount);
+        this.arena = new BindArena(this.paramCount);
+        this.batch = new ParameterBatch(this.paramCount);
     }
 
     int checkParam(int index) {
@@ -80,78 +136,104 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
         if (!this.closed) {
             super.close();
 
-            Sqlite3.sqlite3_finalize(this.stmt);
+            this.conn.releaseStatement(this.nativeSql, this.stmt, this.poolable);
+            /* The handle no longer refers to the bound values, so they can be freed. */
+            this.arena.release();
+            if (this.chunkArena != null)
+                this.chunkArena.release();
         }
     }
 
-    void bindParameters(Object[] values, int[] types) throws SQLException {
+    /**
+     * Reset the statement handle and bind the given parameter values to it.
+     *
+     * @param all If false, only the values that changed since the last
+     *   time they were bound are passed to SQLite.  The bindings survive
+     *   a sqlite3_reset(), so there is no need to redo the others.
+     */
+    void bindParameters(ParameterSlots values, boolean all) throws SQLException {
+        this.conn.getStatementStats().record(this.stmt);
         Sqlite3.checkOk(Sqlite3.sqlite3_reset(this.stmt));
-        for (int lpc = 0; lpc < this.paramCount; lpc++) {
+        NativeCallCounter.record();
+        bindValues(this.stmt, this.conn.getHandle(), values, this.arena, this.paramCount, all);
+    }
+
+    /**
+     * Bind the first count values in the given slots to a statement handle.
+     * Text and blob values are stored in the arena, which must stay alive
+     * until the bindings are replaced or cleared.
+     */
+    static void bindValues(Pointer<Sqlite3.Statement> stmt,
+                           Pointer<Sqlite3.Sqlite3Db> db,
+                           ParameterSlots values,
+                           BindArena arena,
+                           int count,
+                           boolean all) throws SQLException {
+        if (!all && !values.isAnyDirty())
+            return;
+
+        for (int lpc = 0; lpc < count; lpc++) {
             int rc;
 
-            switch (types[lpc]) {
+            if (!all && !values.isDirty(lpc))
+                continue;
+
+            switch (values.types[lpc]) {
                 case -1:
                 case Types.NULL:
-                    rc = Sqlite3.sqlite3_bind_null(this.stmt, lpc + 1);
+                    rc = Sqlite3.sqlite3_bind_null(stmt, lpc + 1);
                     break;
-                case Types.TINYINT:
                 case Types.INTEGER:
-                    rc = Sqlite3.sqlite3_bind_int(this.stmt, lpc + 1, ((Number) values[lpc]).intValue());
+                    rc = Sqlite3.sqlite3_bind_int(stmt, lpc + 1, (int) values.longs[lpc]);
                     break;
                 case Types.BIGINT:
-                    rc = Sqlite3.sqlite3_bind_int64(this.stmt, lpc + 1, ((Number) values[lpc]).longValue());
+                    rc = Sqlite3.sqlite3_bind_int64(stmt, lpc + 1, values.longs[lpc]);
                     break;
-                case Types.FLOAT:
                 case Types.DOUBLE:
-                    rc = Sqlite3.sqlite3_bind_double(this.stmt, lpc + 1, ((Number) values[lpc]).doubleValue());
+                    rc = Sqlite3.sqlite3_bind_double(stmt, lpc + 1, values.doubles[lpc]);
                     break;
                 case Types.VARCHAR: {
-                    String str = (String) values[lpc];
-                    Pointer<Byte> ptr = Pointer.pointerToCString(str);
-                    Sqlite3.BufferDestructorBase destructor = new Sqlite3.BufferDestructor(ptr);
+                    Pointer<Byte> ptr = arena.putString(lpc, (String) values.objects[lpc]);
 
-                    BridJ.protectFromGC(destructor);
                     rc = Sqlite3.sqlite3_bind_text(
-                            this.stmt,
+                            stmt,
                             lpc + 1,
                             ptr,
-                            ((int)ptr.getValidBytes()) - 1,
-                            Pointer.pointerTo(destructor));
+                            arena.length(lpc),
+                            Sqlite3.SQLITE_STATIC);
                     break;
                 }
                 case Types.VARBINARY: {
-                    byte[] bytes = (byte[]) values[lpc];
-                    Pointer<Byte> ptr = Pointer.pointerToBytes(bytes);
-                    Sqlite3.BufferDestructorBase destructor = new Sqlite3.BufferDestructor(ptr);
+                    Pointer<Byte> ptr = arena.putBytes(lpc, (byte[]) values.objects[lpc]);
 
-                    BridJ.protectFromGC(destructor);
                     rc = Sqlite3.sqlite3_bind_blob(
-                            this.stmt,
+                            stmt,
                             lpc + 1,
                             ptr,
-                            bytes.length,
-                            Pointer.pointerTo(destructor));
+                            arena.length(lpc),
+                            Sqlite3.SQLITE_STATIC);
                     break;
                 }
                 case Types.BLOB: {
-                    SqliteBlob sb = (SqliteBlob)values[lpc];
-                    Sqlite3.BufferDestructorBase destructor = new Sqlite3.BufferDestructor(sb.getHandle());
+                    SqliteBlob sb = (SqliteBlob)values.objects[lpc];
 
-                    BridJ.protectFromGC(destructor);
+                    /* The application owns the blob, so SQLite has to make its own copy. */
                     rc = Sqlite3.sqlite3_bind_blob(
-                            this.stmt,
+                            stmt,
                             lpc + 1,
                             sb.getHandle(),
                             (int) sb.length(),
-                            Pointer.pointerTo(destructor));
+                            Sqlite3.SQLITE_TRANSIENT);
                     break;
                 }
                 default:
                     throw new SQLException("Internal error: unhandled SQL value -- (" +
-                            types[lpc] + ") " + values[lpc]);
+                            values.types[lpc] + ") " + values.objects[lpc]);
             }
-            Sqlite3.checkOk(rc, this.conn.getHandle());
+            NativeCallCounter.record();
+            Sqlite3.checkOk(rc, db);
         }
+        values.markClean();
     }
 
     @Override
@@ -163,34 +245,201 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
     public void clearBatch() throws SQLException {
         requireOpened();
 
-        this.batchParamList.clear();
+        this.batch.clear();
     }
 
+    /**
+     * Execute the batched parameter sets in a tight bind/step/reset loop.
+     *
+     * If the connection is in auto-commit mode, the whole batch is run in
+     * a single transaction instead of one per row.  When a row fails, the
+     * rows before it are still committed, as they would have been without
+     * the transaction, and their update counts are reported in the
+     * BatchUpdateException.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public int[] executeBatch() throws SQLException {
-        Pair[] batchCopy = this.batchParamList.toArray(new Pair[this.batchList.size()]);
-        int[] retval = new int[batchCopy.length];
+        requireOpened();
+
+        int rows = this.batch.size();
+        int[] retval = new int[rows];
+
+        if (rows == 0)
+            return retval;
+
+        Pointer<Sqlite3.Sqlite3Db> db = this.conn.getHandle();
+        boolean implicitTransaction = this.conn.getAutoCommit();
+        boolean readOnly = Sqlite3.stmt_readonly(this.stmt, this.lastQuery) != 0;
+        ParameterSlots current = new ParameterSlots(this.paramCount);
+        SQLException failure = null;
         int index = 0;
 
-        this.batchParamList.clear();
+        this.clearWarnings();
+        this.replaceResultSet(null);
+        try {
+            if (implicitTransaction)
+                this.conn.executeCanned("BEGIN");
+
+            try (QueryTimeout cb = this.queryTimeout.setExpiration(
+                    this.getQueryTimeout() * 1000)) {
+                int totalChanges = Sqlite3.sqlite3_total_changes(db);
+
+                this.conn.beginWrite(this.stmt);
+                while (index < rows) {
+                    int chunkRows = this.getChunkRows(rows - index);
+                    int rc;
+
+                    if (chunkRows > 1) {
+                        this.executeChunk(index, chunkRows, retval, cb);
+                        index += chunkRows;
+                        totalChanges = Sqlite3.sqlite3_total_changes(db);
+                        continue;
+                    }
+
+                    this.batch.load(index, current);
+                    this.bindParameters(current, false);
+                    rc = Sqlite3.sqlite3_step(this.stmt);
+                    NativeCallCounter.record();
+                    if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
+                        throw new SQLTimeoutException("Query timeout reached");
+                    }
+                    if (rc != Sqlite3.ReturnCodes.SQLITE_DONE.value() &&
+                            rc != Sqlite3.ReturnCodes.SQLITE_ROW.value()) {
+                        Sqlite3.checkOk(rc, db);
+                    }
+
+                    if (readOnly) {
+                        retval[index] = SUCCESS_NO_INFO;
+                    }
+                    else {
+                        /* See SqliteStatement.execute() for why the total is checked. */
+                        int newTotal = Sqlite3.sqlite3_total_changes(db);
+
+                        retval[index] = newTotal != totalChanges ? Sqlite3.sqlite3_changes(db) : 0;
+                        totalChanges = newTotal;
+                    }
+                    index += 1;
+                }
+            }
+        }
+        catch (SQLException e) {
+            failure = e;
+        }
+        finally {
+            this.conn.getStatementStats().record(this.stmt);
+            Sqlite3.sqlite3_reset(this.stmt);
+            this.batch.clear();
+            /* The handle now holds the values from the batch. */
+            this.params.markAllDirty();
+        }
 
-        for (Pair pair : batchCopy) {
-            try {
-                this.clearWarnings();
-                this.replaceResultSet(new SqliteResultSet(this, this.stmt, this.maxRows));
-                this.bindParameters((Object[])pair.getFirst(), (int[])pair.getSecond());
-                this.executeUpdate();
-                retval[index] = this.lastUpdateCount;
+        try {
+            if (implicitTransaction && this.conn.getAutoCommit()) {
+                /* Some errors make SQLite roll back the whole transaction. */
+                if (failure != null)
+                    index = 0;
             }
-            catch (SQLException e) {
-                throw new BatchUpdateException(e);
+            else if (implicitTransaction) {
+                try {
+                    this.conn.executeCanned("COMMIT");
+                }
+                catch (SQLException e) {
+                    index = 0;
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.setNextException(e);
+                    this.conn.executeCanned("ROLLBACK");
+                }
             }
-            index += 1;
+        }
+        finally {
+            this.conn.endWrite();
+        }
+        if (failure != null) {
+            throw new BatchUpdateException(failure.getMessage(),
+                    failure.getSQLState(),
+                    failure.getErrorCode(),
+                    Arrays.copyOf(retval, index),
+                    failure);
         }
 
         return retval;
     }
 
+    /**
+     * @return The number of rows to insert with the next statement when
+     *   executing a batch, 1 if the batch cannot be rewritten into
+     *   multi-row inserts.  Chunks are always a power of two in size to
+     *   limit the number of different statements that need to be prepared.
+     */
+    private int getChunkRows(int remaining) throws SQLException {
+        if (remaining < 2 || !(this.alwaysRewrite || this.conn.getRewriteBatchedInserts()))
+            return 1;
+
+        if (this.maxChunkRows == 0) {
+            this.maxChunkRows = 1;
+            this.rewriter = InsertRewriter.forSql(this.nativeSql, this.paramCount);
+            if (this.rewriter != null) {
+                int maxVars = Sqlite3.sqlite3_limit(this.conn.getHandle(),
+                        Sqlite3.Limit.SQLITE_LIMIT_VARIABLE_NUMBER.value(), -1);
+
+                this.maxChunkRows = Integer.highestOneBit(
+                        Math.max(1, Math.min(MAX_CHUNK_ROWS, maxVars / this.paramCount)));
+            }
+        }
+
+        return Integer.highestOneBit(Math.min(remaining, this.maxChunkRows));
+    }
+
+    /**
+     * Insert several rows from the batch with a single multi-row INSERT.
+     * The rewritten statements are kept in the connection's statement
+     * cache, so there is one prepared handle per chunk size.
+     */
+    private void executeChunk(int start, int chunkRows, int[] retval, QueryTimeout cb)
+            throws SQLException {
+        Pointer<Sqlite3.Sqlite3Db> db = this.conn.getHandle();
+        String sql = this.rewriter.getSql(chunkRows);
+        Pointer<Sqlite3.Statement> chunkStmt = this.conn.prepare(sql);
+
+        if (this.chunkParams == null) {
+            this.chunkParams = new ParameterSlots(this.maxChunkRows * this.paramCount);
+            this.chunkArena = new BindArena(this.maxChunkRows * this.paramCount);
+        }
+
+        try {
+            int rc;
+
+            for (int lpc = 0; lpc < chunkRows; lpc++) {
+                this.batch.load(start + lpc, this.chunkParams, lpc * this.paramCount);
+            }
+            bindValues(chunkStmt, db, this.chunkParams, this.chunkArena, chunkRows * this.paramCount, true);
+            rc = Sqlite3.sqlite3_step(chunkStmt);
+            NativeCallCounter.record();
+            if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
+                throw new SQLTimeoutException("Query timeout reached");
+            }
+            if (rc != Sqlite3.ReturnCodes.SQLITE_DONE.value()) {
+                Sqlite3.checkOk(rc, db);
+            }
+
+            /*
+             * The changes are only known for the chunk as a whole, which is
+             * enough when every row was inserted.  Otherwise, as with
+             * INSERT OR IGNORE, it is not known which rows were skipped.
+             */
+            Arrays.fill(retval, start, start + chunkRows,
+                    Sqlite3.sqlite3_changes(db) == chunkRows ? 1 : SUCCESS_NO_INFO);
+        }
+        finally {
+            /* This clears the bindings, so the arena can be reused. */
+            this.conn.releaseStatement(sql, chunkStmt, true);
+        }
+    }
+
     @Override
     public ResultSet executeQuery(String s) throws SQLException {
         throw new SQLNonTransientException("Use the no-argument version of executeQuery() to execute a prepared statement");
@@ -217,7 +466,7 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
         }
 
         this.replaceResultSet(new SqliteResultSet(this, this.stmt, this.maxRows));
-        this.bindParameters(this.paramValues, this.paramTypes);
+        this.bindParameters(this.params, false);
 
         return this.lastResult;
     }
@@ -255,22 +504,28 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
 
     @Override
     public void setInt(int i, int val) throws SQLException {
-        this.setObject(i, val, Types.INTEGER);
+        requireOpened();
+
+        this.params.setLong(checkParam(i) - 1, Types.INTEGER, val);
     }
 
     @Override
     public void setLong(int i, long val) throws SQLException {
-        this.setObject(i, val, Types.BIGINT);
+        requireOpened();
+
+        this.params.setLong(checkParam(i) - 1, Types.BIGINT, val);
     }
 
     @Override
     public void setFloat(int i, float val) throws SQLException {
-        this.setObject(i, val, Types.FLOAT);
+        this.setDouble(i, val);
     }
 
     @Override
     public void setDouble(int i, double val) throws SQLException {
-        this.setObject(i, val, Types.DOUBLE);
+        requireOpened();
+
+        this.params.setDouble(checkParam(i) - 1, val);
     }
 
     @Override
@@ -322,8 +577,7 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
     public void clearParameters() throws SQLException {
         requireOpened();
 
-        Arrays.fill(this.paramValues, null);
-        Arrays.fill(this.paramTypes, -1);
+        this.params.clear();
     }
 
     @Override
@@ -384,20 +638,35 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
 
         this.clearWarnings();
 
-        this.bindParameters(this.paramValues, this.paramTypes);
+        this.bindParameters(this.params, false);
+
+        return this.executeBound();
+    }
+
+    /**
+     * Execute the statement with the parameters that are already bound.
+     */
+    private boolean executeBound() throws SQLException {
         if (Sqlite3.stmt_readonly(this.stmt, this.lastQuery) != 0) {
             this.replaceResultSet(new SqliteResultSet(this, this.stmt, this.maxRows));
         }
         else {
             int rc;
+            DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.EXECUTE, this.nativeSql);
 
-            try (TimeoutProgressCallback cb = this.timeoutCallback.setExpiration(
+            try (QueryTimeout cb = this.queryTimeout.setExpiration(
                     this.getQueryTimeout() * 1000)) {
-                rc = Sqlite3.sqlite3_step(stmt);
+                rc = this.conn.step(this.stmt);
                 if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
                     throw new SQLTimeoutException("Query timeout reached");
                 }
             }
+            finally {
+                if (event != null) {
+                    event.setRows(Sqlite3.sqlite3_changes(this.conn.getHandle()));
+                    event.commit();
+                }
+            }
 
             switch (Sqlite3.ReturnCodes.valueOf(rc)) {
                 case SQLITE_OK:
@@ -420,7 +689,27 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
     public void addBatch() throws SQLException {
         requireOpened();
 
-        this.batchParamList.add(new Pair<>(this.paramValues, this.paramTypes));
+        this.batch.add(this.params);
+    }
+
+    /**
+     * Add a row of values that were collected outside of the statement, as
+     * done by SqliteAppender.
+     */
+    void addBatch(ParameterSlots row) {
+        this.batch.add(row);
+    }
+
+    int getParameterCount() {
+        return this.paramCount;
+    }
+
+    /**
+     * Rewrite batches into multi-row inserts, if possible, regardless of
+     * the connection setting.
+     */
+    void setAlwaysRewrite(boolean alwaysRewrite) {
+        this.alwaysRewrite = alwaysRewrite;
     }
 
     @Override
@@ -567,11 +856,10 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
     @Override
     public void setObject(int i, Object o, int targetSqlType, int scaleOrLength) throws SQLException {
         requireOpened();
-        checkParam(i);
+        int index = checkParam(i) - 1;
 
         if (o == null) {
-            this.paramTypes[i - 1] = Types.NULL;
-            this.paramValues[i - 1] = null;
+            this.params.setNull(index);
             return;
         }
 
@@ -585,50 +873,42 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
             case Types.STRUCT:
                 throw new SQLFeatureNotSupportedException("SQLite does not support the given type");
             case Types.NULL:
-                this.paramValues[i - 1] = null;
+                this.params.setNull(index);
                 break;
             case Types.BIGINT:
                 if (o instanceof Number)
-                    this.paramValues[i - 1] = o;
+                    this.params.setLong(index, Types.BIGINT, ((Number)o).longValue());
                 else
                     throw new SQLNonTransientException("Conversion to long not supported for value -- " + o);
                 break;
             case Types.BLOB:
             case Types.BINARY:
             case Types.VARBINARY:
-                if (o instanceof byte[]) {
-                    this.paramValues[i - 1] = o;
-                    targetSqlType = Types.VARBINARY;
-                }
-                else if (o instanceof Blob) {
-                    this.paramValues[i - 1] = o;
-                    targetSqlType = Types.BLOB;
-                }
+                if (o instanceof byte[])
+                    this.params.setObject(index, Types.VARBINARY, o);
+                else if (o instanceof Blob)
+                    this.params.setObject(index, Types.BLOB, o);
                 else
                     throw new SQLNonTransientException("Conversion to long not supported for value -- " + o);
                 break;
             case Types.BIT:
             case Types.BOOLEAN:
-                if (o instanceof Boolean) {
-                    this.paramValues[i - 1] = ((Boolean)o).booleanValue() ? INTEGER_ONE : INTEGER_ZERO;
-                    targetSqlType = Types.INTEGER;
-                }
+                if (o instanceof Boolean)
+                    this.params.setLong(index, Types.INTEGER, ((Boolean)o).booleanValue() ? 1 : 0);
                 else if (o instanceof Number)
-                    this.paramValues[i - 1] = o;
+                    this.params.setLong(index, Types.INTEGER, ((Number)o).intValue());
                 else
                     throw new SQLNonTransientException("Conversion to boolean not supported for value -- " + o);
                 break;
             case Types.CHAR:
-                if (o instanceof Character) {
-                    this.paramValues[i - 1] = o.toString();
-                    targetSqlType = Types.VARCHAR;
-                }
+                if (o instanceof Character)
+                    this.params.setObject(index, Types.VARCHAR, o.toString());
                 else
                     throw new SQLNonTransientException("Conversion to boolean not supported for value -- " + o);
                 break;
             case Types.CLOB:
                 if (o instanceof Clob)
-                    this.paramValues[i - 1] = o;
+                    this.params.setObject(index, Types.CLOB, o);
                 else
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
@@ -639,40 +919,30 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
             case Types.DECIMAL:
-                if (o instanceof BigDecimal) {
-                    this.paramValues[i - 1] = ((BigDecimal)o).toPlainString();
-                    targetSqlType = Types.VARCHAR;
-                }
-                else if (o instanceof Number) {
-                    this.paramValues[i - 1] = o;
-                    targetSqlType = Types.BIGINT;
-                }
+                if (o instanceof BigDecimal)
+                    this.params.setObject(index, Types.VARCHAR, ((BigDecimal)o).toPlainString());
+                else if (o instanceof Number)
+                    this.params.setLong(index, Types.BIGINT, ((Number)o).longValue());
                 else
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
             case Types.FLOAT:
-                if (o instanceof Number)
-                    this.paramValues[i - 1] = o;
-                else
-                    throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
-                break;
             case Types.REAL:
             case Types.DOUBLE:
                 if (o instanceof Number)
-                    this.paramValues[i - 1] = o;
+                    this.params.setDouble(index, ((Number)o).doubleValue());
                 else
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
             case Types.INTEGER:
             case Types.TINYINT:
                 if (o instanceof Number)
-                    this.paramValues[i - 1] = o;
+                    this.params.setLong(index, Types.INTEGER, ((Number)o).intValue());
                 else
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
             case Types.NUMERIC:
-                this.paramValues[i - 1] = o.toString();
-                targetSqlType = Types.VARCHAR;
+                this.params.setObject(index, Types.VARCHAR, o.toString());
                 break;
             case Types.TIME:
                 if (o instanceof Time)
@@ -689,12 +959,11 @@ public class SqlitePreparedStatement extends SqliteStatement implements Prepared
                     throw new SQLNonTransientException("Conversion to long not support for value -- " + o);
                 break;
             case Types.VARCHAR:
-                this.paramValues[i - 1] = o.toString();
+                this.params.setObject(index, Types.VARCHAR, o.toString());
                 break;
             default:
                 throw new SQLFeatureNotSupportedException("SQLite does not support the given type");
         }
-        this.paramTypes[i - 1] = targetSqlType;
     }
 
     @Override
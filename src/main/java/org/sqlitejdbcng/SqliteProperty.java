@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.*;
+
+/**
+ * The connection properties that are understood by the driver.  They can be
+ * passed in the Properties given to DriverManager.getConnection() or as
+ * query parameters in the URL, for example:
+ *
+ *   jdbc:sqlite:/tmp/test.db?journal_mode=WAL&synchronous=NORMAL
+ *
+ * Values in the URL take precedence over the Properties.  All of the values
+ * are checked before the database is opened and then applied once, in the
+ * order they are declared here, right after the open succeeds.  The
+ * sqlite3_limit() values can be set with the "limit." prefix followed by the
+ * lower-case name of the limit, e.g. "limit.variable_number".
+ */
+public enum SqliteProperty {
+    /*
+     * The threading mode is part of the open flags, so there is nothing left
+     * to do for it after the open.
+     */
+    THREADING_MODE("threading_mode",
+            "MULTITHREAD opens the connection without a mutex, it is only safe when the connection " +
+                    "is used by one thread at a time.  SERIALIZED always uses a mutex.",
+            "SERIALIZED", "MULTITHREAD") {
+        /* A library built with SQLITE_THREADSAFE=0 has no mutexes to turn on or off. */
+        @Override
+        String normalize(String value) throws SQLException {
+            String retval = super.normalize(value);
+
+            if (Sqlite3.sqlite3_threadsafe() == 0) {
+                throw new SQLNonTransientConnectionException("Unable to use " + this.getKey() + "=" + retval +
+                        ", the SQLite library was built without thread support");
+            }
+
+            return retval;
+        }
+
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+        }
+    },
+    BUSY_TIMEOUT("busy_timeout",
+            "Milliseconds to wait for a lock held by another connection before failing with SQLITE_BUSY.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, 0, Integer.MAX_VALUE);
+        }
+
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.setBusyTimeout(Integer.parseInt(value));
+        }
+    },
+    /* The page size has to be set before anything creates the database file. */
+    PAGE_SIZE("page_size",
+            "The page size for a new database, a power of two between 512 and 65536.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            String retval = checkLong(this, value, 512, 65536);
+            int size = Integer.parseInt(retval);
+
+            if ((size & (size - 1)) != 0)
+                throw invalid(this, value);
+
+            return retval;
+        }
+    },
+    /*
+     * SQLite quietly keeps the old mode when it cannot switch, e.g. WAL on an
+     * in-memory database, so the mode it reports back has to be checked.
+     */
+    LOCKING_MODE("locking_mode",
+            "The database locking mode.",
+            "NORMAL", "EXCLUSIVE") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            applyMode(conn, this, value);
+        }
+    },
+    JOURNAL_MODE("journal_mode",
+            "The rollback journal mode, WAL allows readers to run concurrently with a writer.",
+            "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            applyMode(conn, this, value);
+        }
+    },
+    SYNCHRONOUS("synchronous",
+            "How often SQLite syncs to disk, NORMAL is safe when combined with WAL.",
+            "OFF", "NORMAL", "FULL", "EXTRA"),
+    CACHE_SIZE("cache_size",
+            "The page cache size, in pages if positive or in KiB if negative.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+    },
+    MMAP_SIZE("mmap_size",
+            "The maximum number of bytes of the database file to access through memory-mapped I/O.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, 0, Long.MAX_VALUE);
+        }
+    },
+    TEMP_STORE("temp_store",
+            "Where temporary tables and indices are kept.",
+            "DEFAULT", "FILE", "MEMORY"),
+    STATEMENT_CACHE_SIZE("statement_cache_size",
+            "The number of idle prepared statements to keep per connection.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, 0, Integer.MAX_VALUE);
+        }
+
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.setStatementCacheSize(Integer.parseInt(value));
+        }
+    },
+    REWRITE_BATCHED_INSERTS("rewrite_batched_inserts",
+            "Rewrite batches of simple INSERT statements into multi-row inserts.",
+            "true", "false") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.setRewriteBatchedInserts(Boolean.parseBoolean(value));
+        }
+    },
+    WRITER_LOCK("writer_lock",
+            "Make write transactions from connections in this JVM to the same file wait their turn on a " +
+                    "fair lock instead of fighting over the file lock.",
+            "true", "false") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            if (Boolean.parseBoolean(value))
+                conn.enableWriterLock();
+        }
+    },
+    JMX("jmx",
+            "Register memory and page cache statistics MBeans for the connection.",
+            "true", "false") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            if (Boolean.parseBoolean(value))
+                conn.registerStats();
+        }
+    },
+    STATEMENT_STATS("statement_stats",
+            "Aggregate the sqlite3_stmt_status() counters of finished statements by their SQL text.",
+            "true", "false") {
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.getStatementStats().setEnabled(Boolean.parseBoolean(value));
+        }
+    },
+    SLOW_STATEMENT_VM_STEPS("slow_statement_vm_steps",
+            "Log statements that execute more than this many virtual machine instructions.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, 0, Long.MAX_VALUE);
+        }
+
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.getStatementStats().setVmStepThreshold(Long.parseLong(value));
+        }
+    },
+    SLOW_STATEMENT_SCAN_STEPS("slow_statement_scan_steps",
+            "Log statements that take more than this many full table scan or automatic index steps.") {
+        @Override
+        String normalize(String value) throws SQLException {
+            return checkLong(this, value, 0, Long.MAX_VALUE);
+        }
+
+        @Override
+        void apply(SqliteConnection conn, String value) throws SQLException {
+            conn.getStatementStats().setScanStepThreshold(Long.parseLong(value));
+        }
+    };
+
+    public static final String LIMIT_PREFIX = "limit.";
+
+    private static final String LIMIT_ENUM_PREFIX = "SQLITE_LIMIT_";
+
+    private final String key;
+    private final String description;
+    private final String[] choices;
+
+    SqliteProperty(String key, String description, String... choices) {
+        this.key = key;
+        this.description = description;
+        this.choices = choices.length == 0 ? null : choices;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public String[] getChoices() {
+        return this.choices == null ? null : this.choices.clone();
+    }
+
+    /**
+     * Check the user-supplied value for this property.
+     *
+     * @return The canonical form of the value.
+     */
+    String normalize(String value) throws SQLException {
+        for (String choice : this.choices) {
+            if (choice.equalsIgnoreCase(value.trim()))
+                return choice;
+        }
+
+        throw invalid(this, value);
+    }
+
+    /**
+     * Apply a normalized value to a freshly opened connection.  The default
+     * is to execute the PRAGMA with the same name as the property.
+     */
+    void apply(SqliteConnection conn, String value) throws SQLException {
+        conn.executePragma("PRAGMA " + this.key + " = " + value);
+    }
+
+    public static SqliteProperty forKey(String key) {
+        for (SqliteProperty prop : values()) {
+            if (prop.key.equals(key))
+                return prop;
+        }
+
+        return null;
+    }
+
+    public static boolean isKnownKey(String key) {
+        return forKey(key) != null || key.startsWith(LIMIT_PREFIX);
+    }
+
+    static String getLimitKey(Sqlite3.Limit limit) {
+        return LIMIT_PREFIX + limit.name().substring(LIMIT_ENUM_PREFIX.length()).toLowerCase();
+    }
+
+    /**
+     * Check all of the known properties in the given set.  Unknown
+     * properties are ignored, with the exception of misspelled limits.
+     *
+     * @return The normalized values in the order they should be applied.
+     */
+    static Map<String, String> validate(Properties properties) throws SQLException {
+        Map<String, String> retval = new LinkedHashMap<>();
+
+        for (SqliteProperty prop : values()) {
+            String value = properties.getProperty(prop.key);
+
+            if (value != null)
+                retval.put(prop.key, prop.normalize(value));
+        }
+
+        Set<String> limitKeys = new TreeSet<>();
+
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(LIMIT_PREFIX))
+                limitKeys.add(name);
+        }
+        for (Sqlite3.Limit limit : Sqlite3.Limit.values()) {
+            String limitKey = getLimitKey(limit);
+            String value = properties.getProperty(limitKey);
+
+            if (value == null)
+                continue;
+
+            limitKeys.remove(limitKey);
+            retval.put(limitKey, checkLong(limitKey, value, 0, Integer.MAX_VALUE));
+        }
+        if (!limitKeys.isEmpty()) {
+            throw new SQLNonTransientConnectionException("Unknown limit property: " + limitKeys.iterator().next());
+        }
+
+        return retval;
+    }
+
+    /**
+     * @return The flags to pass to sqlite3_open_v2() for the given settings.
+     */
+    static int getOpenFlags(Map<String, String> settings) {
+        int retval = Sqlite3.OpenFlag.SQLITE_OPEN_READWRITE.intValue() |
+                Sqlite3.OpenFlag.SQLITE_OPEN_CREATE.intValue() |
+                Sqlite3.OpenFlag.SQLITE_OPEN_URI.intValue();
+        String mode = settings.get(THREADING_MODE.key);
+
+        if ("MULTITHREAD".equals(mode))
+            retval |= Sqlite3.OpenFlag.SQLITE_OPEN_NOMUTEX.intValue();
+        else if ("SERIALIZED".equals(mode))
+            retval |= Sqlite3.OpenFlag.SQLITE_OPEN_FULLMUTEX.intValue();
+
+        return retval;
+    }
+
+    static void applyAll(SqliteConnection conn, Map<String, String> settings) throws SQLException {
+        for (SqliteProperty prop : values()) {
+            String value = settings.get(prop.key);
+
+            if (value != null)
+                prop.apply(conn, value);
+        }
+        for (Sqlite3.Limit limit : Sqlite3.Limit.values()) {
+            String value = settings.get(getLimitKey(limit));
+
+            if (value != null)
+                Sqlite3.sqlite3_limit(conn.getHandle(), limit.value(), Integer.parseInt(value));
+        }
+    }
+
+    static DriverPropertyInfo[] getPropertyInfo(Properties properties) {
+        List<DriverPropertyInfo> retval = new ArrayList<>();
+
+        for (SqliteProperty prop : values()) {
+            DriverPropertyInfo info = new DriverPropertyInfo(prop.key, properties.getProperty(prop.key));
+
+            info.description = prop.description;
+            info.choices = prop.getChoices();
+            retval.add(info);
+        }
+        for (Sqlite3.Limit limit : Sqlite3.Limit.values()) {
+            String limitKey = getLimitKey(limit);
+            DriverPropertyInfo info = new DriverPropertyInfo(limitKey, properties.getProperty(limitKey));
+
+            info.description = "The new value for sqlite3_limit(" + limit.name() + ").";
+            retval.add(info);
+        }
+
+        return retval.toArray(new DriverPropertyInfo[retval.size()]);
+    }
+
+    private static SQLException invalid(Object key, String value) {
+        return new SQLNonTransientConnectionException("Invalid value for property " + key + ": " + value);
+    }
+
+    private static void applyMode(SqliteConnection conn, SqliteProperty prop, String value) throws SQLException {
+        String actual = conn.queryPragma("PRAGMA " + prop.key + " = " + value);
+
+        if (!value.equalsIgnoreCase(actual)) {
+            throw new SQLNonTransientConnectionException("Unable to set " + prop.key + " to " + value +
+                    ", the database is using " + actual);
+        }
+    }
+
+    private static String checkLong(Object key, String value, long min, long max) throws SQLException {
+        try {
+            long retval = Long.parseLong(value.trim());
+
+            if (retval < min || retval > max)
+                throw invalid(key, value);
+
+            return Long.toString(retval);
+        }
+        catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.key;
+    }
+}
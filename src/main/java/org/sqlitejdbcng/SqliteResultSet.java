@@ -28,7 +28,10 @@ package org.sqlitejdbcng;
 
 import org.bridj.Pointer;
 import org.sqlitejdbcng.bridj.Sqlite3;
-import org.sqlitejdbcng.internal.TimeoutProgressCallback;
+import org.sqlitejdbcng.internal.ColumnLabelMap;
+import org.sqlitejdbcng.internal.DriverEvents;
+import org.sqlitejdbcng.internal.NativeCallCounter;
+import org.sqlitejdbcng.internal.QueryTimeout;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -53,23 +56,39 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
     private static final Pattern TS_PATTERN = Pattern.compile(
             "(\\d{4})-(\\d{2})-(\\d{2})[T ]" + TIME_PATTERN_STRING);
 
+    /*
+     * Libraries before 3.20 do not count re-prepares, so a schema change that
+     * renames the columns goes unnoticed by the cached labels there.
+     */
+    private static final Sqlite3.StmtStatusOp REPREPARE = Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_REPREPARE;
+
     final SqliteStatement parent;
     private final Pointer<Sqlite3.Statement> stmt;
+    private final String cacheKey;
     private final int maxRows;
     private final int columnCount;
     private final List<WeakReference<Blob>> blobList = new ArrayList<>();
     private SqliteResultSetMetadata metadata;
+    private QueryTimeout activeTimeout;
+    private ColumnLabelMap labelMap;
     private boolean closed;
     private int rowNumber = 0;
-    private int lastColumn;
-    private final TimeoutProgressCallback timeoutCallback;
+    private boolean lastWasNull;
+    private final QueryTimeout queryTimeout;
+    private DriverEvents.Event event;
+    private long byteCount;
 
     public SqliteResultSet(SqliteStatement parent, Pointer<Sqlite3.Statement> stmt, int maxRows) {
+        this(parent, stmt, null, maxRows);
+    }
+
+    SqliteResultSet(SqliteStatement parent, Pointer<Sqlite3.Statement> stmt, String cacheKey, int maxRows) {
         this.parent = parent;
         this.stmt = stmt;
+        this.cacheKey = cacheKey;
         this.columnCount = Sqlite3.sqlite3_column_count(this.stmt);
         this.maxRows = maxRows;
-        this.timeoutCallback = new TimeoutProgressCallback(this.parent.conn);
+        this.queryTimeout = parent.queryTimeout;
     }
 
     public Pointer<Sqlite3.Statement> getHandle() {
@@ -92,54 +111,139 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
         requireOpen();
         this.clearWarnings();
 
-        for (WeakReference<Blob> blobRef : this.blobList) {
-            Blob blob = blobRef.get();
+        if (!this.blobList.isEmpty()) {
+            for (WeakReference<Blob> blobRef : this.blobList) {
+                Blob blob = blobRef.get();
 
-            if (blob == null) {
-                continue;
-            }
+                if (blob == null) {
+                    continue;
+                }
 
-            blob.free();
+                blob.free();
+            }
+            this.blobList.clear();
         }
-        this.blobList.clear();
 
         if (this.maxRows == 0 || this.rowNumber < this.maxRows) {
-            try (TimeoutProgressCallback cb = this.timeoutCallback.setExpiration(
-                    this.parent.getQueryTimeout() * 1000)) {
-                rc = Sqlite3.sqlite3_step(this.stmt);
-                if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
+            /*
+             * The timeout covers the whole query, so it is started by the
+             * first step and stays running until the last one.
+             */
+            if (this.rowNumber == 0)
+                this.activeTimeout = this.queryTimeout.setExpiration(this.parent.getQueryTimeout() * 1000);
+
+            QueryTimeout cb = this.activeTimeout;
+            boolean finished = true;
+
+            try {
+                if (this.rowNumber == 0) {
+                    this.event = DriverEvents.begin(DriverEvents.Kind.RESULT_SET);
+                    if (this.event != null)
+                        this.event.setSql(Sqlite3.sqlite3_sql(this.stmt).getCString());
+                    if (REPREPARE.isAvailable() && this.parent.isWatchingColumns(this.stmt)) {
+                        int reprepares = Sqlite3.sqlite3_stmt_status(this.stmt,
+                                REPREPARE.value(), 0);
+
+                        rc = this.parent.conn.step(this.stmt);
+                        /* A schema change may have changed the column names. */
+                        if (reprepares != Sqlite3.sqlite3_stmt_status(this.stmt,
+                                REPREPARE.value(), 0)) {
+                            this.parent.columnsChanged();
+                            this.labelMap = null;
+                            this.metadata = null;
+                        }
+                    }
+                    else {
+                        rc = this.parent.conn.step(this.stmt);
+                    }
+                }
+                else {
+                    rc = Sqlite3.sqlite3_step(this.stmt);
+                    NativeCallCounter.record();
+                }
+                /*
+                 * SQLite only checks for an interrupt at the top of a loop,
+                 * so a short query can still return a row after the
+                 * deadline has passed.
+                 */
+                if (cb != null && (rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value() || cb.isExpired())) {
                     throw new SQLTimeoutException("Query timeout reached");
                 }
+                this.rowNumber += 1;
+                switch (Sqlite3.ReturnCodes.valueOf(rc)) {
+                    case SQLITE_ROW:
+                        finished = false;
+                        if (this.event != null)
+                            this.countBytes();
+                        return true;
+                    case SQLITE_DONE:
+                        return false;
+                    default:
+                        Sqlite3.checkOk(rc, this.parent.getDbHandle());
+                        return false;
+                }
             }
-            this.rowNumber += 1;
-            switch (Sqlite3.ReturnCodes.valueOf(rc)) {
-                case SQLITE_ROW:
-                    return true;
-                case SQLITE_DONE:
-                    return false;
-                default:
-                    Sqlite3.checkOk(rc, this.parent.getDbHandle());
-                    return false;
+            finally {
+                if (finished)
+                    this.stopTimeout();
             }
         }
         else {
+            this.stopTimeout();
             return false;
         }
     }
 
+    private void stopTimeout() {
+        if (this.activeTimeout != null) {
+            this.activeTimeout.close();
+            this.activeTimeout = null;
+        }
+    }
+
+    /**
+     * Add up the size of the current row for the flight recorder.  Only the
+     * text and blob values are asked for their size, since that would
+     * convert any other value to text.
+     */
+    private void countBytes() {
+        for (int lpc = 0; lpc < this.columnCount; lpc++) {
+            int type = Sqlite3.sqlite3_column_type(this.stmt, lpc);
+
+            if (type == Sqlite3.DataType.SQLITE_TEXT.value() || type == Sqlite3.DataType.SQLITE_BLOB.value())
+                this.byteCount += Sqlite3.sqlite3_column_bytes(this.stmt, lpc);
+            else if (type != Sqlite3.DataType.SQLITE_NULL.value())
+                this.byteCount += 8;
+        }
+    }
+
     @Override
     public synchronized void close() throws SQLException {
         if (!this.closed) {
             this.closed = true;
+            this.stopTimeout();
+
+            if (this.event != null) {
+                /* The last call to next() counted the end of the results as a row. */
+                this.event.setRows(this.rowNumber > 0 ? this.rowNumber - 1 : 0);
+                this.event.setBytes(this.byteCount);
+                this.event.commit();
+                this.event = null;
+            }
+
+            /* The metadata outlives the result set, but the handle does not. */
+            if (this.metadata != null && this.stmt.get() != null)
+                this.metadata.resolveColumns();
 
             if (this.rowNumber > 0 && this.stmt.get() != null) {
+                this.parent.conn.getStatementStats().record(this.stmt);
                 Sqlite3.checkOk(Sqlite3.sqlite3_reset(this.stmt), this.parent.getDbHandle());
                 this.rowNumber = 0;
             }
             if (!(this.parent instanceof SqlitePreparedStatement)) {
-                Sqlite3.sqlite3_finalize(this.stmt);
+                this.parent.conn.releaseStatement(this.cacheKey, this.stmt, this.parent.poolable);
             }
-            this.lastColumn = -1;
+            this.lastWasNull = false;
 
             this.parent.resultSetClosed();
         }
@@ -161,24 +265,40 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
             throw new SQLNonTransientException("The next() method must be called before getting any data.");
         this.checkColumnIndex(i);
 
-        this.lastColumn = i;
-
         return i - 1;
     }
 
+    /**
+     * Check if the current value of a column is NULL.  The column functions
+     * return zero or a NULL pointer for NULL values, so the getters only
+     * need to call this when they get one of those back.
+     */
+    private boolean isNullColumn(int zcol) {
+        NativeCallCounter.record();
+        return Sqlite3.sqlite3_column_type(this.stmt, zcol) == Sqlite3.DataType.SQLITE_NULL.value();
+    }
+
     @Override
     public boolean wasNull() throws SQLException {
-        return (Sqlite3.sqlite3_column_type(this.stmt, checkColumn(this.lastColumn)) ==
-                Sqlite3.DataType.SQLITE_NULL.value());
+        requireOpen();
+
+        return this.lastWasNull;
     }
 
-    @Override
-    public String getString(int i) throws SQLException {
-        Pointer<Byte> str = Sqlite3.sqlite3_column_text(stmt, checkColumn(i));
+    private String getColumnString(int zcol) {
+        Pointer<Byte> str = Sqlite3.sqlite3_column_text(this.stmt, zcol);
+
+        NativeCallCounter.record();
+        this.lastWasNull = (str == null);
 
         return str != null ? str.getCString() : null;
     }
 
+    @Override
+    public String getString(int i) throws SQLException {
+        return this.getColumnString(checkColumn(i));
+    }
+
     @Override
     public boolean getBoolean(int i) throws SQLException {
         return this.getInt(i) != 0;
@@ -196,22 +316,46 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
 
     @Override
     public int getInt(int i) throws SQLException {
-        return Sqlite3.sqlite3_column_int(this.stmt, checkColumn(i));
+        int zcol = checkColumn(i);
+        int retval = Sqlite3.sqlite3_column_int(this.stmt, zcol);
+
+        NativeCallCounter.record();
+        this.lastWasNull = (retval == 0 && this.isNullColumn(zcol));
+
+        return retval;
+    }
+
+    private long getColumnLong(int zcol) {
+        long retval = Sqlite3.sqlite3_column_int64(this.stmt, zcol);
+
+        NativeCallCounter.record();
+        this.lastWasNull = (retval == 0 && this.isNullColumn(zcol));
+
+        return retval;
     }
 
     @Override
     public long getLong(int i) throws SQLException {
-        return Sqlite3.sqlite3_column_int64(this.stmt, checkColumn(i));
+        return this.getColumnLong(checkColumn(i));
     }
 
     @Override
     public float getFloat(int i) throws SQLException {
-        return (float)Sqlite3.sqlite3_column_double(this.stmt, checkColumn(i));
+        return (float)this.getDouble(i);
+    }
+
+    private double getColumnDouble(int zcol) {
+        double retval = Sqlite3.sqlite3_column_double(this.stmt, zcol);
+
+        NativeCallCounter.record();
+        this.lastWasNull = (retval == 0.0 && this.isNullColumn(zcol));
+
+        return retval;
     }
 
     @Override
     public double getDouble(int i) throws SQLException {
-        return Sqlite3.sqlite3_column_double(this.stmt, checkColumn(i));
+        return this.getColumnDouble(checkColumn(i));
     }
 
     @Override
@@ -223,9 +367,19 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
     public byte[] getBytes(int i) throws SQLException {
         int zcol = checkColumn(i);
         Pointer<Byte> blob = Sqlite3.sqlite3_column_blob(this.stmt, zcol);
+
+        NativeCallCounter.record();
+        if (blob == null) {
+            /* Zero-length blobs are also returned as a NULL pointer. */
+            this.lastWasNull = this.isNullColumn(zcol);
+            return this.lastWasNull ? null : new byte[0];
+        }
+        this.lastWasNull = false;
+
         int blobLen = Sqlite3.sqlite3_column_bytes(this.stmt, zcol);
 
-        return blob != null ? blob.getBytes(blobLen) : null;
+        NativeCallCounter.record();
+        return blob.getBytes(blobLen);
     }
 
     @Override
@@ -364,17 +518,23 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
 
     @Override
     public Object getObject(int i) throws SQLException {
+        int zcol = this.checkColumn(i);
         Sqlite3.DataType dt;
 
-        dt = Sqlite3.DataType.valueOf(Sqlite3.sqlite3_column_type(this.stmt, this.checkColumn(i)));
+        dt = Sqlite3.DataType.valueOf(Sqlite3.sqlite3_column_type(this.stmt, zcol));
+        NativeCallCounter.record();
+        this.lastWasNull = false;
         switch (dt) {
             case SQLITE_NULL:
+                this.lastWasNull = true;
                 return null;
             case SQLITE_FLOAT:
-                return this.getDouble(i);
+                NativeCallCounter.record();
+                return Sqlite3.sqlite3_column_double(this.stmt, zcol);
             case SQLITE_INTEGER: {
-                long bigint = Sqlite3.sqlite3_column_int64(this.stmt, this.checkColumn(i));
+                long bigint = Sqlite3.sqlite3_column_int64(this.stmt, zcol);
 
+                NativeCallCounter.record();
                 if (Integer.MIN_VALUE <= bigint && bigint <= Integer.MAX_VALUE) {
                     return (int)bigint;
                 }
@@ -382,9 +542,9 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
                 return bigint;
             }
             case SQLITE_TEXT:
-                return this.getString(i);
+                return this.getColumnString(zcol);
             case SQLITE_BLOB:
-                return this.getBlob(i);
+                return this.getColumnBlob(zcol);
             default:
                 throw new RuntimeException("Unhandled sqlite3 type" + dt);
         }
@@ -395,9 +555,23 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
         return this.getObject(this.findColumn(s));
     }
 
+    ColumnLabelMap getColumnLabelMap() {
+        if (this.labelMap == null)
+            this.labelMap = this.parent.getColumnLabelMap(this.stmt);
+
+        return this.labelMap;
+    }
+
     @Override
     public int findColumn(String s) throws SQLException {
-        return ((SqliteResultSetMetadata)this.getMetaData()).findColumn(s);
+        requireOpen();
+
+        int retval = this.getColumnLabelMap().get(s);
+
+        if (retval == 0)
+            throw new SQLNonTransientException("Result set does not contain label -- " + s);
+
+        return retval;
     }
 
     @Override
@@ -787,17 +961,36 @@ public class SqliteResultSet extends SqliteCommon implements ResultSet {
         throw new SQLFeatureNotSupportedException("SQLite does not support REF values");
     }
 
-    @Override
-    public synchronized Blob getBlob(int i) throws SQLException {
-        Pointer<Byte> ptr = Sqlite3.sqlite3_column_blob(this.stmt, checkColumn(i));
-        int len = Sqlite3.sqlite3_column_bytes(this.stmt, checkColumn(i));
-        SqliteBlob retval = new SqliteBlob(ptr.validBytes(len));
+    private synchronized Blob getColumnBlob(int zcol) {
+        Pointer<Byte> ptr = Sqlite3.sqlite3_column_blob(this.stmt, zcol);
+        SqliteBlob retval;
+
+        NativeCallCounter.record();
+        if (ptr == null) {
+            /* Zero-length blobs are also returned as a NULL pointer. */
+            this.lastWasNull = this.isNullColumn(zcol);
+            if (this.lastWasNull)
+                return null;
+            retval = new SqliteBlob();
+        }
+        else {
+            int len = Sqlite3.sqlite3_column_bytes(this.stmt, zcol);
+
+            NativeCallCounter.record();
+            this.lastWasNull = false;
+            retval = new SqliteBlob(ptr.validBytes(len));
+        }
 
         this.blobList.add(new WeakReference<Blob>(retval));
 
         return retval;
     }
 
+    @Override
+    public Blob getBlob(int i) throws SQLException {
+        return this.getColumnBlob(checkColumn(i));
+    }
+
     @Override
     public Clob getClob(int i) throws SQLException {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
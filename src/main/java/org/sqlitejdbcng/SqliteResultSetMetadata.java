@@ -32,99 +32,130 @@ import org.sqlitejdbcng.internal.ColumnData;
 
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.SQLNonTransientException;
 
 public class SqliteResultSetMetadata implements ResultSetMetaData {
     private final SqliteResultSet rs;
     private final int columnCount;
     private final ColumnData[] columnList;
-    private final String[] columnLabels;
-
+    private final ColumnData[] sharedList;
+    private final String[] valueTypes;
+
+    /**
+     * Frameworks ask for the metadata of every query, usually to look at a
+     * column or two, so the columns are only resolved as they are asked
+     * about.  Columns with a declared type are shared with later executions
+     * of the same prepared statement.  The type of an expression comes from
+     * the value in the current row, so it is taken now and stays with this
+     * result set.
+     */
     public SqliteResultSetMetadata(SqliteResultSet rs) {
-        int notNull = columnNullableUnknown;
-        int primaryKey = 0;
-        boolean autoInc = false;
+        Pointer<Sqlite3.Statement> stmt = rs.getHandle();
+        ColumnData[] shared;
 
         this.rs = rs;
-        this.columnCount = Sqlite3.sqlite3_column_count(rs.getHandle());
-        this.columnLabels = new String[this.columnCount];
+        this.columnCount = Sqlite3.sqlite3_column_count(stmt);
         this.columnList = new ColumnData[this.columnCount];
+        this.valueTypes = new String[this.columnCount];
+        shared = rs.parent.getColumnDataCache(stmt);
+        this.sharedList = shared != null && shared.length == this.columnCount ? shared : null;
 
         for (int lpc = 0; lpc < this.columnCount; lpc++) {
-            Pointer<Byte> ptr = Sqlite3.sqlite3_column_name(rs.getHandle(), lpc);
+            if (this.sharedList != null && this.sharedList[lpc] != null)
+                continue;
+            if (Sqlite3.sqlite3_column_decltype(stmt, lpc) != null)
+                continue;
+
+            Sqlite3.DataType dt = Sqlite3.DataType.valueOf(Sqlite3.sqlite3_column_type(stmt, lpc));
+
+            this.valueTypes[lpc] = dt.getSqlType();
+        }
+    }
+
+    private ColumnData getColumn(int i) throws SQLException {
+        int zcol = this.rs.checkColumnIndex(i);
+        ColumnData retval = this.columnList[zcol];
+
+        if (retval == null && this.sharedList != null)
+            retval = this.sharedList[zcol];
+        if (retval == null) {
+            boolean declared = this.valueTypes[zcol] == null;
             String type;
 
-            if (ptr == null)
-                throw new OutOfMemoryError();
-            this.columnLabels[lpc] = ptr.getCString();
+            if (declared)
+                type = Sqlite3.sqlite3_column_decltype(this.rs.getHandle(), zcol).getCString();
+            else
+                type = this.valueTypes[zcol];
 
-            ptr = Sqlite3.sqlite3_column_decltype(rs.getHandle(), lpc);
-            if (ptr == null) {
-                Sqlite3.DataType dt;
-                int exprType;
+            retval = this.resolveColumn(zcol, type);
+            if (declared && this.sharedList != null)
+                this.sharedList[zcol] = retval;
+        }
+        this.columnList[zcol] = retval;
 
-                exprType = Sqlite3.sqlite3_column_type(rs.getHandle(), lpc);
-                dt = Sqlite3.DataType.valueOf(exprType);
-                type = dt.getSqlType();
-            }
-            else {
-                type = ptr.getCString();
-            }
+        return retval;
+    }
 
-            String dbName = "", tableName = "", columnName = "";
-
-            try {
-                if ((ptr = Sqlite3.sqlite3_column_database_name(rs.getHandle(), lpc)) != null)
-                    dbName = ptr.getCString();
-                if ((ptr = Sqlite3.sqlite3_column_table_name(rs.getHandle(), lpc)) != null)
-                    tableName = ptr.getCString();
-                if ((ptr = Sqlite3.sqlite3_column_origin_name(rs.getHandle(), lpc)) != null)
-                    columnName = ptr.getCString();
-                if (!dbName.isEmpty()) {
-                    Pointer<Pointer<Byte>> dataType = Pointer.allocatePointer(Byte.class);
-                    Pointer<Pointer<Byte>> collSeq = Pointer.allocatePointer(Byte.class);
-                    Pointer<Integer> notNullInt = Pointer.allocateInt();
-                    Pointer<Integer> primaryKeyInt = Pointer.allocateInt();
-                    Pointer<Integer> autoIncInt = Pointer.allocateInt();
+    /**
+     * Resolve any columns that have not been asked about yet.
+     */
+    void resolveColumns() throws SQLException {
+        this.rs.getColumnLabelMap();
+        for (int lpc = 1; lpc <= this.columnCount; lpc++) {
+            this.getColumn(lpc);
+        }
+    }
 
+    private ColumnData resolveColumn(int zcol, String type) {
+        Pointer<Sqlite3.Statement> stmt = this.rs.getHandle();
+        Pointer<Byte> ptr;
+        String dbName = "", tableName = "", columnName = "";
+        int notNull = columnNullableUnknown;
+        int primaryKey = 0;
+        boolean autoInc = false;
+
+        try {
+            if ((ptr = Sqlite3.sqlite3_column_database_name(stmt, zcol)) != null)
+                dbName = ptr.getCString();
+            if ((ptr = Sqlite3.sqlite3_column_table_name(stmt, zcol)) != null)
+                tableName = ptr.getCString();
+            if ((ptr = Sqlite3.sqlite3_column_origin_name(stmt, zcol)) != null)
+                columnName = ptr.getCString();
+            if (!dbName.isEmpty()) {
+                Pointer<Pointer<Byte>> strings = Pointer.allocatePointers(Byte.class, 2);
+                Pointer<Integer> flags = Pointer.allocateInts(3);
+
+                try {
                     Sqlite3.sqlite3_table_column_metadata(this.rs.parent.getDbHandle(),
                             Pointer.pointerToCString(dbName),
                             Pointer.pointerToCString(tableName),
                             Pointer.pointerToCString(columnName),
-                            dataType,
-                            collSeq,
-                            notNullInt,
-                            primaryKeyInt,
-                            autoIncInt);
-
-                    notNull = notNullInt.getInt() != 0 ? columnNoNulls : columnNullable;
+                            strings,
+                            strings.next(),
+                            flags,
+                            flags.next(),
+                            flags.next(2));
 
+                    notNull = flags.get(0) != 0 ? columnNoNulls : columnNullable;
+                }
+                finally {
+                    strings.release();
+                    flags.release();
                 }
             }
-            catch (UnsatisfiedLinkError e) {
-            }
-
-            this.columnList[lpc] = new ColumnData(
-                    this.rs.parent.getDbHandle(),
-                    dbName,
-                    tableName,
-                    columnName,
-                    -1,
-                    "",
-                    type,
-                    notNull,
-                    primaryKey,
-                    autoInc);
         }
-    }
-
-    int findColumn(String label) throws SQLException {
-        for (int lpc = 0; lpc < this.columnLabels.length; lpc++) {
-            if (this.columnLabels[lpc].equals(label))
-                return lpc + 1;
+        catch (UnsatisfiedLinkError e) {
         }
 
-        throw new SQLNonTransientException("Result set does not contain label -- " + label);
+        return new ColumnData(
+                dbName,
+                tableName,
+                columnName,
+                -1,
+                "",
+                this.rs.parent.conn.getColumnTypeCache().get(type),
+                notNull,
+                primaryKey,
+                autoInc);
     }
 
     @Override
@@ -134,7 +165,7 @@ public class SqliteResultSetMetadata implements ResultSetMetaData {
 
     @Override
     public boolean isAutoIncrement(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].autoInc;
+        return this.getColumn(i).autoInc;
     }
 
     @Override
@@ -154,7 +185,7 @@ public class SqliteResultSetMetadata implements ResultSetMetaData {
 
     @Override
     public int isNullable(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].notNull;
+        return this.getColumn(i).notNull;
     }
 
     @Override
@@ -169,12 +200,14 @@ public class SqliteResultSetMetadata implements ResultSetMetaData {
 
     @Override
     public String getColumnLabel(int i) throws SQLException {
-        return this.columnLabels[this.rs.checkColumnIndex(i)];
+        this.rs.checkColumnIndex(i);
+
+        return this.rs.getColumnLabelMap().getLabel(i);
     }
 
     @Override
     public String getColumnName(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].name;
+        return this.getColumn(i).name;
     }
 
     @Override
@@ -184,32 +217,32 @@ public class SqliteResultSetMetadata implements ResultSetMetaData {
 
     @Override
     public int getPrecision(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].precision;
+        return this.getColumn(i).precision;
     }
 
     @Override
     public int getScale(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].scale;
+        return this.getColumn(i).scale;
     }
 
     @Override
     public String getTableName(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].tableName;
+        return this.getColumn(i).tableName;
     }
 
     @Override
     public String getCatalogName(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].dbName;
+        return this.getColumn(i).dbName;
     }
 
     @Override
     public int getColumnType(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].sqlType;
+        return this.getColumn(i).sqlType;
     }
 
     @Override
     public String getColumnTypeName(int i) throws SQLException {
-        return this.columnList[this.rs.checkColumnIndex(i)].type;
+        return this.getColumn(i).type;
     }
 
     @Override
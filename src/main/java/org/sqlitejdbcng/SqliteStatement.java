@@ -28,10 +28,16 @@ package org.sqlitejdbcng;
 
 import org.bridj.Pointer;
 import org.sqlitejdbcng.bridj.Sqlite3;
-import org.sqlitejdbcng.internal.TimeoutProgressCallback;
+import org.sqlitejdbcng.internal.BindArena;
+import org.sqlitejdbcng.internal.ColumnData;
+import org.sqlitejdbcng.internal.ColumnLabelMap;
+import org.sqlitejdbcng.internal.DriverEvents;
+import org.sqlitejdbcng.internal.NativeCallCounter;
+import org.sqlitejdbcng.internal.QueryTimeout;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,6 +45,8 @@ import java.util.logging.Logger;
 public class SqliteStatement extends SqliteCommon implements Statement {
     private static final Logger LOGGER = Logger.getLogger(SqliteConnection.class.getName());
 
+    private static final String SCRIPT_SAVEPOINT = "sqlitejdbcng_script";
+
     protected final SqliteConnection conn;
     protected final List<String> batchList = new ArrayList<>();
     protected int queryTimeoutSeconds;
@@ -48,12 +56,16 @@ public class SqliteStatement extends SqliteCommon implements Statement {
     protected int maxRows;
     protected SqliteResultSet lastResult;
     protected int lastUpdateCount;
+    private int[] pendingUpdateCounts;
+    private int pendingIndex;
     protected boolean closed;
-    protected final TimeoutProgressCallback timeoutCallback;
+    protected boolean poolable;
+    protected final QueryTimeout queryTimeout;
+    private Connection logicalConnection;
 
     public SqliteStatement(SqliteConnection conn) {
         this.conn = conn;
-        this.timeoutCallback = new TimeoutProgressCallback(conn);
+        this.queryTimeout = new QueryTimeout(conn);
     }
 
     Pointer<Sqlite3.Sqlite3Db> getDbHandle() {
@@ -66,6 +78,32 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         }
     }
 
+    /**
+     * @return The map used to look up the columns of a result set by label.
+     */
+    ColumnLabelMap getColumnLabelMap(Pointer<Sqlite3.Statement> stmt) {
+        return ColumnLabelMap.fromStatement(stmt);
+    }
+
+    /**
+     * @return The array that result set metadata should share its resolved
+     *   columns through, or null if they are not kept past the result set.
+     */
+    ColumnData[] getColumnDataCache(Pointer<Sqlite3.Statement> stmt) {
+        return null;
+    }
+
+    /**
+     * @return True if a result set should tell this statement when SQLite
+     *   has re-prepared the given handle.
+     */
+    boolean isWatchingColumns(Pointer<Sqlite3.Statement> stmt) {
+        return false;
+    }
+
+    void columnsChanged() {
+    }
+
     void resultSetClosed() throws SQLException {
         if (this.closeOnCompletion) {
             this.close();
@@ -77,6 +115,7 @@ public class SqliteStatement extends SqliteCommon implements Statement {
             this.lastResult.close();
         }
         this.lastResult = rs;
+        this.pendingUpdateCounts = null;
         if (rs != null)
             this.lastUpdateCount = -1;
     }
@@ -86,23 +125,18 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         requireOpened();
         this.clearWarnings();
 
-        Pointer<Pointer<Sqlite3.Statement>> stmt_out = Pointer.allocatePointer(Sqlite3.Statement.class);
         String escapedString = this.escapeStatements ? this.conn.nativeSQL(s) : s;
 
         this.lastQuery = s;
 
-        Sqlite3.checkOk(Sqlite3.sqlite3_prepare_v2(this.conn.getHandle(),
-                Pointer.pointerToCString(escapedString), -1, stmt_out, Pointer.NULL),
-                this.conn.getHandle());
-
-        Pointer<Sqlite3.Statement> stmt = stmt_out.get();
+        Pointer<Sqlite3.Statement> stmt = this.conn.prepare(escapedString);
 
         if (Sqlite3.stmt_readonly(stmt) == 0) {
-            Sqlite3.sqlite3_finalize(stmt);
+            this.conn.releaseStatement(escapedString, stmt, this.poolable);
             throw new SQLNonTransientException("SQL statement is not a query");
         }
 
-        this.replaceResultSet(new SqliteResultSet(this, stmt, this.maxRows));
+        this.replaceResultSet(new SqliteResultSet(this, stmt, escapedString, this.maxRows));
 
         return this.lastResult;
     }
@@ -185,18 +219,18 @@ public class SqliteStatement extends SqliteCommon implements Statement {
      * Sets a timeout for any executed statements.
      *
      * Implementation details:
-     * - The timeout is implemented through the progress callback
-     *   mechanism in SQLite, so it applies to all statements concurrently
-     *   running on a connection.  However, connections should not be shared
-     *   across threads, so this shouldn't be a problem.
+     * - The timeout is implemented by a shared watchdog thread that calls
+     *   sqlite3_interrupt() when the deadline passes, so it applies to all
+     *   statements concurrently running on a connection.  However,
+     *   connections should not be shared across threads, so this shouldn't
+     *   be a problem.
      * - For queries executed through executeQuery(), the statement is not
      *   executed until ResultSet.next() is run and the timeout is applied
      *   at that time.  The next() method will also be the one throwing the
      *   exception.
      * - If a timeout is applied to a statement and cancel() is called, the
      *   driver will throw a SQLTimeoutException since the SQLite library
-     *   does not distinguish between sqlite3_interrupt() being called and
-     *   a progress handler returning a non-zero return code.
+     *   does not say who called sqlite3_interrupt().
      *
      * {@inheritDoc}
      */
@@ -229,25 +263,22 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         requireOpened();
         this.clearWarnings();
 
-        Pointer<Pointer<Sqlite3.Statement>> stmt_out = Pointer.allocatePointer(Sqlite3.Statement.class);
         String escapedString = this.escapeStatements ? this.conn.nativeSQL(s) : s;
 
         this.lastQuery = s;
-        Sqlite3.checkOk(Sqlite3.sqlite3_prepare_v2(this.conn.getHandle(),
-                Pointer.pointerToCString(escapedString), -1, stmt_out, Pointer.NULL),
-                this.conn.getHandle());
 
-        Pointer<Sqlite3.Statement> stmt = stmt_out.get();
+        Pointer<Sqlite3.Statement> stmt = this.conn.prepare(escapedString);
 
         try {
             if (Sqlite3.stmt_readonly(stmt, s) != 0) {
-                this.replaceResultSet(new SqliteResultSet(this, stmt, this.maxRows));
+                this.replaceResultSet(new SqliteResultSet(this, stmt, escapedString, this.maxRows));
                 stmt = null;
             }
             else {
                 int rc;
+                DriverEvents.Event event = DriverEvents.begin(DriverEvents.Kind.EXECUTE, escapedString);
 
-                try (TimeoutProgressCallback cb = this.timeoutCallback.setExpiration(
+                try (QueryTimeout cb = this.queryTimeout.setExpiration(
                         this.getQueryTimeout() * 1000)) {
                     /*
                      * The sqlite3_changes() function reports the changes for
@@ -259,12 +290,18 @@ public class SqliteStatement extends SqliteCommon implements Statement {
                      */
                     int initialChanges = Sqlite3.sqlite3_total_changes(this.conn.getHandle());
 
-                    rc = Sqlite3.sqlite3_step(stmt);
+                    rc = this.conn.step(stmt);
                     changeDiff = Sqlite3.sqlite3_total_changes(this.conn.getHandle()) - initialChanges;
                     if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
                         throw new SQLTimeoutException("Query timeout reached");
                     }
                 }
+                finally {
+                    if (event != null) {
+                        event.setRows(changeDiff > 0 ? Sqlite3.sqlite3_changes(this.conn.getHandle()) : 0);
+                        event.commit();
+                    }
+                }
 
                 switch (Sqlite3.ReturnCodes.valueOf(rc)) {
                     case SQLITE_OK:
@@ -279,7 +316,7 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         }
         finally {
             if (stmt != null) {
-                Sqlite3.sqlite3_finalize(stmt);
+                this.conn.releaseStatement(escapedString, stmt, this.poolable);
             }
         }
 
@@ -307,11 +344,31 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         return this.lastUpdateCount;
     }
 
+    /**
+     * Move to the next result.  SQLite statements only produce one result,
+     * except for scripts run with executeScript(), where this steps through
+     * the update counts of the statements in the script.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public boolean getMoreResults() throws SQLException {
         requireOpened();
 
-        return false;  //To change body of implemented methods use File | Settings | File Templates.
+        int[] pending = this.pendingUpdateCounts;
+        int index = this.pendingIndex;
+
+        this.replaceResultSet(null);
+        if (pending != null && index < pending.length) {
+            this.pendingUpdateCounts = pending;
+            this.pendingIndex = index + 1;
+            this.lastUpdateCount = pending[index];
+        }
+        else {
+            this.lastUpdateCount = -1;
+        }
+
+        return false;
     }
 
     @Override
@@ -371,6 +428,144 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         this.batchList.clear();
     }
 
+    /**
+     * Execute a script made up of any number of SQL statements separated
+     * by semicolons.  The script is converted to UTF-8 once and each
+     * statement is prepared in turn by following the tail pointer returned
+     * by sqlite3_prepare_v2().  Statements that return rows are run to
+     * completion and the rows are discarded.
+     *
+     * After the script has run, getUpdateCount() returns the count for the
+     * first statement and getMoreResults() moves on to the next ones.
+     * Statements that return rows or do not modify the database, like
+     * ATTACH, are reported as SUCCESS_NO_INFO.
+     *
+     * @param sql The statements to execute.
+     * @param transactional If true, the script is run in a single
+     *   transaction, or in a savepoint if a transaction is already open,
+     *   and none of it is applied if a statement fails.
+     * @return The update count of each statement.
+     * @throws BatchUpdateException If a statement fails.  The update counts
+     *   in the exception are for the statements that ran before it.
+     */
+    public int[] executeScript(String sql, boolean transactional) throws SQLException {
+        requireOpened();
+        this.clearWarnings();
+        this.replaceResultSet(null);
+
+        String escapedString = this.escapeStatements ? this.conn.nativeSQL(sql) : sql;
+        Pointer<Sqlite3.Sqlite3Db> db = this.conn.getHandle();
+        Pointer<Byte> script = Pointer.allocateBytes(BindArena.utf8Length(escapedString) + 1);
+        Pointer<Pointer<Byte>> tailOut = Pointer.allocatePointer(Byte.class);
+        String savepoint = null;
+        int[] retval = new int[16];
+        int count = 0;
+
+        this.lastQuery = sql;
+        script.setByteAtOffset(BindArena.encodeUtf8(escapedString, script.getByteBuffer()), (byte) 0);
+
+        if (transactional) {
+            if (this.conn.getAutoCommit()) {
+                this.conn.executeCanned("BEGIN");
+            }
+            else {
+                savepoint = SCRIPT_SAVEPOINT;
+                this.conn.executeCanned("SAVEPOINT " + savepoint);
+            }
+        }
+
+        try (QueryTimeout cb = this.queryTimeout.setExpiration(
+                this.getQueryTimeout() * 1000)) {
+            Pointer<Byte> current = script;
+
+            while (current != null && current.getByte() != 0) {
+                Pointer<Sqlite3.Statement> stmt = this.conn.prepare(current, tailOut);
+
+                current = tailOut.get();
+                if (stmt == null)
+                    continue;
+
+                try {
+                    int initialChanges = Sqlite3.sqlite3_total_changes(db);
+                    boolean hadRows = false;
+                    int rc;
+
+                    this.conn.beginWrite(stmt);
+                    while ((rc = Sqlite3.sqlite3_step(stmt)) == Sqlite3.ReturnCodes.SQLITE_ROW.value()) {
+                        NativeCallCounter.record();
+                        hadRows = true;
+                    }
+                    NativeCallCounter.record();
+                    if (cb != null && rc == Sqlite3.ReturnCodes.SQLITE_INTERRUPT.value()) {
+                        throw new SQLTimeoutException("Query timeout reached");
+                    }
+                    if (rc != Sqlite3.ReturnCodes.SQLITE_DONE.value()) {
+                        Sqlite3.checkOk(rc, db);
+                    }
+
+                    int ro = Sqlite3.stmt_readonly(stmt);
+
+                    if (count == retval.length)
+                        retval = Arrays.copyOf(retval, count * 2);
+                    if (ro == 1 || (ro == -1 && hadRows))
+                        retval[count] = SUCCESS_NO_INFO;
+                    else if (Sqlite3.sqlite3_total_changes(db) != initialChanges)
+                        retval[count] = Sqlite3.sqlite3_changes(db);
+                    else
+                        retval[count] = 0;
+                    count += 1;
+                }
+                finally {
+                    Sqlite3.sqlite3_finalize(stmt);
+                    this.conn.endWrite();
+                }
+            }
+        }
+        catch (SQLException e) {
+            BatchUpdateException failure = new BatchUpdateException(e.getMessage(),
+                    e.getSQLState(),
+                    e.getErrorCode(),
+                    Arrays.copyOf(retval, transactional ? 0 : count),
+                    e);
+
+            /*
+             * Some errors make SQLite roll back the whole transaction by
+             * itself.  A failure to clean up must not hide the original one.
+             */
+            try {
+                if (transactional && !this.conn.getAutoCommit()) {
+                    if (savepoint != null) {
+                        this.conn.executeCanned("ROLLBACK TO " + savepoint);
+                        this.conn.executeCanned("RELEASE " + savepoint);
+                    }
+                    else {
+                        this.conn.executeCanned("ROLLBACK");
+                    }
+                }
+            }
+            catch (SQLException cleanup) {
+                failure.setNextException(cleanup);
+            }
+            throw failure;
+        }
+        finally {
+            script.release();
+            this.conn.endWrite();
+        }
+
+        if (savepoint != null)
+            this.conn.executeCanned("RELEASE " + savepoint);
+        else if (transactional)
+            this.conn.executeCanned("COMMIT");
+
+        retval = Arrays.copyOf(retval, count);
+        this.lastUpdateCount = count > 0 ? retval[0] : -1;
+        this.pendingUpdateCounts = retval;
+        this.pendingIndex = 1;
+
+        return retval;
+    }
+
     @Override
     public int[] executeBatch() throws SQLException {
         String[] batchCopy = this.batchList.toArray(new String[this.batchList.size()]);
@@ -408,14 +603,21 @@ public class SqliteStatement extends SqliteCommon implements Statement {
     public Connection getConnection() throws SQLException {
         requireOpened();
 
-        return this.conn;
+        return this.logicalConnection != null ? this.logicalConnection : this.conn;
+    }
+
+    /**
+     * Set the connection to report from getConnection() when the statement
+     * was created through a pooled handle.
+     */
+    void setLogicalConnection(Connection logicalConnection) {
+        this.logicalConnection = logicalConnection;
     }
 
     @Override
     public boolean getMoreResults(int i) throws SQLException {
-        requireOpened();
-
-        return false;  //To change body of implemented methods use File | Settings | File Templates.
+        /* The current result set always shares the statement handle, so it cannot be kept open. */
+        return this.getMoreResults();
     }
 
     @Override
@@ -465,14 +667,25 @@ public class SqliteStatement extends SqliteCommon implements Statement {
         return this.closed;
     }
 
+    /**
+     * Poolable statements hand their prepared statement handles back to the
+     * connection's statement cache when they are done with them, so that
+     * executing the same SQL again does not need to prepare it again.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public void setPoolable(boolean b) throws SQLException {
-        //To change body of implemented methods use File | Settings | File Templates.
+        requireOpened();
+
+        this.poolable = b;
     }
 
     @Override
     public boolean isPoolable() throws SQLException {
-        return false;  //To change body of implemented methods use File | Settings | File Templates.
+        requireOpened();
+
+        return this.poolable;
     }
 
     @Override
@@ -26,6 +26,11 @@
 
 package org.sqlitejdbcng;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,6 +40,7 @@ public class SqliteUrl {
     private static final Pattern SQLITE_URL_PATTERN = Pattern.compile(PREFIX + "(.*)", Pattern.CASE_INSENSITIVE);
 
     private final String path;
+    private final Properties properties = new Properties();
 
     public SqliteUrl(String url) {
         Matcher matcher = SQLITE_URL_PATTERN.matcher(url);
@@ -44,14 +50,77 @@ public class SqliteUrl {
         }
 
         String userPath = matcher.group(1);
+        int queryStart = userPath.indexOf('?');
+
+        if (queryStart != -1) {
+            /*
+             * Only the driver's own properties are pulled out of the query,
+             * anything else is left for SQLite to interpret as a URI
+             * parameter, like "mode=ro".
+             */
+            List<String> remaining = new ArrayList<>();
+
+            for (String param : userPath.substring(queryStart + 1).split("&")) {
+                int equals = param.indexOf('=');
+                String key = equals == -1 ? param : param.substring(0, equals);
+
+                if (equals != -1 && SqliteProperty.isKnownKey(key))
+                    this.properties.setProperty(key, decode(param.substring(equals + 1)));
+                else
+                    remaining.add(param);
+            }
+
+            StringBuilder sb = new StringBuilder(userPath.substring(0, queryStart));
+
+            for (int lpc = 0; lpc < remaining.size(); lpc++) {
+                sb.append(lpc == 0 ? '?' : '&');
+                sb.append(remaining.get(lpc));
+            }
+            userPath = sb.toString();
+        }
 
         this.path = userPath;
     }
 
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public String getPath() {
         return this.path;
     }
 
+    /**
+     * @return The driver properties that were given in the URL query.
+     */
+    public Properties getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Combine the properties passed to the driver with the ones in the URL,
+     * the URL takes precedence.
+     */
+    public Properties merge(Properties info) {
+        Properties retval = new Properties();
+
+        if (info != null) {
+            for (String name : info.stringPropertyNames()) {
+                retval.setProperty(name, info.getProperty(name));
+            }
+        }
+        for (String name : this.properties.stringPropertyNames()) {
+            retval.setProperty(name, this.properties.getProperty(name));
+        }
+
+        return retval;
+    }
+
     public static boolean isSqliteUrl(String url) {
         return url.toLowerCase().startsWith(PREFIX);
     }
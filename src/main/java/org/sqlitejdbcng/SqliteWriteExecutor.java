@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for small writes coming from many threads.  Units of work
+ * are queued and a single writer thread runs everything that has queued up
+ * in one transaction, so the cost of the commit is shared by the whole
+ * group instead of being paid by every write.  Each unit runs inside its
+ * own savepoint, a unit that fails is rolled back without affecting the
+ * rest of the group.  The future returned by submit() completes only after
+ * the transaction holding the unit has been committed.
+ *
+ * Units must not commit, roll back or otherwise change the transaction
+ * state of the connection they are given.
+ *
+ * @see SqliteDataSource#getWriteExecutor()
+ */
+public class SqliteWriteExecutor implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SqliteWriteExecutor.class.getName());
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final String UNIT_SAVEPOINT = "sqlitejdbcng_unit";
+
+    public static final int DEFAULT_MAX_GROUP_SIZE = 1024;
+
+    /**
+     * A unit of work to be run by the executor.
+     */
+    public interface Unit<T> {
+        T run(SqliteConnection conn) throws SQLException;
+    }
+
+    private static class Completion<T> extends FutureTask<T> {
+        private static final Callable<Object> NOTHING = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return null;
+            }
+        };
+
+        private final Unit<T> unit;
+        private T value;
+        private Throwable failure;
+        private boolean claimed;
+
+        @SuppressWarnings("unchecked")
+        Completion(Unit<T> unit) {
+            super((Callable<T>) NOTHING);
+            this.unit = unit;
+        }
+
+        /**
+         * Take the unit for the writer thread.  Once claimed, the unit can
+         * no longer be cancelled.
+         *
+         * @return False if the unit was cancelled and should be skipped.
+         */
+        synchronized boolean claim() {
+            if (this.isCancelled())
+                return false;
+
+            this.claimed = true;
+
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (this.claimed)
+                return false;
+
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        void complete() {
+            if (this.failure != null)
+                this.setException(this.failure);
+            else
+                this.set(this.value);
+        }
+
+        void fail(Throwable cause) {
+            this.setException(this.failure != null ? this.failure : cause);
+        }
+    }
+
+    /* Queued by close() after the last unit so the writer knows to stop. */
+    private final Completion<Object> stopMarker = new Completion<>(null);
+
+    private final SqliteConnectionHandle.Source source;
+    private final BlockingQueue<Completion<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile int maxGroupSize = DEFAULT_MAX_GROUP_SIZE;
+    private volatile boolean closed;
+    private long groupCount;
+    private long unitCount;
+
+    /**
+     * Create an executor that does all of its writes on the given
+     * connection.  Nothing else should write with the connection while the
+     * executor is open.
+     */
+    public SqliteWriteExecutor(final SqliteConnection conn) {
+        this(new SqliteConnectionHandle.Source() {
+            @Override
+            public SqliteConnection acquire(boolean readOnly) throws SQLException {
+                return conn;
+            }
+
+            @Override
+            public void release(SqliteConnection conn) throws SQLException {
+            }
+
+            @Override
+            public void handleClosed(SqliteConnectionHandle handle) {
+            }
+        });
+    }
+
+    SqliteWriteExecutor(SqliteConnectionHandle.Source source) {
+        this.source = source;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runGroups();
+            }
+        }, "sqlitejdbcng-writer-" + THREAD_COUNTER.incrementAndGet());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param maxGroupSize The most units to put in a single transaction.
+     */
+    public void setMaxGroupSize(int maxGroupSize) {
+        if (maxGroupSize < 1)
+            throw new IllegalArgumentException("Group size must be at least one");
+
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    public int getMaxGroupSize() {
+        return this.maxGroupSize;
+    }
+
+    /**
+     * Queue a unit of work.
+     *
+     * @return A future that completes with the value returned by the unit
+     *   once it has been committed or with the exception that caused the
+     *   unit or its group to fail.  Cancelling the future only works until
+     *   the writer thread picks the unit up.
+     */
+    public <T> Future<T> submit(Unit<T> unit) throws SQLException {
+        if (unit == null)
+            throw new SQLNonTransientException("Unit cannot be null");
+
+        Completion<T> retval = new Completion<>(unit);
+
+        synchronized (this) {
+            if (this.closed)
+                throw new SQLNonTransientException("Write executor is closed");
+            this.queue.add(retval);
+        }
+
+        return retval;
+    }
+
+    /**
+     * Queue a single update statement.
+     *
+     * @return A future that completes with the update count.
+     */
+    public Future<Integer> submitUpdate(final String sql, final Object... params) throws SQLException {
+        return this.submit(new Unit<Integer>() {
+            @Override
+            public Integer run(SqliteConnection conn) throws SQLException {
+                try (java.sql.PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int lpc = 0; lpc < params.length; lpc++) {
+                        ps.setObject(lpc + 1, params[lpc]);
+                    }
+                    return ps.executeUpdate();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The number of transactions committed so far.
+     */
+    public synchronized long getGroupCount() {
+        return this.groupCount;
+    }
+
+    /**
+     * @return The number of units that have been run so far.
+     */
+    public synchronized long getUnitCount() {
+        return this.unitCount;
+    }
+
+    /**
+     * Stop accepting new units, wait for the queued ones to finish and then
+     * stop the writer thread.
+     */
+    @Override
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.queue.add(this.stopMarker);
+        }
+
+        try {
+            this.writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runGroups() {
+        List<Completion<?>> group = new ArrayList<>();
+        boolean stop = false;
+
+        while (!stop) {
+            try {
+                group.add(this.queue.take());
+            }
+            catch (InterruptedException e) {
+                continue;
+            }
+            this.queue.drainTo(group, this.maxGroupSize - 1);
+
+            /* Nothing can be queued after the marker, so it is always last. */
+            if (group.get(group.size() - 1) == this.stopMarker) {
+                group.remove(group.size() - 1);
+                stop = true;
+            }
+            /* A unit that has been cancelled while queued is dropped. */
+            for (int lpc = group.size() - 1; lpc >= 0; lpc--) {
+                if (!group.get(lpc).claim())
+                    group.remove(lpc);
+            }
+            if (!group.isEmpty()) {
+                try {
+                    this.runGroup(group);
+                }
+                catch (Throwable e) {
+                    /* Keep the writer thread alive for the units that are still queued. */
+                    LOGGER.log(Level.SEVERE, "Unexpected failure running a group commit", e);
+                    for (Completion<?> completion : group) {
+                        completion.fail(e);
+                    }
+                }
+            }
+            group.clear();
+        }
+    }
+
+    private void runGroup(List<Completion<?>> group) {
+        SqliteConnection conn;
+
+        try {
+            conn = this.source.acquire(false);
+        }
+        catch (Throwable e) {
+            for (Completion<?> completion : group) {
+                completion.fail(e);
+            }
+            return;
+        }
+
+        try {
+            conn.executeCanned("BEGIN IMMEDIATE");
+            for (Completion<?> completion : group) {
+                this.runUnit(conn, completion);
+            }
+            conn.executeCanned("COMMIT");
+            synchronized (this) {
+                this.groupCount += 1;
+                this.unitCount += group.size();
+            }
+            for (Completion<?> completion : group) {
+                completion.complete();
+            }
+        }
+        catch (Throwable e) {
+            try {
+                if (!conn.getAutoCommit())
+                    conn.executeCanned("ROLLBACK");
+            }
+            catch (SQLException | RuntimeException rollbackError) {
+                LOGGER.log(Level.WARNING, "Unable to roll back failed group commit", rollbackError);
+            }
+            for (Completion<?> completion : group) {
+                completion.fail(e);
+            }
+        }
+        finally {
+            try {
+                this.source.release(conn);
+            }
+            catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to release writer connection", e);
+            }
+        }
+    }
+
+    private <T> void runUnit(SqliteConnection conn, Completion<T> completion) throws SQLException {
+        conn.executeCanned("SAVEPOINT " + UNIT_SAVEPOINT);
+        try {
+            completion.value = completion.unit.run(conn);
+        }
+        catch (SQLException | RuntimeException | Error e) {
+            completion.failure = e;
+            conn.executeCanned("ROLLBACK TO " + UNIT_SAVEPOINT);
+        }
+        conn.executeCanned("RELEASE " + UNIT_SAVEPOINT);
+    }
+}
@@ -41,6 +41,13 @@ import java.util.logging.Logger;
 public class Sqlite3 {
 
     public static final boolean SQLITE_ENABLE_COLUMN_METADATA;
+
+    /**
+     * System property that selects the threading mode of the library, either
+     * "SERIALIZED" or "MULTITHREAD".  It has to be set before the driver is
+     * loaded since the mode can only be changed before the first open.
+     */
+    public static final String THREADING_MODE_PROPERTY = "org.sqlitejdbcng.threadingMode";
     public static boolean HAVE_STMT_READONLY = true;
 
     private static final Logger LOGGER = Logger.getLogger(Sqlite3.class.getName());
@@ -62,6 +69,7 @@ public class Sqlite3 {
     static {
         BridJ.register();
         sqlite3_config(ConfigOption.SQLITE_CONFIG_LOG.value(), Pointer.pointerTo(REPEATER), null);
+        configureThreadingMode(System.getProperty(THREADING_MODE_PROPERTY));
 
         boolean result;
 
@@ -74,6 +82,39 @@ public class Sqlite3 {
         SQLITE_ENABLE_COLUMN_METADATA = result;
     }
 
+    private static void configureThreadingMode(String mode) {
+        if (mode == null)
+            return;
+
+        if (sqlite3_threadsafe() == 0) {
+            LOGGER.log(Level.WARNING, "Ignoring {0}={1}, the library was built without thread support",
+                    new Object[] { THREADING_MODE_PROPERTY, mode });
+            return;
+        }
+
+        ConfigOption option;
+
+        switch (mode.trim().toUpperCase()) {
+            case "SERIALIZED":
+                option = ConfigOption.SQLITE_CONFIG_SERIALIZED;
+                break;
+            case "MULTITHREAD":
+                option = ConfigOption.SQLITE_CONFIG_MULTITHREAD;
+                break;
+            default:
+                LOGGER.log(Level.WARNING, "Ignoring unknown threading mode {0}={1}",
+                        new Object[] { THREADING_MODE_PROPERTY, mode });
+                return;
+        }
+
+        int rc = sqlite3_config(option.value());
+
+        if (rc != ReturnCodes.SQLITE_OK.value()) {
+            LOGGER.log(Level.WARNING, "Unable to set threading mode {0}, the library is already initialized -- {1}",
+                    new Object[] { option, rc });
+        }
+    }
+
     public static class NoopReleaser implements Pointer.Releaser {
         @Override
         public void release(Pointer<?> objects) {
@@ -145,17 +186,31 @@ public class Sqlite3 {
         public abstract int apply(Pointer<Void> context);
     }
 
+    public static abstract class BusyHandlerBase extends Callback<BusyHandlerBase> {
+        /**
+         * @param count The number of times the handler has been invoked for
+         *   this lock event.
+         * @return Non-zero to try to get the lock again, zero to give up and
+         *   return SQLITE_BUSY.
+         */
+        public abstract int apply(Pointer<Void> context, int count);
+    }
+
     public static class Sqlite3Db extends StructObject {
     }
 
     public static class Statement extends StructObject {
     }
 
+    public static class Backup extends StructObject {
+    }
+
     public static native Pointer<Byte> sqlite3_libversion();
     public static native int sqlite3_libversion_number();
     public static native Pointer<Byte> sqlite3_sourceid();
 
     public static native int sqlite3_compileoption_used(Pointer<Byte> name);
+    public static native int sqlite3_threadsafe();
     public static native int sqlite3_config(int option, Object... varargs);
 
     public static native Pointer<Byte> sqlite3_mprintf(Pointer<Byte> fmt, Object... varargs);
@@ -171,6 +226,8 @@ public class Sqlite3 {
                                              int flags,
                                              Pointer<Byte> vfsName);
     public static native int sqlite3_close(Pointer<Sqlite3Db> db);
+    public static native Pointer<?> sqlite3_db_mutex(Pointer<Sqlite3Db> db);
+    public static native Pointer<Byte> sqlite3_db_filename(Pointer<Sqlite3Db> db, Pointer<Byte> dbName);
     public static native int sqlite3_close_v2(Pointer<Sqlite3Db> db);
 
     public static native Pointer<Statement> sqlite3_next_stmt(Pointer<Sqlite3Db> db,
@@ -195,10 +252,36 @@ public class Sqlite3 {
                                                     Pointer<AuthCallbackBase> cb,
                                                     Pointer<Void> userData);
 
+    public static native Pointer<Backup> sqlite3_backup_init(Pointer<Sqlite3Db> dest,
+                                                             Pointer<Byte> destName,
+                                                             Pointer<Sqlite3Db> source,
+                                                             Pointer<Byte> sourceName);
+    public static native int sqlite3_backup_step(Pointer<Backup> backup, int pages);
+    public static native int sqlite3_backup_remaining(Pointer<Backup> backup);
+    public static native int sqlite3_backup_pagecount(Pointer<Backup> backup);
+    public static native int sqlite3_backup_finish(Pointer<Backup> backup);
+
+    public static native long sqlite3_memory_used();
+    public static native long sqlite3_memory_highwater(int resetFlag);
+    public static native int sqlite3_status(int op, Pointer<Integer> current, Pointer<Integer> highwater,
+                                            int resetFlag);
+    @Optional
+    public static native int sqlite3_status64(int op, Pointer<Long> current, Pointer<Long> highwater,
+                                              int resetFlag);
+    public static native int sqlite3_db_status(Pointer<Sqlite3Db> db, int op,
+                                               Pointer<Integer> current, Pointer<Integer> highwater,
+                                               int resetFlag);
+
     public static native int sqlite3_get_autocommit(Pointer<Sqlite3Db> db);
     public static native Pointer<Byte> sqlite3_errmsg(Pointer<Sqlite3Db> db);
 
     public static native int sqlite3_limit(Pointer<Sqlite3Db> db, int id, int newVal);
+    public static native int sqlite3_busy_timeout(Pointer<Sqlite3Db> db, int ms);
+    public static native int sqlite3_busy_handler(Pointer<Sqlite3Db> db,
+                                                  Pointer<BusyHandlerBase> cb,
+                                                  Pointer<Void> userData);
+    public static native int sqlite3_extended_result_codes(Pointer<Sqlite3Db> db, int onoff);
+    public static native int sqlite3_extended_errcode(Pointer<Sqlite3Db> db);
 
     public static native int sqlite3_clear_bindings(Pointer<Statement> stmt);
     public static native int sqlite3_bind_parameter_count(Pointer<Statement> stmt);
@@ -223,6 +306,34 @@ public class Sqlite3 {
 
     public static native Pointer<Byte> sqlite3_sql(Pointer<Statement> stmt);
     public static native int sqlite3_step(Pointer<Statement> stmt);
+    public static native int sqlite3_stmt_status(Pointer<Statement> stmt, int op, int resetFlag);
+    @Optional
+    public static native Pointer<Byte> sqlite3_expanded_sql(Pointer<Statement> stmt);
+
+    /**
+     * @return The SQL text of the statement with the bound parameters
+     *   substituted, or the original text if the library cannot do that.
+     */
+    public static String expanded_sql(Pointer<Statement> stmt) {
+        Pointer<Byte> result = null;
+
+        try {
+            result = sqlite3_expanded_sql(stmt);
+        }
+        catch (UnsatisfiedLinkError e) {
+            /* Fall back to the original text below. */
+        }
+
+        if (result == null)
+            return sqlite3_sql(stmt).getCString();
+
+        try {
+            return result.getCString();
+        }
+        finally {
+            sqlite3_free(result);
+        }
+    }
 
     public static native int sqlite3_stmt_readonly(Pointer<Statement> stmt);
 
@@ -468,16 +579,19 @@ public class Sqlite3 {
         SQLITE_SAVEPOINT(32),   /* Operation       Savepoint Name  */
         SQLITE_COPY(0);   /* No longer used */
 
-        private static final HashMap<Integer, ActionCode> VALUE_TO_ENUM = new HashMap<>();
+        private static final ActionCode[] VALUE_TO_ENUM = new ActionCode[SQLITE_SAVEPOINT.value + 1];
 
         static {
             for (ActionCode rc : values()) {
-                VALUE_TO_ENUM.put(rc.value, rc);
+                VALUE_TO_ENUM[rc.value] = rc;
             }
         }
 
         public static ActionCode valueOf(int value) {
-            return VALUE_TO_ENUM.get(value);
+            if (value < 0 || value >= VALUE_TO_ENUM.length)
+                return null;
+
+            return VALUE_TO_ENUM[value];
         }
 
         private final int value;
@@ -530,7 +644,8 @@ public class Sqlite3 {
         SQLITE_LIMIT_ATTACHED(7),
         SQLITE_LIMIT_LIKE_PATTERN_LENGTH(8),
         SQLITE_LIMIT_VARIABLE_NUMBER(9),
-        SQLITE_LIMIT_TRIGGER_DEPTH(10);
+        SQLITE_LIMIT_TRIGGER_DEPTH(10),
+        SQLITE_LIMIT_WORKER_THREADS(11);
 
         private static final HashMap<Integer, Limit> VALUE_TO_ENUM = new HashMap<>();
 
@@ -555,6 +670,88 @@ public class Sqlite3 {
         }
     };
 
+    public enum StatusOp {
+        SQLITE_STATUS_MEMORY_USED(0),
+        SQLITE_STATUS_PAGECACHE_USED(1),
+        SQLITE_STATUS_PAGECACHE_OVERFLOW(2),
+        SQLITE_STATUS_MALLOC_SIZE(5),
+        SQLITE_STATUS_PARSER_STACK(6),
+        SQLITE_STATUS_PAGECACHE_SIZE(7),
+        SQLITE_STATUS_MALLOC_COUNT(9);
+
+        private final int value;
+
+        StatusOp(int value_in) {
+            this.value = value_in;
+        }
+
+        public int value() {
+            return this.value;
+        }
+    }
+
+    public enum DbStatusOp {
+        SQLITE_DBSTATUS_LOOKASIDE_USED(0),
+        SQLITE_DBSTATUS_CACHE_USED(1),
+        SQLITE_DBSTATUS_SCHEMA_USED(2),
+        SQLITE_DBSTATUS_STMT_USED(3),
+        SQLITE_DBSTATUS_LOOKASIDE_HIT(4),
+        SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE(5),
+        SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL(6),
+        SQLITE_DBSTATUS_CACHE_HIT(7),
+        SQLITE_DBSTATUS_CACHE_MISS(8),
+        SQLITE_DBSTATUS_CACHE_WRITE(9),
+        SQLITE_DBSTATUS_DEFERRED_FKS(10),
+        SQLITE_DBSTATUS_CACHE_USED_SHARED(11),
+        SQLITE_DBSTATUS_CACHE_SPILL(12);
+
+        private final int value;
+
+        DbStatusOp(int value_in) {
+            this.value = value_in;
+        }
+
+        public int value() {
+            return this.value;
+        }
+    }
+
+    public enum StmtStatusOp {
+        SQLITE_STMTSTATUS_FULLSCAN_STEP(1),
+        SQLITE_STMTSTATUS_SORT(2),
+        SQLITE_STMTSTATUS_AUTOINDEX(3),
+        SQLITE_STMTSTATUS_VM_STEP(4),
+        SQLITE_STMTSTATUS_REPREPARE(5, 3020000),
+        SQLITE_STMTSTATUS_RUN(6, 3020000),
+        SQLITE_STMTSTATUS_MEMUSED(99, 3020000);
+
+        private static final int LIB_VERSION = sqlite3_libversion_number();
+
+        private final int value;
+        private final int since;
+
+        StmtStatusOp(int value_in) {
+            this(value_in, 0);
+        }
+
+        StmtStatusOp(int value_in, int since) {
+            this.value = value_in;
+            this.since = since;
+        }
+
+        public int value() {
+            return this.value;
+        }
+
+        /**
+         * @return True if the loaded library knows this counter, older
+         *   libraries just return zero for the ones they do not.
+         */
+        public boolean isAvailable() {
+            return LIB_VERSION >= this.since;
+        }
+    }
+
     public enum DataType {
         SQLITE_INTEGER(1, "INTEGER"),
         SQLITE_FLOAT(2, "REAL"),
@@ -562,16 +759,19 @@ public class Sqlite3 {
         SQLITE_BLOB(4, "BLOB"),
         SQLITE_NULL(5, "NULL");
 
-        private static final HashMap<Integer, DataType> VALUE_TO_ENUM = new HashMap<>();
+        private static final DataType[] VALUE_TO_ENUM = new DataType[SQLITE_NULL.value + 1];
 
         static {
             for (DataType dt : values()) {
-                VALUE_TO_ENUM.put(dt.value, dt);
+                VALUE_TO_ENUM[dt.value] = dt;
             }
         }
 
         public static DataType valueOf(int value) {
-            return VALUE_TO_ENUM.get(value);
+            if (value < 0 || value >= VALUE_TO_ENUM.length)
+                return null;
+
+            return VALUE_TO_ENUM[value];
         }
 
         private final int value;
@@ -619,19 +819,34 @@ public class Sqlite3 {
         SQLITE_FORMAT(24, "Auxiliary database format error"),
         SQLITE_RANGE(25, "2nd parameter to sqlite3_bind out of range"),
         SQLITE_NOTADB(26, "File opened that is not a database file"),
+        SQLITE_NOTICE(27, "Notifications from sqlite3_log()"),
+        SQLITE_WARNING(28, "Warnings from sqlite3_log()"),
         SQLITE_ROW(100, "sqlite3_step() has another row ready"),
         SQLITE_DONE(101, "sqlite3_step() has finished executing");
 
-        private static final HashMap<Long, ReturnCodes> VALUE_TO_ENUM = new HashMap<>();
+        /*
+         * The primary result codes all fit in the low byte, so a lookup
+         * table indexed by that byte avoids boxing the code to look it up
+         * in a map on every call.
+         */
+        private static final ReturnCodes[] VALUE_TO_ENUM = new ReturnCodes[256];
 
         static {
             for (ReturnCodes rc : values()) {
-                VALUE_TO_ENUM.put(rc.value, rc);
+                VALUE_TO_ENUM[(int) rc.value] = rc;
             }
         }
 
+        /**
+         * @return The primary result code for a primary or extended result
+         *   code, or null if the low byte is not a known primary code.
+         */
+        public static ReturnCodes valueOf(int value) {
+            return VALUE_TO_ENUM[value & 0xff];
+        }
+
         public static ReturnCodes valueOf(long value) {
-            return VALUE_TO_ENUM.get(value);
+            return valueOf((int) value);
         }
 
         private final long value;
@@ -651,23 +866,78 @@ public class Sqlite3 {
         }
     }
 
-    public static void checkOk(int rc, Pointer<Sqlite3Db> db) throws SQLException {
-        ReturnCodes rcEnum = ReturnCodes.valueOf(rc);
+    /**
+     * The extended result codes that are reported when they have been
+     * enabled with sqlite3_extended_result_codes().  The primary code is
+     * always in the low byte.
+     */
+    public enum ExtendedReturnCodes {
+        SQLITE_BUSY_RECOVERY(5 | (1 << 8)),
+        SQLITE_BUSY_SNAPSHOT(5 | (2 << 8)),
+        SQLITE_BUSY_TIMEOUT(5 | (3 << 8)),
+        SQLITE_LOCKED_SHAREDCACHE(6 | (1 << 8)),
+        SQLITE_LOCKED_VTAB(6 | (2 << 8)),
+        SQLITE_READONLY_RECOVERY(8 | (1 << 8)),
+        SQLITE_READONLY_CANTLOCK(8 | (2 << 8)),
+        SQLITE_READONLY_ROLLBACK(8 | (3 << 8)),
+        SQLITE_READONLY_DBMOVED(8 | (4 << 8)),
+        SQLITE_ABORT_ROLLBACK(4 | (2 << 8)),
+        SQLITE_CONSTRAINT_CHECK(19 | (1 << 8)),
+        SQLITE_CONSTRAINT_FOREIGNKEY(19 | (3 << 8)),
+        SQLITE_CONSTRAINT_NOTNULL(19 | (5 << 8)),
+        SQLITE_CONSTRAINT_PRIMARYKEY(19 | (6 << 8)),
+        SQLITE_CONSTRAINT_UNIQUE(19 | (8 << 8));
+
+        private static final HashMap<Integer, ExtendedReturnCodes> VALUE_TO_ENUM = new HashMap<>();
+
+        static {
+            for (ExtendedReturnCodes rc : values()) {
+                VALUE_TO_ENUM.put(rc.value, rc);
+            }
+        }
+
+        public static ExtendedReturnCodes valueOf(int value) {
+            return VALUE_TO_ENUM.get(value);
+        }
+
+        private final int value;
+
+        ExtendedReturnCodes(int value_in) {
+            this.value = value_in;
+        }
 
-        switch (rcEnum){
-            case SQLITE_OK:
-            case SQLITE_ROW:
-            case SQLITE_DONE:
+        public int value() {
+            return this.value;
+        }
+
+        public ReturnCodes primary() {
+            return ReturnCodes.valueOf(this.value);
+        }
+    }
+
+    public static void checkOk(int rc, Pointer<Sqlite3Db> db) throws SQLException {
+        switch (rc) {
+            case 0: /* SQLITE_OK */
+            case 100: /* SQLITE_ROW */
+            case 101: /* SQLITE_DONE */
                 break;
             default: {
+                ReturnCodes rcEnum = ReturnCodes.valueOf(rc);
                 String msg;
 
                 if (db != null) {
                     msg = sqlite3_errmsg(db).getCString();
                 }
-                else {
+                else if (rcEnum != null) {
                     msg = rcEnum.message();
                 }
+                else {
+                    msg = "Unknown result code";
+                }
+
+                if (rcEnum == null) {
+                    throw new SQLException(msg + ": " + rc, "", rc);
+                }
 
                 switch (rcEnum) {
                     case SQLITE_ERROR:
@@ -676,6 +946,13 @@ public class Sqlite3 {
                     case SQLITE_CORRUPT:
                         throw new SQLNonTransientException(msg, "", rc);
                     case SQLITE_BUSY:
+                        /*
+                         * A stale snapshot cannot be fixed by waiting, the
+                         * transaction has to be restarted.
+                         */
+                        if (rc == ExtendedReturnCodes.SQLITE_BUSY_SNAPSHOT.value())
+                            throw new SQLTransactionRollbackException(msg, "", rc);
+                        throw new SQLTransientException(msg, "", rc);
                     case SQLITE_IOERR:
                     case SQLITE_NOTFOUND:
                     case SQLITE_INTERRUPT:
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Native memory for the text and blob values bound to a prepared statement.
+ *
+ * Every parameter gets its own buffer that is reused from one bind to the
+ * next, so the values can be bound with SQLITE_STATIC instead of having
+ * SQLite call back into Java to free a freshly allocated buffer.  Strings
+ * are encoded to UTF-8 directly into the buffer.
+ *
+ * A buffer stays valid until the same parameter is bound again, so the
+ * arena must not be released until the bindings on the statement handle
+ * have been cleared or the handle has been finalized.
+ */
+public class BindArena {
+    private static final int MIN_CAPACITY = 64;
+    /** Buffers larger than this are shrunk when a small value comes along. */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final Pointer<Byte>[] buffers;
+    private final ByteBuffer[] views;
+    private final int[] lengths;
+
+    @SuppressWarnings("unchecked")
+    public BindArena(int count) {
+        this.buffers = new Pointer[count];
+        this.views = new ByteBuffer[count];
+        this.lengths = new int[count];
+    }
+
+    /**
+     * @return The length in bytes of the value last stored for the given
+     *   parameter.
+     */
+    public int length(int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * Store the UTF-8 encoding of a string in the buffer for a parameter.
+     * The encoding is not NUL-terminated, use length() to get the number
+     * of bytes.
+     */
+    public Pointer<Byte> putString(int index, String str) {
+        ByteBuffer view = this.views[index];
+
+        /* A char never takes more than three bytes in UTF-8. */
+        if (view == null || (long) str.length() * 3 > view.capacity() ||
+                view.capacity() > MAX_RETAINED_CAPACITY) {
+            view = this.reserve(index, utf8Length(str));
+        }
+
+        this.lengths[index] = encodeUtf8(str, view);
+
+        return this.buffers[index];
+    }
+
+    public Pointer<Byte> putBytes(int index, byte[] bytes) {
+        ByteBuffer view = this.reserve(index, bytes.length);
+
+        view.clear();
+        view.put(bytes);
+        this.lengths[index] = bytes.length;
+
+        return this.buffers[index];
+    }
+
+    /**
+     * Free all of the buffers.
+     */
+    public void release() {
+        for (int lpc = 0; lpc < this.buffers.length; lpc++) {
+            if (this.buffers[lpc] != null) {
+                this.buffers[lpc].release();
+                this.buffers[lpc] = null;
+                this.views[lpc] = null;
+            }
+        }
+    }
+
+    private ByteBuffer reserve(int index, int size) {
+        ByteBuffer view = this.views[index];
+
+        if (view != null && size <= view.capacity() &&
+                (view.capacity() <= MAX_RETAINED_CAPACITY || size > view.capacity() / 4)) {
+            return view;
+        }
+
+        int capacity = Math.max(size, MIN_CAPACITY);
+
+        if (view != null && size > view.capacity())
+            capacity = Math.max(capacity, Math.min(view.capacity() * 2, Integer.MAX_VALUE / 2));
+
+        /*
+         * The old buffer may still be bound to the statement, but the caller
+         * is about to replace that binding and SQLite does not look at a
+         * SQLITE_STATIC value when it is unbound.
+         */
+        if (this.buffers[index] != null)
+            this.buffers[index].release();
+        this.buffers[index] = Pointer.allocateBytes(capacity);
+        this.views[index] = this.buffers[index].getByteBuffer();
+
+        return this.views[index];
+    }
+
+    public static int utf8Length(String str) {
+        int strLen = str.length();
+        int retval = strLen;
+
+        for (int lpc = 0; lpc < strLen; lpc++) {
+            char ch = str.charAt(lpc);
+
+            if (ch >= 0x80) {
+                if (ch < 0x800) {
+                    retval += 1;
+                }
+                else if (Character.isHighSurrogate(ch) && lpc + 1 < strLen &&
+                        Character.isLowSurrogate(str.charAt(lpc + 1))) {
+                    /* Two chars turn into four bytes. */
+                    retval += 2;
+                    lpc += 1;
+                }
+                else {
+                    retval += 2;
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * Encode a string as UTF-8 at the start of the given buffer, which must
+     * be large enough to hold the result.  Unpaired surrogates are replaced
+     * with '?', like String.getBytes() does.
+     *
+     * @return The number of bytes written.
+     */
+    public static int encodeUtf8(String str, ByteBuffer dest) {
+        int strLen = str.length();
+        int pos = 0;
+        int lpc = 0;
+
+        /* Fast path for ASCII. */
+        for (; lpc < strLen; lpc++) {
+            char ch = str.charAt(lpc);
+
+            if (ch >= 0x80)
+                break;
+            dest.put(pos++, (byte) ch);
+        }
+
+        for (; lpc < strLen; lpc++) {
+            char ch = str.charAt(lpc);
+
+            if (ch < 0x80) {
+                dest.put(pos++, (byte) ch);
+            }
+            else if (ch < 0x800) {
+                dest.put(pos++, (byte) (0xc0 | (ch >> 6)));
+                dest.put(pos++, (byte) (0x80 | (ch & 0x3f)));
+            }
+            else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && lpc + 1 < strLen &&
+                        Character.isLowSurrogate(str.charAt(lpc + 1))) {
+                    int cp = Character.toCodePoint(ch, str.charAt(lpc + 1));
+
+                    dest.put(pos++, (byte) (0xf0 | (cp >> 18)));
+                    dest.put(pos++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+                    dest.put(pos++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+                    dest.put(pos++, (byte) (0x80 | (cp & 0x3f)));
+                    lpc += 1;
+                }
+                else {
+                    dest.put(pos++, (byte) '?');
+                }
+            }
+            else {
+                dest.put(pos++, (byte) (0xe0 | (ch >> 12)));
+                dest.put(pos++, (byte) (0x80 | ((ch >> 6) & 0x3f)));
+                dest.put(pos++, (byte) (0x80 | (ch & 0x3f)));
+            }
+        }
+
+        return pos;
+    }
+}
@@ -29,42 +29,11 @@ package org.sqlitejdbcng.internal;
 import org.bridj.Pointer;
 import org.sqlitejdbcng.bridj.Sqlite3;
 
-import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Types;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ColumnData {
-    private static final Pattern TYPE_PATTERN = Pattern.compile(
-            "([A-Z_0-9 ]+)\\s*" +
-                    "(?:\\(\\s*(\\d+)\\s*(?:,\\s*(\\d+))?\\s*\\))?");
-
-    private static final Map<String, Integer> TYPE_MAP = new HashMap<>();
-
-    static {
-        /* XXX this isn't the right way to do this... */
-        TYPE_MAP.put("INT", Types.INTEGER);
-        TYPE_MAP.put("MEDIUMINT", Types.INTEGER);
-        TYPE_MAP.put("INT2", Types.INTEGER);
-        TYPE_MAP.put("INT4", Types.INTEGER);
-        TYPE_MAP.put("INT8", Types.INTEGER);
-        TYPE_MAP.put("UNSIGNED BIG INT", Types.BIGINT);
-
-        TYPE_MAP.put("NATIVE CHARACTER", Types.NCHAR);
-        TYPE_MAP.put("VARYING CHARACTER", Types.NCHAR);
-        TYPE_MAP.put("TEXT", Types.VARCHAR);
-        TYPE_MAP.put("CHARACTER", Types.CHAR);
-
-        TYPE_MAP.put("DOUBLE PRECISION", Types.REAL);
-
-        TYPE_MAP.put("DATETIME", Types.TIMESTAMP);
-    }
-
     public final String dbName;
     public final String tableName;
     public final int index;
@@ -89,59 +58,43 @@ public class ColumnData {
                       int notNull,
                       int primaryKey,
                       boolean autoInc) {
-        int parenIndex, sqlType = Types.VARCHAR;
-        int precision, scale;
-        Matcher m;
+        this(dbName, tableName, name, index, defaultValue,
+                new ColumnType(fullType,
+                        Sqlite3.sqlite3_limit(db, Sqlite3.Limit.SQLITE_LIMIT_LENGTH.value(), -1)),
+                notNull, primaryKey, autoInc);
+    }
 
+    public ColumnData(String dbName,
+                      String tableName,
+                      String name,
+                      int index,
+                      String defaultValue,
+                      ColumnType columnType,
+                      int notNull,
+                      int primaryKey,
+                      boolean autoInc) {
         this.dbName = dbName;
         this.tableName = tableName;
         this.index = index;
         this.name = name;
-        this.fullType = fullType.toUpperCase();
-
-        precision = Sqlite3.sqlite3_limit(db, Sqlite3.Limit.SQLITE_LIMIT_LENGTH.value(), -1);
-        scale = 0;
-        m = TYPE_PATTERN.matcher(this.fullType);
-        if (m.matches()) {
-            this.type = m.group(1).trim();
-            if (m.group(2) != null) {
-                precision = Integer.valueOf(m.group(2));
-                if (m.group(3) != null)
-                    scale = Integer.valueOf(m.group(3));
-            }
-        }
-        else {
-            this.type = "VARCHAR";
-        }
-        this.precision = precision;
-        this.scale = scale;
-
-        try {
-            Field typeField = Types.class.getField(this.type);
-
-            sqlType = typeField.getInt(Types.class);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            Integer mappedType = TYPE_MAP.get(this.type);
-
-            if (mappedType == null)
-                sqlType = Types.VARCHAR;
-            else
-                sqlType = mappedType;
-        }
-        this.sqlType = sqlType;
+        this.fullType = columnType.fullType;
+        this.type = columnType.type;
+        this.precision = columnType.precision;
+        this.scale = columnType.scale;
+        this.sqlType = columnType.sqlType;
         this.notNull = notNull;
         this.defaultValue = defaultValue;
         this.primaryKey = primaryKey;
         this.autoInc = autoInc;
     }
 
-    public ColumnData(Pointer<Sqlite3.Sqlite3Db> db, String dbName, String tableName, ResultSet rs) throws SQLException {
-        this(db, dbName,
+    public ColumnData(ColumnTypeCache types, String dbName, String tableName, ResultSet rs) throws SQLException {
+        this(dbName,
                 tableName,
                 rs.getString("name"),
                 rs.getInt("cid") + 1,
                 rs.getString("dflt_value"),
-                rs.getString("type"),
+                types.get(rs.getString("type")),
                 rs.getBoolean("notnull") ? ResultSetMetaData.columnNoNulls :
                 ResultSetMetaData.columnNullable,
                 rs.getInt("pk"),
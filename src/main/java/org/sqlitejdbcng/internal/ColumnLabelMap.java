@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+/**
+ * A case-insensitive map from column label to column index, used by the
+ * ResultSet getters that take a label.  It is an open-addressing table
+ * with linear probing, so a lookup does not allocate.  When a label is
+ * repeated, the first column with that label wins, as JDBC requires.
+ */
+public class ColumnLabelMap {
+    private final String[] labels;
+    private final int[] slots;
+    private final int mask;
+
+    public ColumnLabelMap(String[] labels) {
+        int capacity = 4;
+
+        while (capacity < labels.length * 2)
+            capacity <<= 1;
+
+        this.labels = labels;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int lpc = 0; lpc < labels.length; lpc++) {
+            if (labels[lpc] == null)
+                continue;
+
+            int slot = hash(labels[lpc]) & this.mask;
+
+            while (this.slots[slot] != 0 && !labels[this.slots[slot] - 1].equalsIgnoreCase(labels[lpc]))
+                slot = (slot + 1) & this.mask;
+            if (this.slots[slot] == 0)
+                this.slots[slot] = lpc + 1;
+        }
+    }
+
+    /**
+     * @return The one-based index of the column or zero if there is no
+     *   column with the given label.
+     */
+    public int get(String label) {
+        int slot = hash(label) & this.mask;
+        int index;
+
+        while ((index = this.slots[slot]) != 0) {
+            if (this.labels[index - 1].equalsIgnoreCase(label))
+                return index;
+            slot = (slot + 1) & this.mask;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Build a map from the column names of a prepared statement.
+     */
+    public static ColumnLabelMap fromStatement(Pointer<Sqlite3.Statement> stmt) {
+        String[] labels = new String[Sqlite3.sqlite3_column_count(stmt)];
+
+        for (int lpc = 0; lpc < labels.length; lpc++) {
+            Pointer<Byte> ptr = Sqlite3.sqlite3_column_name(stmt, lpc);
+
+            if (ptr == null)
+                throw new OutOfMemoryError();
+            labels[lpc] = ptr.getCString();
+        }
+
+        return new ColumnLabelMap(labels);
+    }
+
+    /**
+     * @param index The one-based index of the column.
+     */
+    public String getLabel(int index) {
+        return this.labels[index - 1];
+    }
+
+    public int size() {
+        return this.labels.length;
+    }
+
+    /**
+     * A hash that agrees with String.equalsIgnoreCase().
+     */
+    static int hash(String label) {
+        int retval = 0;
+
+        for (int lpc = 0; lpc < label.length(); lpc++) {
+            retval = 31 * retval + Character.toLowerCase(Character.toUpperCase(label.charAt(lpc)));
+        }
+
+        return retval ^ (retval >>> 16);
+    }
+}
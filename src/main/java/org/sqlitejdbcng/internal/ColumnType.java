@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.lang.reflect.Field;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A declared column type, like "DECIMAL(10, 2)", broken down into its name,
+ * precision and scale, along with the closest java.sql.Types value.
+ */
+public class ColumnType {
+    private static final Pattern TYPE_PATTERN = Pattern.compile(
+            "([A-Z_0-9 ]+)\\s*" +
+                    "(?:\\(\\s*(\\d+)\\s*(?:,\\s*(\\d+))?\\s*\\))?");
+
+    private static final Map<String, Integer> TYPE_MAP = new HashMap<>();
+
+    static {
+        /* XXX this isn't the right way to do this... */
+        TYPE_MAP.put("INT", Types.INTEGER);
+        TYPE_MAP.put("MEDIUMINT", Types.INTEGER);
+        TYPE_MAP.put("INT2", Types.INTEGER);
+        TYPE_MAP.put("INT4", Types.INTEGER);
+        TYPE_MAP.put("INT8", Types.INTEGER);
+        TYPE_MAP.put("UNSIGNED BIG INT", Types.BIGINT);
+
+        TYPE_MAP.put("NATIVE CHARACTER", Types.NCHAR);
+        TYPE_MAP.put("VARYING CHARACTER", Types.NCHAR);
+        TYPE_MAP.put("TEXT", Types.VARCHAR);
+        TYPE_MAP.put("CHARACTER", Types.CHAR);
+
+        TYPE_MAP.put("DOUBLE PRECISION", Types.REAL);
+
+        TYPE_MAP.put("DATETIME", Types.TIMESTAMP);
+    }
+
+    public final String fullType;
+    public final String type;
+    public final int precision;
+    public final int scale;
+    public final int sqlType;
+
+    /**
+     * @param fullType The declared type of the column.
+     * @param defaultPrecision The precision to use when the declared type
+     *   does not give one, normally the SQLITE_LIMIT_LENGTH of the database.
+     */
+    public ColumnType(String fullType, int defaultPrecision) {
+        int sqlType, precision = defaultPrecision, scale = 0;
+        Matcher m;
+
+        this.fullType = fullType.toUpperCase();
+
+        m = TYPE_PATTERN.matcher(this.fullType);
+        if (m.matches()) {
+            this.type = m.group(1).trim();
+            if (m.group(2) != null) {
+                precision = Integer.valueOf(m.group(2));
+                if (m.group(3) != null)
+                    scale = Integer.valueOf(m.group(3));
+            }
+        }
+        else {
+            this.type = "VARCHAR";
+        }
+        this.precision = precision;
+        this.scale = scale;
+
+        try {
+            Field typeField = Types.class.getField(this.type);
+
+            sqlType = typeField.getInt(Types.class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            Integer mappedType = TYPE_MAP.get(this.type);
+
+            if (mappedType == null)
+                sqlType = Types.VARCHAR;
+            else
+                sqlType = mappedType;
+        }
+        this.sqlType = sqlType;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection-wide cache of parsed column types.  A schema only uses a
+ * handful of distinct declared types, so there is no point in running the
+ * type pattern and the java.sql.Types lookup every time a result set's
+ * metadata is asked for.
+ */
+public class ColumnTypeCache {
+    private static final int MAX_ENTRIES = 256;
+
+    private final Pointer<Sqlite3.Sqlite3Db> db;
+    private final Map<String, ColumnType> types = new HashMap<>();
+    private int lengthLimit = -1;
+
+    public ColumnTypeCache(Pointer<Sqlite3.Sqlite3Db> db) {
+        this.db = db;
+    }
+
+    public synchronized ColumnType get(String declType) {
+        ColumnType retval = this.types.get(declType);
+
+        if (retval == null) {
+            if (this.lengthLimit == -1) {
+                this.lengthLimit = Sqlite3.sqlite3_limit(this.db,
+                        Sqlite3.Limit.SQLITE_LIMIT_LENGTH.value(), -1);
+            }
+            retval = new ColumnType(declType, this.lengthLimit);
+            /* Only expected to happen with generated schemas. */
+            if (this.types.size() >= MAX_ENTRIES)
+                this.types.clear();
+            this.types.put(declType, retval);
+        }
+
+        return retval;
+    }
+
+    public synchronized int size() {
+        return this.types.size();
+    }
+}
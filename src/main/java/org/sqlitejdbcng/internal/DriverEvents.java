@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A facade over the Java Flight Recorder events in org.sqlitejdbcng.jfr.
+ * Those classes are only compiled on JDK 11 and later and are loaded
+ * reflectively, so the rest of the driver still runs on VMs without JFR.
+ * When JFR is missing or an event type is not enabled in the recording,
+ * begin() returns null, so the call sites only do extra work, like
+ * counting bytes, while someone is recording.
+ */
+public final class DriverEvents {
+    private static final Logger LOGGER = Logger.getLogger(DriverEvents.class.getName());
+
+    private static final String FACTORY_CLASS = "org.sqlitejdbcng.jfr.JfrEventFactory";
+
+    public enum Kind {
+        PREPARE,
+        EXECUTE,
+        RESULT_SET,
+        TRANSACTION,
+        BUSY_WAIT
+    }
+
+    /**
+     * An event that has been started.  The setters can be called any number
+     * of times before commit().
+     */
+    public interface Event {
+        void setSql(String sql);
+        void setRows(long rows);
+        void setBytes(long bytes);
+
+        /**
+         * End the event and write it to the recording, if it lasted longer
+         * than the configured threshold.
+         */
+        void commit();
+    }
+
+    public interface Factory {
+        /**
+         * @return A started event, or null if the kind is not enabled.
+         */
+        Event begin(Kind kind);
+    }
+
+    private static final Factory FACTORY = loadFactory();
+
+    private DriverEvents() {
+    }
+
+    private static Factory loadFactory() {
+        try {
+            Class.forName("jdk.jfr.Event");
+
+            return (Factory) Class.forName(FACTORY_CLASS).newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.FINE, "Flight Recorder events are not available -- {0}", e.toString());
+            return null;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    public static Event begin(Kind kind) {
+        if (FACTORY == null)
+            return null;
+
+        return FACTORY.begin(kind);
+    }
+
+    /**
+     * Start an event for the given SQL text, if it is enabled.
+     */
+    public static Event begin(Kind kind, String sql) {
+        Event retval = begin(kind);
+
+        if (retval != null)
+            retval.setSql(sql);
+
+        return retval;
+    }
+}
@@ -134,11 +134,11 @@ public class EscapeParser {
                             break;
                         case '{':
                             state = ParserState.STATE_ESCAPE_KEYWORD_START;
-                            dest.append(escapedSql.substring(start, lpc));
+                            dest.append(escapedSql, start, lpc);
                             break;
                         case '}':
                             if (depth > 0) {
-                                dest.append(escapedSql.substring(start, lpc));
+                                dest.append(escapedSql, start, lpc);
                                 return lpc;
                             }
                             throw new SQLSyntaxErrorException("Extraneous closing brace at -- " +
@@ -193,13 +193,22 @@ public class EscapeParser {
             throw new SQLSyntaxErrorException(state.getMessage());
 
         if (start < escapedSql.length())
-            dest.append(escapedSql.substring(start, escapedSql.length()));
+            dest.append(escapedSql, start, escapedSql.length());
 
         return retval;
     }
 
+    /**
+     * Quick check for whether the given SQL could possibly contain a JDBC
+     * escape sequence.  Only a brace can start or end an escape, so SQL
+     * without any can be passed to SQLite unchanged.
+     */
+    public static boolean mayContainEscapes(String sql) {
+        return sql.indexOf('{') != -1 || sql.indexOf('}') != -1;
+    }
+
     public static String transform(String escapedSql, Map<String, EscapeHandler> handlerMap) throws SQLException {
-        StringBuilder dest = new StringBuilder();
+        StringBuilder dest = new StringBuilder(escapedSql.length());
 
         transform(0, escapedSql, 0, dest, handlerMap);
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a simple "INSERT ... VALUES (?, ...)" statement into a multi-row
+ * insert so that a batch can be executed with one step for many rows.
+ *
+ * Only a plain "INSERT [OR ...] INTO table [(columns)] VALUES (?, ...)"
+ * with a single tuple made up entirely of anonymous parameters is
+ * rewritten.  Anything else, like an upsert, a RETURNING clause, a WITH
+ * clause or an INSERT ... SELECT, is left alone.
+ */
+public class InsertRewriter {
+    private static final String NAME = "(?:\"[^\"]*\"|\\[[^\\]]*\\]|`[^`]*`|\\w+)";
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^\\s*(?:INSERT(?:\\s+OR\\s+\\w+)?|REPLACE)\\s+INTO\\s+" +
+                    NAME + "(?:\\s*\\.\\s*" + NAME + ")?" +
+                    "(?:\\s+AS\\s+" + NAME + ")?" +
+                    "\\s*(?:\\([^()]*\\))?" +
+                    "\\s*VALUES\\s*(\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String prefix;
+    private final String tuple;
+    private final Map<Integer, String> sqlByRows = new HashMap<>();
+
+    private InsertRewriter(String prefix, String tuple) {
+        this.prefix = prefix;
+        this.tuple = tuple;
+    }
+
+    /**
+     * @param sql The SQL text of the prepared statement.
+     * @param paramCount The number of parameters in the statement.
+     * @return A rewriter for the statement or null if it cannot be rewritten.
+     */
+    public static InsertRewriter forSql(String sql, int paramCount) {
+        if (paramCount < 1)
+            return null;
+
+        Matcher m = INSERT_PATTERN.matcher(sql);
+
+        if (!m.matches())
+            return null;
+
+        String tuple = m.group(1);
+        int marks = 0;
+
+        for (int lpc = 0; lpc < tuple.length(); lpc++) {
+            if (tuple.charAt(lpc) == '?')
+                marks += 1;
+        }
+
+        /* Parameters anywhere else in the statement would get out of order. */
+        if (marks != paramCount)
+            return null;
+
+        return new InsertRewriter(sql.substring(0, m.start(1)), tuple);
+    }
+
+    /**
+     * @return The SQL for inserting the given number of rows at once.
+     */
+    public String getSql(int rows) {
+        String retval = this.sqlByRows.get(rows);
+
+        if (retval == null) {
+            StringBuilder sb = new StringBuilder(this.prefix.length() + (this.tuple.length() + 1) * rows);
+
+            sb.append(this.prefix).append(this.tuple);
+            for (int lpc = 1; lpc < rows; lpc++) {
+                sb.append(',').append(this.tuple);
+            }
+            retval = sb.toString();
+            this.sqlByRows.put(rows, retval);
+        }
+
+        return retval;
+    }
+}
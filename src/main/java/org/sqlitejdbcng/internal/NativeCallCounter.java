@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+/**
+ * Debugging aid that counts the calls made into the SQLite library by the
+ * driver on the current thread.  Counting is only done when the
+ * "org.sqlitejdbcng.countNativeCalls" system property is set to true, so
+ * the calls to record() cost nothing in normal use.
+ */
+public class NativeCallCounter {
+    public static final boolean ENABLED = Boolean.getBoolean("org.sqlitejdbcng.countNativeCalls");
+
+    private static final ThreadLocal<long[]> COUNT = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private NativeCallCounter() {
+    }
+
+    public static void record() {
+        if (ENABLED)
+            COUNT.get()[0] += 1;
+    }
+
+    public static void record(int calls) {
+        if (ENABLED)
+            COUNT.get()[0] += calls;
+    }
+
+    /**
+     * @return The number of native calls made on this thread so far.  The
+     *   difference in the value before and after a JDBC operation gives the
+     *   cost of that operation.
+     */
+    public static long get() {
+        return COUNT.get()[0];
+    }
+}
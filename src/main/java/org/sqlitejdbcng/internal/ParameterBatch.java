@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * The rows of parameter values collected by PreparedStatement.addBatch().
+ *
+ * The values are stored in flat arrays, one entry per parameter per row,
+ * rather than as an object per row.  The arrays for floating point and
+ * reference values are only allocated once a row actually uses them, so
+ * a batch of integers only costs the type tags and the longs.
+ */
+public class ParameterBatch {
+    private static final int INITIAL_ROWS = 16;
+
+    private final int width;
+    private int rows;
+    private int[] types;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+
+    public ParameterBatch(int width) {
+        this.width = width;
+        this.types = new int[0];
+        this.longs = new long[0];
+    }
+
+    public int size() {
+        return this.rows;
+    }
+
+    public boolean isEmpty() {
+        return this.rows == 0;
+    }
+
+    public void clear() {
+        this.rows = 0;
+        if (this.objects != null)
+            Arrays.fill(this.objects, null);
+    }
+
+    /**
+     * Append a copy of the current parameter values.
+     */
+    public void add(ParameterSlots slots) {
+        int base = this.rows * this.width;
+
+        this.ensureCapacity(base + this.width);
+        for (int lpc = 0; lpc < this.width; lpc++) {
+            int type = slots.types[lpc];
+
+            this.types[base + lpc] = type;
+            switch (type) {
+                case -1:
+                case Types.NULL:
+                    break;
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    this.longs[base + lpc] = slots.longs[lpc];
+                    break;
+                case Types.DOUBLE:
+                    if (this.doubles == null)
+                        this.doubles = new double[this.types.length];
+                    this.doubles[base + lpc] = slots.doubles[lpc];
+                    break;
+                default:
+                    if (this.objects == null)
+                        this.objects = new Object[this.types.length];
+                    this.objects[base + lpc] = slots.objects[lpc];
+                    break;
+            }
+        }
+        this.rows += 1;
+    }
+
+    /**
+     * Copy a row into the given slots.  Values that are the same as the
+     * ones already in the slots do not mark them dirty, so they will not
+     * need to be bound again.
+     */
+    public void load(int row, ParameterSlots slots) {
+        this.load(row, slots, 0);
+    }
+
+    /**
+     * Copy a row into the given slots, starting at the given slot index.
+     */
+    public void load(int row, ParameterSlots slots, int offset) {
+        int base = row * this.width;
+
+        for (int lpc = 0; lpc < this.width; lpc++) {
+            int type = this.types[base + lpc];
+
+            switch (type) {
+                case -1:
+                case Types.NULL:
+                    slots.setNull(offset + lpc);
+                    break;
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    slots.setLong(offset + lpc, type, this.longs[base + lpc]);
+                    break;
+                case Types.DOUBLE:
+                    slots.setDouble(offset + lpc, this.doubles[base + lpc]);
+                    break;
+                default:
+                    slots.setObject(offset + lpc, type, this.objects[base + lpc]);
+                    break;
+            }
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= this.types.length)
+            return;
+
+        int capacity = Math.max(needed, Math.max(this.types.length * 2, INITIAL_ROWS * this.width));
+
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.longs = Arrays.copyOf(this.longs, capacity);
+        if (this.doubles != null)
+            this.doubles = Arrays.copyOf(this.doubles, capacity);
+        if (this.objects != null)
+            this.objects = Arrays.copyOf(this.objects, capacity);
+    }
+}
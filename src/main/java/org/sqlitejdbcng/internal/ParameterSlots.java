@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * The values of the parameters of a prepared statement.  Integer and
+ * floating point values are kept in primitive arrays so that the setters
+ * do not need to box them.  Each slot is tagged with the java.sql.Types
+ * code that tells the bind code which array holds the value, or -1 if
+ * the parameter has not been set.
+ *
+ * A slot is marked dirty when its value changes, so the statement only
+ * needs to rebind the parameters that are different from the ones that
+ * are already bound to the SQLite handle.
+ */
+public class ParameterSlots {
+    public final int[] types;
+    public final long[] longs;
+    public final double[] doubles;
+    public final Object[] objects;
+    private final boolean[] dirty;
+    private boolean anyDirty;
+
+    public ParameterSlots(int count) {
+        this.types = new int[count];
+        this.longs = new long[count];
+        this.doubles = new double[count];
+        this.objects = new Object[count];
+        this.dirty = new boolean[count];
+        Arrays.fill(this.types, -1);
+        this.markAllDirty();
+    }
+
+    public int size() {
+        return this.types.length;
+    }
+
+    public void setNull(int index) {
+        if (this.types[index] != Types.NULL) {
+            this.types[index] = Types.NULL;
+            this.objects[index] = null;
+            this.markDirty(index);
+        }
+    }
+
+    /**
+     * @param type Types.INTEGER or Types.BIGINT.
+     */
+    public void setLong(int index, int type, long value) {
+        if (this.types[index] != type || this.longs[index] != value) {
+            this.types[index] = type;
+            this.longs[index] = value;
+            this.objects[index] = null;
+            this.markDirty(index);
+        }
+    }
+
+    public void setDouble(int index, double value) {
+        /* Compare the bits so that -0.0 and NaN are handled correctly. */
+        if (this.types[index] != Types.DOUBLE ||
+                Double.doubleToRawLongBits(this.doubles[index]) != Double.doubleToRawLongBits(value)) {
+            this.types[index] = Types.DOUBLE;
+            this.doubles[index] = value;
+            this.objects[index] = null;
+            this.markDirty(index);
+        }
+    }
+
+    /**
+     * Set a reference value.  Strings are compared by value, everything else
+     * is mutable and is always considered to be changed.
+     */
+    public void setObject(int index, int type, Object value) {
+        if (this.types[index] != type || !(value instanceof String) || !value.equals(this.objects[index])) {
+            this.types[index] = type;
+            this.objects[index] = value;
+            this.markDirty(index);
+        }
+    }
+
+    public void clear() {
+        for (int lpc = 0; lpc < this.types.length; lpc++) {
+            if (this.types[lpc] != -1) {
+                this.types[lpc] = -1;
+                this.objects[lpc] = null;
+                this.markDirty(lpc);
+            }
+        }
+    }
+
+    public boolean isDirty(int index) {
+        return this.dirty[index];
+    }
+
+    public boolean isAnyDirty() {
+        return this.anyDirty;
+    }
+
+    public void markDirty(int index) {
+        this.dirty[index] = true;
+        this.anyDirty = true;
+    }
+
+    /**
+     * Mark all of the slots as dirty.  This needs to be done whenever some
+     * other set of values has been bound to the statement handle.
+     */
+    public void markAllDirty() {
+        Arrays.fill(this.dirty, true);
+        this.anyDirty = true;
+    }
+
+    public void markClean() {
+        Arrays.fill(this.dirty, false);
+        this.anyDirty = false;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.sqlitejdbcng.SqliteConnection;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+/**
+ * The query timeout for a statement or result set.  The deadline is set
+ * before calling into SQLite and cleared afterwards, or once the last row
+ * has been read for a result set, and the shared QueryWatchdog calls
+ * sqlite3_interrupt() if it passes in between, so a query with a timeout
+ * costs nothing extra while SQLite is running it.
+ * An object can be reused for any number of calls, but only one at a time.
+ */
+public class QueryTimeout implements AutoCloseable {
+    private final SqliteConnection conn;
+    private QueryTimeout other;
+    private long expirationTime;
+    private long scheduledTime;
+    private boolean scheduled;
+    private boolean expired;
+
+    /* Only used by the watchdog thread. */
+    long dueTick;
+    boolean inWheel;
+
+    public QueryTimeout(SqliteConnection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Start the timer for a call into SQLite.
+     *
+     * @param timeout The timeout in milliseconds, zero means there is none.
+     * @return This object, to be closed when the call returns, or null if
+     *   there is no timeout.
+     */
+    public QueryTimeout setExpiration(long timeout) {
+        if (timeout == 0)
+            return null;
+
+        boolean schedule;
+        boolean running;
+
+        synchronized (this) {
+            running = this.expirationTime != 0;
+            this.expirationTime = System.currentTimeMillis() + timeout;
+            this.expired = false;
+            schedule = !this.scheduled || this.expirationTime < this.scheduledTime;
+            this.scheduled = true;
+            if (schedule)
+                this.scheduledTime = this.expirationTime;
+        }
+        if (!running)
+            this.conn.pushTimeout(this);
+        /*
+         * If the watchdog still has this object from an earlier call, it
+         * will notice a later deadline when the old one comes due.  An
+         * earlier one has to be moved up in the wheel.
+         */
+        if (schedule)
+            QueryWatchdog.getInstance().schedule(this);
+
+        return this;
+    }
+
+    /**
+     * @return The time, in milliseconds, when the timeout expires or zero
+     *   if there is no timeout.
+     */
+    public synchronized long getExpirationTime() {
+        return this.expirationTime;
+    }
+
+    /**
+     * @return True if the watchdog interrupted the connection during the
+     *   current call.
+     */
+    public synchronized boolean isExpired() {
+        return this.expired;
+    }
+
+    public void setOther(QueryTimeout other) {
+        this.other = other;
+    }
+
+    public QueryTimeout getOther() {
+        return this.other;
+    }
+
+    /**
+     * Called by the watchdog when the deadline it knows about comes due.
+     * The connection cannot be closed while the timer is running, since
+     * its statements close their timers before they are finalized.
+     *
+     * @return The new deadline if the timer was restarted since then or
+     *   zero if the watchdog can forget about this object.
+     */
+    synchronized long check(long now) {
+        if (this.expirationTime == 0) {
+            this.scheduled = false;
+            return 0;
+        }
+        if (now < this.expirationTime) {
+            this.scheduledTime = this.expirationTime;
+            return this.expirationTime;
+        }
+
+        Sqlite3.sqlite3_interrupt(this.conn.getHandle());
+        this.expired = true;
+        this.scheduled = false;
+
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.expirationTime == 0)
+                return;
+            this.expirationTime = 0;
+        }
+        this.conn.popTimeout(this);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel, run by a single daemon thread, that interrupts
+ * queries whose timeout has expired.  Timers are not removed when a query
+ * finishes in time, the thread drops them when they come due.  The thread
+ * waits without ticking while there are no timers.
+ */
+public final class QueryWatchdog implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(QueryWatchdog.class.getName());
+
+    static final long TICK_MILLIS = 10;
+    static final int WHEEL_SIZE = 512;
+
+    private static QueryWatchdog instance;
+
+    private final List<List<QueryTimeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final List<QueryTimeout> pending = new ArrayList<>();
+    private final List<QueryTimeout> added = new ArrayList<>();
+    private int timerCount;
+    private long lastTick;
+
+    private QueryWatchdog() {
+        this.lastTick = System.currentTimeMillis() / TICK_MILLIS;
+        for (int lpc = 0; lpc < WHEEL_SIZE; lpc++) {
+            this.wheel.add(new ArrayList<QueryTimeout>());
+        }
+    }
+
+    public static synchronized QueryWatchdog getInstance() {
+        if (instance == null) {
+            Thread thread;
+
+            instance = new QueryWatchdog();
+            thread = new Thread(instance, "sqlitejdbcng-query-watchdog");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        return instance;
+    }
+
+    synchronized void schedule(QueryTimeout timeout) {
+        this.pending.add(timeout);
+        if (this.pending.size() == 1)
+            this.notify();
+    }
+
+    private void place(QueryTimeout timeout, long expirationTime) {
+        timeout.dueTick = Math.max(expirationTime / TICK_MILLIS, this.lastTick + 1);
+        timeout.inWheel = true;
+        this.wheel.get((int) (timeout.dueTick % WHEEL_SIZE)).add(timeout);
+    }
+
+    private void expire(long tick, long now) {
+        List<QueryTimeout> bucket = this.wheel.get((int) (tick % WHEEL_SIZE));
+        List<QueryTimeout> again = null;
+
+        for (Iterator<QueryTimeout> iter = bucket.iterator(); iter.hasNext(); ) {
+            QueryTimeout timeout = iter.next();
+
+            if (timeout.dueTick > this.lastTick)
+                continue;
+
+            iter.remove();
+
+            long expirationTime = timeout.check(now);
+
+            if (expirationTime == 0) {
+                timeout.inWheel = false;
+                this.timerCount -= 1;
+            }
+            else {
+                if (again == null)
+                    again = new ArrayList<>();
+                again.add(timeout);
+            }
+        }
+        /* Placed after the loop since a timer may hash into the same bucket. */
+        if (again != null) {
+            for (QueryTimeout timeout : again) {
+                this.place(timeout, timeout.getExpirationTime());
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (this.pending.isEmpty() && this.timerCount == 0) {
+                        this.wait();
+                        this.lastTick = System.currentTimeMillis() / TICK_MILLIS;
+                    }
+                    this.added.addAll(this.pending);
+                    this.pending.clear();
+                }
+                for (QueryTimeout timeout : this.added) {
+                    /* A timer that was moved to an earlier deadline is already counted. */
+                    if (timeout.inWheel)
+                        this.wheel.get((int) (timeout.dueTick % WHEEL_SIZE)).remove(timeout);
+                    else
+                        this.timerCount += 1;
+                    this.place(timeout, timeout.getExpirationTime());
+                }
+                this.added.clear();
+
+                Thread.sleep(TICK_MILLIS);
+
+                long now = System.currentTimeMillis();
+                long currentTick = now / TICK_MILLIS;
+                long firstTick = Math.max(this.lastTick + 1, currentTick - WHEEL_SIZE + 1);
+
+                /* Every timer that is due by now is expired, whichever bucket it is in. */
+                this.lastTick = currentTick;
+                for (long tick = firstTick; tick <= currentTick; tick++) {
+                    this.expire(tick, now);
+                }
+            }
+            catch (InterruptedException e) {
+                /* The thread is never interrupted on purpose, keep going. */
+            }
+            catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Query watchdog failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of idle prepared statement handles
+ * keyed by the SQL text that was passed to sqlite3_prepare_v2().
+ *
+ * Handles are checked out of the cache with take() and are not visible to
+ * anyone else until they are handed back with offer(), so a given handle is
+ * never shared between two live JDBC statements.  Handles that fall off the
+ * end of the cache are finalized.
+ */
+public class StatementCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final LinkedHashMap<String, Pointer<Sqlite3.Statement>> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StatementCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized Pointer<Sqlite3.Statement> take(String sql) {
+        Pointer<Sqlite3.Statement> retval = this.entries.remove(sql);
+
+        if (retval != null)
+            this.hits += 1;
+        else
+            this.misses += 1;
+
+        return retval;
+    }
+
+    /**
+     * Offer an idle statement handle to the cache.  The handle should have
+     * already been reset and had its bindings cleared.
+     *
+     * @return true if the cache took ownership of the handle, false if the
+     *   caller is still responsible for finalizing it.
+     */
+    public synchronized boolean offer(String sql, Pointer<Sqlite3.Statement> stmt) {
+        if (this.capacity <= 0 || this.entries.containsKey(sql))
+            return false;
+
+        this.entries.put(sql, stmt);
+        this.trim();
+
+        return true;
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        this.trim();
+    }
+
+    public synchronized int getCapacity() {
+        return this.capacity;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Finalize all of the cached handles.  This must be done before the
+     * database connection is closed.
+     */
+    public synchronized void clear() {
+        for (Pointer<Sqlite3.Statement> stmt : this.entries.values()) {
+            Sqlite3.sqlite3_finalize(stmt);
+        }
+        this.entries.clear();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Pointer<Sqlite3.Statement>>> iter = this.entries.entrySet().iterator();
+
+        while (this.entries.size() > Math.max(this.capacity, 0) && iter.hasNext()) {
+            Map.Entry<String, Pointer<Sqlite3.Statement>> eldest = iter.next();
+
+            iter.remove();
+            Sqlite3.sqlite3_finalize(eldest.getValue());
+            this.evictions += 1;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the sqlite3_stmt_status() counters of statements as they finish.
+ * The counters are aggregated by normalized SQL text, where literals are
+ * replaced with '?', and statements that go over one of the thresholds are
+ * logged along with their expanded SQL text.  Nothing is collected unless
+ * aggregation is enabled or a threshold is set.
+ */
+public class StatementStats {
+    private static final Logger LOGGER = Logger.getLogger(StatementStats.class.getName());
+
+    /* Keep a workload that builds SQL with unusual literals from eating the heap. */
+    public static final int MAX_ENTRIES = 1000;
+
+    private static final Sqlite3.StmtStatusOp[] OPS = Sqlite3.StmtStatusOp.values();
+
+    /**
+     * The counters for one normalized SQL statement.
+     */
+    public static class Entry {
+        private final String sql;
+        private final long[] totals = new long[OPS.length];
+        private final long[] maximums = new long[OPS.length];
+        private long count;
+
+        Entry(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return this.sql;
+        }
+
+        /**
+         * @return The number of times the statement finished.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return The sum of the counter, always zero for a counter the
+         *   library does not have.
+         */
+        public long getTotal(Sqlite3.StmtStatusOp op) {
+            return this.totals[op.ordinal()];
+        }
+
+        public long getMax(Sqlite3.StmtStatusOp op) {
+            return this.maximums[op.ordinal()];
+        }
+
+        private Entry copy() {
+            Entry retval = new Entry(this.sql);
+
+            System.arraycopy(this.totals, 0, retval.totals, 0, OPS.length);
+            System.arraycopy(this.maximums, 0, retval.maximums, 0, OPS.length);
+            retval.count = this.count;
+
+            return retval;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile boolean enabled;
+    private volatile long vmStepThreshold;
+    private volatile long scanStepThreshold;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @param threshold Log statements that execute more than this many
+     *   virtual machine instructions, zero turns this off.
+     */
+    public void setVmStepThreshold(long threshold) {
+        this.vmStepThreshold = threshold;
+    }
+
+    public long getVmStepThreshold() {
+        return this.vmStepThreshold;
+    }
+
+    /**
+     * @param threshold Log statements that step through a full table scan
+     *   or fill an automatic index more than this many times, zero turns
+     *   this off.  Either one usually means an index is missing.
+     */
+    public void setScanStepThreshold(long threshold) {
+        this.scanStepThreshold = threshold;
+    }
+
+    public long getScanStepThreshold() {
+        return this.scanStepThreshold;
+    }
+
+    public boolean isActive() {
+        return this.enabled || this.vmStepThreshold > 0 || this.scanStepThreshold > 0;
+    }
+
+    /**
+     * Collect the counters of a statement that finished running and reset
+     * them, so the next call only sees the work done after this one.  This
+     * should be called before the bindings are cleared.
+     */
+    public void record(Pointer<Sqlite3.Statement> stmt) {
+        if (stmt == null || !this.isActive())
+            return;
+
+        long[] counters = new long[OPS.length];
+
+        for (int lpc = 0; lpc < OPS.length; lpc++) {
+            if (OPS[lpc].isAvailable())
+                counters[lpc] = Sqlite3.sqlite3_stmt_status(stmt, OPS[lpc].value(), 1);
+        }
+        if (counters[Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_VM_STEP.ordinal()] == 0)
+            return;
+
+        if (this.enabled) {
+            this.aggregate(normalize(Sqlite3.sqlite3_sql(stmt).getCString()), counters);
+        }
+
+        long vmSteps = counters[Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_VM_STEP.ordinal()];
+        long scanSteps = counters[Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_FULLSCAN_STEP.ordinal()] +
+                counters[Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_AUTOINDEX.ordinal()];
+        long vmStepThreshold = this.vmStepThreshold;
+        long scanStepThreshold = this.scanStepThreshold;
+
+        if ((vmStepThreshold > 0 && vmSteps > vmStepThreshold) ||
+                (scanStepThreshold > 0 && scanSteps > scanStepThreshold)) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Slow statement ({0}) -- {1}",
+                        new Object[] { formatCounters(counters), Sqlite3.expanded_sql(stmt) });
+            }
+        }
+    }
+
+    private synchronized void aggregate(String sql, long[] counters) {
+        Entry entry = this.entries.get(sql);
+
+        if (entry == null) {
+            if (this.entries.size() >= MAX_ENTRIES)
+                return;
+            entry = new Entry(sql);
+            this.entries.put(sql, entry);
+        }
+        entry.count += 1;
+        for (int lpc = 0; lpc < OPS.length; lpc++) {
+            entry.totals[lpc] += counters[lpc];
+            entry.maximums[lpc] = Math.max(entry.maximums[lpc], counters[lpc]);
+        }
+    }
+
+    /**
+     * @return A copy of the aggregated counters.
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> retval = new ArrayList<>(this.entries.size());
+
+        for (Entry entry : this.entries.values()) {
+            retval.add(entry.copy());
+        }
+
+        return retval;
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    static String formatCounters(long[] counters) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int lpc = 0; lpc < OPS.length; lpc++) {
+            if (!OPS[lpc].isAvailable())
+                continue;
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(OPS[lpc].name().substring("SQLITE_STMTSTATUS_".length()).toLowerCase())
+                    .append('=')
+                    .append(counters[lpc]);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Replace the string, blob and numeric literals in a SQL statement with
+     * '?', drop comments, and collapse runs of white space, so statements
+     * that only differ in their literals are counted together.
+     */
+    public static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int len = sql.length();
+        int lpc = 0;
+
+        while (lpc < len) {
+            char ch = sql.charAt(lpc);
+
+            if (Character.isWhitespace(ch)) {
+                while (lpc < len && Character.isWhitespace(sql.charAt(lpc)))
+                    lpc += 1;
+                appendSpace(sb);
+            }
+            else if (ch == '-' && sql.startsWith("--", lpc)) {
+                while (lpc < len && sql.charAt(lpc) != '\n')
+                    lpc += 1;
+                appendSpace(sb);
+            }
+            else if (ch == '/' && sql.startsWith("/*", lpc)) {
+                int end = sql.indexOf("*/", lpc + 2);
+
+                lpc = end == -1 ? len : end + 2;
+                appendSpace(sb);
+            }
+            else if (ch == '\'' || ((ch == 'x' || ch == 'X') && !isIdentifierPart(sb) &&
+                    lpc + 1 < len && sql.charAt(lpc + 1) == '\'')) {
+                lpc = skipQuoted(sql, ch == '\'' ? lpc : lpc + 1, '\'');
+                sb.append('?');
+            }
+            else if (ch == '"' || ch == '`') {
+                int end = skipQuoted(sql, lpc, ch);
+
+                sb.append(sql, lpc, end);
+                lpc = end;
+            }
+            else if (ch == '[') {
+                int end = sql.indexOf(']', lpc);
+
+                end = end == -1 ? len : end + 1;
+                sb.append(sql, lpc, end);
+                lpc = end;
+            }
+            else if ((Character.isDigit(ch) || (ch == '.' && lpc + 1 < len && Character.isDigit(sql.charAt(lpc + 1))))
+                    && !isIdentifierPart(sb)) {
+                while (lpc < len) {
+                    char digit = sql.charAt(lpc);
+
+                    if (Character.isLetterOrDigit(digit) || digit == '.')
+                        lpc += 1;
+                    else if ((digit == '+' || digit == '-') &&
+                            (sql.charAt(lpc - 1) == 'e' || sql.charAt(lpc - 1) == 'E'))
+                        lpc += 1;
+                    else
+                        break;
+                }
+                sb.append('?');
+            }
+            else {
+                sb.append(ch);
+                lpc += 1;
+            }
+        }
+
+        return sb.toString().trim();
+    }
+
+    private static void appendSpace(StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ')
+            sb.append(' ');
+    }
+
+    private static boolean isIdentifierPart(StringBuilder sb) {
+        if (sb.length() == 0)
+            return false;
+
+        char last = sb.charAt(sb.length() - 1);
+
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    /**
+     * @return The index just past the closing quote, doubled quotes are
+     *   treated as part of the quoted text.
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int lpc = start + 1;
+
+        while (lpc < sql.length()) {
+            if (sql.charAt(lpc) == quote) {
+                if (lpc + 1 < sql.length() && sql.charAt(lpc + 1) == quote)
+                    lpc += 2;
+                else
+                    return lpc + 1;
+            }
+            else {
+                lpc += 1;
+            }
+        }
+
+        return lpc;
+    }
+}
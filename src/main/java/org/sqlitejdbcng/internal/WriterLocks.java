@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The process-wide registry of locks used to serialize write transactions
+ * from connections in this JVM to the same database file.  A semaphore is
+ * used instead of a ReentrantLock since a JDBC connection can be handed
+ * between threads in the middle of a transaction.
+ */
+public class WriterLocks {
+    private static final ConcurrentMap<String, Semaphore> LOCKS = new ConcurrentHashMap<>();
+
+    private WriterLocks() {
+    }
+
+    /**
+     * @param canonicalPath The canonical path of the database file.
+     * @return The fair lock shared by all connections to the file.
+     */
+    public static Semaphore forPath(String canonicalPath) {
+        Semaphore retval = LOCKS.get(canonicalPath);
+
+        if (retval == null) {
+            Semaphore existing = LOCKS.putIfAbsent(canonicalPath, retval = new Semaphore(1, true));
+
+            if (existing != null)
+                retval = existing;
+        }
+
+        return retval;
+    }
+}
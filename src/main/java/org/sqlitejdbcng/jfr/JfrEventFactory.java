@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.jfr;
+
+import org.sqlitejdbcng.internal.DriverEvents;
+
+/**
+ * Creates the Flight Recorder events for DriverEvents, this class is only
+ * loaded when jdk.jfr is available.
+ */
+public class JfrEventFactory implements DriverEvents.Factory {
+    @Override
+    public DriverEvents.Event begin(DriverEvents.Kind kind) {
+        SqliteEvent retval;
+
+        switch (kind) {
+            case PREPARE:
+                retval = new PrepareEvent();
+                break;
+            case EXECUTE:
+                retval = new ExecuteEvent();
+                break;
+            case RESULT_SET:
+                retval = new ResultSetEvent();
+                break;
+            case TRANSACTION:
+                retval = new TransactionEvent();
+                break;
+            case BUSY_WAIT:
+                retval = new BusyWaitEvent();
+                break;
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+
+        if (!retval.isEnabled())
+            return null;
+
+        retval.begin();
+
+        return retval;
+    }
+}
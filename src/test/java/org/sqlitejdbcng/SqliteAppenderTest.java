@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.junit.Test;
+import org.sqlitejdbcng.bridj.Sqlite3;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class SqliteAppenderTest extends SqliteTestHelper {
+    @Test
+    public void testAppend() throws Exception {
+        int rows = SqliteAppender.FLUSH_ROWS * 2 + 17;
+
+        try (SqliteAppender app = this.sqliteConnection.appender("prim_table", "id", "bi", "d")) {
+            app.setCommitInterval(SqliteAppender.FLUSH_ROWS);
+            for (int lpc = 0; lpc < rows; lpc++) {
+                app.appendInt(lpc).appendLong(lpc * 1000000000L);
+                if (lpc % 10 == 0)
+                    app.appendNull();
+                else
+                    app.appendDouble(lpc / 4.0);
+                app.endRow();
+            }
+            assertEquals(rows, app.getRowCount());
+        }
+        assertTrue(this.conn.getAutoCommit());
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*), sum(id), count(d), max(bi) FROM prim_table")) {
+                assertTrue(rs.next());
+                assertEquals(rows, rs.getInt(1));
+                assertEquals((long) rows * (rows - 1) / 2, rs.getLong(2));
+                assertEquals(rows - (rows + 9) / 10, rs.getInt(3));
+                assertEquals((rows - 1) * 1000000000L, rs.getLong(4));
+            }
+        }
+    }
+
+    @Test
+    public void testAllColumns() throws Exception {
+        try (SqliteAppender app = this.sqliteConnection.appender("test_table")) {
+            app.appendInt(2).appendText("two").endRow();
+            app.appendInt(3).appendText("three").endRow();
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM test_table")) {
+                assertArrayEquals(new String[] {
+                        "|1|test|",
+                        "|2|two|",
+                        "|3|three|",
+                }, this.formatResultSet(rs));
+            }
+        }
+    }
+
+    @Test
+    public void testAllColumnsSkipsGenerated() throws Exception {
+        assumeTrue(Sqlite3.sqlite3_libversion_number() >= 3031000);
+
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE gen_table (a INTEGER, b INTEGER, " +
+                    "total INTEGER GENERATED ALWAYS AS (a + b) STORED)");
+        }
+
+        try (SqliteAppender app = this.sqliteConnection.appender("gen_table")) {
+            app.appendInt(1).appendInt(2).endRow();
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM gen_table")) {
+                assertArrayEquals(new String[] { "|1|2|3|" }, this.formatResultSet(rs));
+            }
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testMissingTable() throws Exception {
+        this.sqliteConnection.appender("no_such_table");
+    }
+
+    @Test
+    public void testBadRows() throws Exception {
+        try (SqliteAppender app = this.sqliteConnection.appender("test_table", "id", "name")) {
+            app.appendInt(2);
+            try {
+                app.endRow();
+                fail("able to end a row that is missing a value?");
+            }
+            catch (SQLException e) {
+            }
+
+            app.appendText("two").endRow();
+            try {
+                app.appendInt(3).appendText("three").appendText("extra");
+                fail("able to append too many values?");
+            }
+            catch (SQLException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testFailureRollsBack() throws Exception {
+        SqliteAppender app = this.sqliteConnection.appender("test_table", "id", "name");
+
+        app.appendInt(2).appendText("two").endRow();
+        app.appendInt(1).appendText("duplicate").endRow();
+        try {
+            app.close();
+            fail("able to append a duplicate key?");
+        }
+        catch (SQLException e) {
+        }
+        assertTrue(this.conn.getAutoCommit());
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+}
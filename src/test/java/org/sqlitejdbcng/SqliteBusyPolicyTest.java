@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SqliteBusyPolicyTest {
+    @Test
+    public void testExponentialDelay() {
+        SqliteBusyPolicy policy = new SqliteBusyPolicy(2, 100, 1000, 0.0);
+
+        assertEquals(2, policy.getDelay(0));
+        assertEquals(4, policy.getDelay(1));
+        assertEquals(64, policy.getDelay(5));
+        assertEquals(100, policy.getDelay(6));
+        assertEquals(100, policy.getDelay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testJitter() {
+        SqliteBusyPolicy policy = new SqliteBusyPolicy(10, 80, 1000, 0.5);
+
+        for (int lpc = 0; lpc < 100; lpc++) {
+            long delay = policy.getDelay(3);
+
+            assertTrue(delay > 40 && delay <= 80);
+        }
+    }
+
+    @Test
+    public void testDeadline() {
+        SqliteBusyPolicy policy = new SqliteBusyPolicy(50, 50, 1000, 0.0);
+        long now = System.currentTimeMillis();
+
+        assertEquals(50, policy.getDelay(0, now, 0));
+        assertEquals(-1, policy.getDelay(0, now - 1000, 0));
+        assertEquals(-1, policy.getDelay(0, now, now - 1));
+        assertTrue(policy.getDelay(0, now, now + 10) <= 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadJitter() {
+        new SqliteBusyPolicy(1, 10, 100, 1.5);
+    }
+}
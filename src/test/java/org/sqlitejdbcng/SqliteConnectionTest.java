@@ -29,10 +29,17 @@ package org.sqlitejdbcng;
 import org.bridj.Pointer;
 import org.junit.Test;
 import org.sqlitejdbcng.bridj.Sqlite3;
+import org.sqlitejdbcng.internal.StatementCache;
+import org.sqlitejdbcng.internal.StatementStats;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.logging.Logger;
 
 import static org.junit.Assert.*;
 
@@ -275,6 +282,62 @@ public class SqliteConnectionTest extends SqliteTestHelper {
         }
     }
 
+    private static class CountingProgressCallback extends SqliteConnectionProgressCallback {
+        private final int step;
+        private int count;
+
+        CountingProgressCallback(SqliteConnection conn, int step) {
+            super(conn);
+            this.step = step;
+        }
+
+        @Override
+        public int getProgressStep() {
+            return this.step;
+        }
+
+        @Override
+        public int apply(Pointer<Void> context) {
+            this.count += 1;
+            return 0;
+        }
+    }
+
+    @Test
+    public void testProgressDispatcher() throws Exception {
+        SqliteConnection sconn = (SqliteConnection) this.conn;
+        CountingProgressCallback coarse = new CountingProgressCallback(sconn, 10000);
+        CountingProgressCallback fine = new CountingProgressCallback(sconn, 100);
+
+        assertEquals(0, sconn.getRegisteredProgressStep());
+        sconn.pushCallback(coarse);
+        assertEquals(10000, sconn.getRegisteredProgressStep());
+        sconn.pushCallback(fine);
+        assertEquals(100, sconn.getRegisteredProgressStep());
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("WITH RECURSIVE c(x) AS " +
+                    "(SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < 100000) SELECT count(*) FROM c")) {
+                assertTrue(rs.next());
+            }
+        }
+        assertTrue(coarse.count > 0);
+        assertTrue(fine.count > coarse.count * 50);
+
+        assertTrue(sconn.removeCallback(coarse));
+        assertFalse(sconn.removeCallback(coarse));
+        assertEquals(100, sconn.getRegisteredProgressStep());
+        sconn.popCallback();
+        assertEquals(0, sconn.getRegisteredProgressStep());
+        try {
+            sconn.popCallback();
+            fail("Popped an empty callback stack");
+        }
+        catch (SQLNonTransientException e) {
+            /* expected */
+        }
+    }
+
     @Test
     public void testAbort() throws Exception {
         Sqlite3.ProgressCallbackBase delayCallback = new Sqlite3.ProgressCallbackBase() {
@@ -508,4 +571,511 @@ public class SqliteConnectionTest extends SqliteTestHelper {
 
         }
     }
+
+    @Test
+    public void testStatementCache() throws Exception {
+        StatementCache cache = this.sqliteConnection.getStatementCache();
+        long hits = cache.getHits(), misses = cache.getMisses();
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table WHERE id = ?")) {
+            assertTrue(ps.isPoolable());
+            ps.setInt(1, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+        assertEquals(misses + 1, cache.getMisses());
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table WHERE id = ?")) {
+            assertEquals(hits + 1, cache.getHits());
+
+            // The bindings from the last use should have been cleared
+            try (ResultSet rs = ps.executeQuery()) {
+                assertFalse(rs.next());
+            }
+            ps.setPoolable(false);
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table WHERE id = ?")) {
+            assertEquals(misses + 2, cache.getMisses());
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            assertFalse(stmt.isPoolable());
+            stmt.setPoolable(true);
+            stmt.executeQuery("SELECT name FROM test_table").close();
+            stmt.executeQuery("SELECT name FROM test_table").close();
+        }
+        assertEquals(hits + 2, cache.getHits());
+
+        long evictions = cache.getEvictions();
+
+        this.sqliteConnection.setStatementCacheSize(1);
+        assertEquals(1, cache.size());
+        this.conn.prepareStatement("SELECT 1").close();
+        assertEquals(1, cache.size());
+        assertEquals(evictions + 2, cache.getEvictions());
+
+        this.sqliteConnection.setStatementCacheSize(0);
+        assertEquals(0, cache.size());
+        this.conn.prepareStatement("SELECT 1").close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNativeSQL() throws Exception {
+        String plain = "SELECT * FROM test_table";
+        String escaped = "SELECT * FROM test_table {limit 1}";
+
+        assertSame(plain, this.conn.nativeSQL(plain));
+        assertEquals("SELECT * FROM test_table limit 1", this.conn.nativeSQL(escaped));
+        assertSame(this.conn.nativeSQL(escaped), this.conn.nativeSQL(escaped));
+    }
+
+    private SqliteConnection openSecondConnection() throws SQLException {
+        return (SqliteConnection) driver.connect("jdbc:sqlite:" + this.dbFile.getAbsolutePath(), null);
+    }
+
+    private void commitLater(final long delayMillis) {
+        Thread committer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                    conn.commit();
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        committer.start();
+    }
+
+    @Test
+    public void testBusyPolicy() throws Exception {
+        try (SqliteConnection other = this.openSecondConnection()) {
+            other.setBusyPolicy(new SqliteBusyPolicy(1, 20, 5000, 0.5));
+            assertNotNull(other.getBusyPolicy());
+
+            this.conn.setAutoCommit(false);
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'locked')");
+            }
+            this.commitLater(200);
+
+            long start = System.currentTimeMillis();
+
+            try (Statement stmt = other.createStatement()) {
+                assertEquals(1, stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'waited')"));
+            }
+            assertTrue(System.currentTimeMillis() - start >= 150);
+        }
+    }
+
+    @Test
+    public void testBusyPolicyGivesUp() throws Exception {
+        try (SqliteConnection other = this.openSecondConnection()) {
+            other.setBusyPolicy(new SqliteBusyPolicy(1, 20, 100, 0.0));
+
+            this.conn.setAutoCommit(false);
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'locked')");
+            }
+
+            long start = System.currentTimeMillis();
+
+            try (Statement stmt = other.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'failed')");
+                fail("Lock should not have been acquired");
+            }
+            catch (SQLTransientException e) {
+                assertEquals(Sqlite3.ReturnCodes.SQLITE_BUSY.value(), e.getErrorCode() & 0xff);
+            }
+            assertTrue(System.currentTimeMillis() - start >= 90);
+
+            other.setBusyPolicy(null);
+            assertNull(other.getBusyPolicy());
+            this.conn.rollback();
+        }
+    }
+
+    @Test
+    public void testBusyQueryTimeout() throws Exception {
+        try (SqliteConnection other = this.openSecondConnection()) {
+            other.setBusyPolicy(new SqliteBusyPolicy(1, 50, 30000, 0.5));
+
+            this.conn.setAutoCommit(false);
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'locked')");
+            }
+
+            long start = System.currentTimeMillis();
+
+            try (Statement stmt = other.createStatement()) {
+                stmt.setQueryTimeout(1);
+                stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'failed')");
+                fail("Lock should not have been acquired");
+            }
+            catch (SQLTimeoutException e) {
+                long elapsed = System.currentTimeMillis() - start;
+
+                assertTrue(elapsed >= 900 && elapsed < 5000);
+            }
+            this.conn.rollback();
+        }
+    }
+
+    @Test
+    public void testRetryPolicy() throws Exception {
+        try (SqliteConnection other = this.openSecondConnection()) {
+            other.setRetryPolicy((int) Sqlite3.ReturnCodes.SQLITE_BUSY.value(), new SqliteBusyPolicy(1, 20, 5000, 0.5));
+
+            this.conn.setAutoCommit(false);
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'locked')");
+            }
+            this.commitLater(200);
+
+            try (PreparedStatement ps = other.prepareStatement("INSERT INTO test_table VALUES (?, 'retried')")) {
+                ps.setInt(1, 3);
+                assertEquals(1, ps.executeUpdate());
+            }
+        }
+    }
+
+    @Test
+    public void testBusySnapshot() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+        }
+        try (SqliteConnection other = this.openSecondConnection()) {
+            other.setBusyPolicy(SqliteBusyPolicy.DEFAULT);
+            other.setAutoCommit(false);
+            try (Statement stmt = other.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                    assertTrue(rs.next());
+                }
+                try (Statement writer = this.conn.createStatement()) {
+                    writer.executeUpdate("INSERT INTO test_table VALUES (2, 'newer')");
+                }
+                stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'stale')");
+                fail("Write on a stale snapshot should fail");
+            }
+            catch (SQLTransactionRollbackException e) {
+                assertEquals(Sqlite3.ExtendedReturnCodes.SQLITE_BUSY_SNAPSHOT.value(), e.getErrorCode());
+            }
+            other.rollback();
+        }
+    }
+
+    @Test
+    public void testExtendedResultCodes() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO test_table VALUES (1, 'duplicate')");
+            fail("Insert should have violated the primary key");
+        }
+        catch (SQLIntegrityConstraintViolationException e) {
+            assertEquals(Sqlite3.ExtendedReturnCodes.SQLITE_CONSTRAINT_PRIMARYKEY,
+                    Sqlite3.ExtendedReturnCodes.valueOf(e.getErrorCode()));
+            assertEquals(Sqlite3.ReturnCodes.SQLITE_CONSTRAINT,
+                    Sqlite3.ExtendedReturnCodes.valueOf(e.getErrorCode()).primary());
+            assertEquals(Sqlite3.ReturnCodes.SQLITE_CONSTRAINT,
+                    Sqlite3.ReturnCodes.valueOf((long) e.getErrorCode()));
+        }
+
+        for (int rc = 0; rc <= Sqlite3.ReturnCodes.SQLITE_WARNING.value(); rc++) {
+            assertNotNull("No enum for result code " + rc, Sqlite3.ReturnCodes.valueOf(rc));
+        }
+    }
+
+    @Test
+    public void testWriterLock() throws Exception {
+        Properties info = new Properties();
+
+        info.setProperty("writer_lock", "true");
+        try (final SqliteConnection first = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath(), info);
+             SqliteConnection second = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath() + "?busy_timeout=5000", info)) {
+            first.setAutoCommit(false);
+            try (Statement stmt = first.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'first')");
+            }
+            assertTrue(first.holdsWriterLock());
+
+            Thread committer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                        first.commit();
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            long start = System.currentTimeMillis();
+
+            committer.start();
+            /* The second connection waits for the lock, up to its busy timeout. */
+            try (Statement stmt = second.createStatement()) {
+                assertEquals(1, stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'second')"));
+            }
+            committer.join();
+            assertTrue(System.currentTimeMillis() - start >= 150);
+            assertFalse(first.holdsWriterLock());
+            assertFalse(second.holdsWriterLock());
+
+            try (Statement stmt = first.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                    assertTrue(rs.next());
+                    assertEquals(3, rs.getInt(1));
+                }
+            }
+            first.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        SqliteConnectionStats stats;
+
+        try (SqliteConnection conn = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath(), new Properties())) {
+            stats = conn.getStats();
+
+            long hits = stats.getStatementCacheHits();
+
+            for (int lpc = 0; lpc < 3; lpc++) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM test_table")) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        assertTrue(rs.next());
+                    }
+                }
+            }
+            assertTrue(stats.getCacheUsed() > 0);
+            assertTrue(stats.getCacheHits() + stats.getCacheMisses() > 0);
+            assertTrue(stats.getSchemaUsed() > 0);
+            assertEquals(hits + 2, stats.getStatementCacheHits());
+            assertTrue(stats.getStatementCacheMisses() > 0);
+            stats.resetCounters();
+            assertEquals(0, stats.getCacheHits());
+        }
+
+        assertEquals(-1, stats.getCacheUsed());
+        assertEquals(-1, stats.getCacheHits());
+
+        SqliteMemoryStats memory = SqliteMemoryStats.getInstance();
+
+        assertTrue(memory.getMemoryUsed() > 0);
+        assertTrue(memory.getMemoryHighwater() >= memory.getMemoryUsed());
+        assertTrue(memory.getMallocCount() > 0);
+    }
+
+    @Test
+    public void testStatementStats() throws Exception {
+        Logger logger = driver.getParentLogger();
+        LogRecorder recorder = new LogRecorder();
+
+        logger.addHandler(recorder);
+        try (SqliteConnection conn = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath() +
+                        "?statement_stats=true&slow_statement_scan_steps=1", new Properties())) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'other'), (3, 'third'), (4, 'fourth')");
+                for (String name : new String[] { "test", "other" }) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT * FROM test_table WHERE name = '" + name + "'")) {
+                        assertTrue(rs.next());
+                        assertFalse(rs.next());
+                    }
+                }
+            }
+
+            StatementStats.Entry scan = null;
+
+            for (StatementStats.Entry entry : conn.getStatementStats().getEntries()) {
+                if (entry.getSql().equals("SELECT * FROM test_table WHERE name = ?"))
+                    scan = entry;
+            }
+            assertNotNull(scan);
+            assertEquals(2, scan.getCount());
+            assertEquals(2, scan.getTotal(Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_RUN));
+            assertTrue(scan.getTotal(Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_FULLSCAN_STEP) > 0);
+            assertTrue(scan.getMax(Sqlite3.StmtStatusOp.SQLITE_STMTSTATUS_VM_STEP) > 0);
+
+            assertEquals(2, recorder.getRecords().size());
+            assertEquals("SELECT * FROM test_table WHERE name = 'other'",
+                    recorder.getRecords().get(1).getParameters()[1]);
+        }
+        finally {
+            logger.removeHandler(recorder);
+        }
+    }
+
+    @Test
+    public void testStatsMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name;
+
+        try (SqliteConnection conn = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath() + "?jmx=true", new Properties())) {
+            name = conn.getStats().getObjectName();
+            assertTrue(server.isRegistered(name));
+            assertTrue(server.isRegistered(new ObjectName(SqliteMemoryStats.OBJECT_NAME)));
+            assertEquals(conn.getURL(), server.getAttribute(name, "Url"));
+            assertTrue((Long) server.getAttribute(name, "CacheUsed") > 0);
+        }
+        assertFalse(server.isRegistered(name));
+
+        try {
+            driver.connect("jdbc:sqlite:" + this.dbFile.getAbsolutePath() +
+                    "?jmx=true&threading_mode=multithread", new Properties());
+            fail("Registered an MBean for a connection without a mutex?");
+        }
+        catch (SQLNonTransientConnectionException e) {
+        }
+    }
+
+    @Test
+    public void testWriterLockTimeout() throws Exception {
+        Properties info = new Properties();
+
+        info.setProperty("writer_lock", "true");
+        try (SqliteConnection first = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath(), info);
+             SqliteConnection second = (SqliteConnection) driver.connect(
+                "jdbc:sqlite:" + this.dbFile.getAbsolutePath() + "?busy_timeout=100", info)) {
+            first.setAutoCommit(false);
+            try (Statement stmt = first.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'first')");
+            }
+            try (Statement stmt = second.createStatement()) {
+                stmt.setQueryTimeout(1);
+                stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'second')");
+                fail("Writer lock should not have been acquired");
+            }
+            catch (SQLTimeoutException e) {
+                /* expected */
+            }
+            try (Statement stmt = second.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (3, 'second')");
+                fail("Writer lock should not have been acquired");
+            }
+            catch (SQLTransientException e) {
+                assertEquals(Sqlite3.ReturnCodes.SQLITE_BUSY.value(), e.getErrorCode() & 0xff);
+            }
+            assertFalse(second.holdsWriterLock());
+
+            /* Without any timeout the lock is not waited for at all. */
+            try (SqliteConnection third = (SqliteConnection) driver.connect(
+                    "jdbc:sqlite:" + this.dbFile.getAbsolutePath(), info);
+                 Statement stmt = third.createStatement()) {
+                long start = System.currentTimeMillis();
+
+                try {
+                    stmt.executeUpdate("INSERT INTO test_table VALUES (4, 'third')");
+                    fail("Writer lock should not have been acquired");
+                }
+                catch (SQLTransientException e) {
+                    assertEquals(Sqlite3.ReturnCodes.SQLITE_BUSY.value(), e.getErrorCode() & 0xff);
+                }
+                assertTrue(System.currentTimeMillis() - start < 1000);
+                assertFalse(third.holdsWriterLock());
+            }
+            first.rollback();
+            first.setAutoCommit(true);
+            assertFalse(first.holdsWriterLock());
+        }
+    }
+
+    private void fillTestTable(int rows) throws SQLException {
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            for (int lpc = 0; lpc < rows; lpc++) {
+                ps.setInt(1, lpc + 10);
+                ps.setString(2, String.format("%0200d", lpc));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private int countTestTable(Connection target) throws SQLException {
+        try (Statement stmt = target.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void testBackup() throws Exception {
+        final List<Integer> remaining = new ArrayList<>();
+        String backupPath = this.testFolder.getRoot().getAbsolutePath() + "/backup.db";
+
+        this.fillTestTable(500);
+        assertTrue(this.sqliteConnection.backupTo(backupPath, 5, 0, new SqliteBackupListener() {
+            @Override
+            public boolean progress(int left, int pageCount) {
+                assertTrue(left <= pageCount);
+                remaining.add(left);
+                return true;
+            }
+        }));
+        assertTrue(remaining.size() > 2);
+        assertEquals(0, (int) remaining.get(remaining.size() - 1));
+
+        try (Connection copy = driver.connect("jdbc:sqlite:" + backupPath, null)) {
+            assertEquals(501, this.countTestTable(copy));
+        }
+    }
+
+    @Test
+    public void testRestoreIntoMemory() throws Exception {
+        this.fillTestTable(100);
+        try (SqliteConnection memory = (SqliteConnection) driver.connect("jdbc:sqlite::memory:", null)) {
+            assertTrue(memory.restoreFrom(this.dbFile.getAbsolutePath(), -1, 0, null));
+            assertEquals(101, this.countTestTable(memory));
+        }
+    }
+
+    @Test
+    public void testRestoreFromMissingFile() throws Exception {
+        File missing = new File(this.testFolder.getRoot(), "does-not-exist.db");
+
+        try (SqliteConnection memory = (SqliteConnection) driver.connect("jdbc:sqlite::memory:", null)) {
+            try (Statement stmt = memory.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE keep (x)");
+            }
+            try {
+                memory.restoreFrom(missing.getAbsolutePath(), -1, 0, null);
+                fail("Restored from a file that does not exist?");
+            }
+            catch (SQLException e) {
+            }
+            assertFalse(missing.exists());
+
+            DatabaseMetaData dbmd = memory.getMetaData();
+
+            try (ResultSet rs = dbmd.getTables(null, null, "keep", null)) {
+                assertTrue(rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void testCancelBackup() throws Exception {
+        this.fillTestTable(500);
+        try (SqliteConnection memory = (SqliteConnection) driver.connect("jdbc:sqlite::memory:", null)) {
+            assertFalse(this.sqliteConnection.backupTo(memory, 1, 0, new SqliteBackupListener() {
+                @Override
+                public boolean progress(int left, int pageCount) {
+                    return false;
+                }
+            }));
+        }
+    }
 }
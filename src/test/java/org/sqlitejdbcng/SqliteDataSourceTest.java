@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SqliteDataSourceTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private SqliteDataSource dataSource;
+
+    @Before
+    public void createDataSource() throws Exception {
+        this.dataSource = new SqliteDataSource(
+                "jdbc:sqlite:" + this.testFolder.newFile("pool.db").getAbsolutePath());
+        this.dataSource.setReaderCount(2);
+        try (Connection conn = this.dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE test_table (id INTEGER PRIMARY KEY, name VARCHAR NOT NULL)");
+                stmt.executeUpdate("INSERT INTO test_table VALUES (1, 'test')");
+            }
+        }
+    }
+
+    @After
+    public void closeDataSource() throws Exception {
+        this.dataSource.close();
+        assertEquals(0, this.dataSource.getOpenConnectionCount());
+    }
+
+    private int countRows(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnlyRoutesToReader() throws Exception {
+        try (Connection writer = this.dataSource.getConnection();
+             Connection reader = this.dataSource.getConnection()) {
+            reader.setReadOnly(true);
+            assertEquals(1, this.countRows(reader));
+            assertEquals(1, this.countRows(writer));
+            assertNotSame(writer.unwrap(SqliteConnection.class), reader.unwrap(SqliteConnection.class));
+
+            try (Statement stmt = writer.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_journal_mode")) {
+                    assertTrue(rs.next());
+                    assertEquals("wal", rs.getString(1).toLowerCase());
+                }
+            }
+            try (Statement stmt = reader.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'denied')");
+                fail("Reader should not be able to write");
+            }
+            catch (SQLException e) {
+                /* expected */
+            }
+        }
+        assertEquals(2, this.dataSource.getOpenConnectionCount());
+    }
+
+    @Test
+    public void testReaderDoesNotWaitForWriter() throws Exception {
+        try (Connection writer = this.dataSource.getConnection();
+             Connection reader = this.dataSource.getConnection()) {
+            writer.setAutoCommit(false);
+            try (Statement stmt = writer.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'uncommitted')");
+            }
+            reader.setReadOnly(true);
+            assertEquals(1, this.countRows(reader));
+            writer.commit();
+            assertEquals(2, this.countRows(reader));
+        }
+    }
+
+    private void queryName(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT name FROM test_table WHERE id = ?")) {
+            ps.setInt(1, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void testStatementCacheStaysWarm() throws Exception {
+        SqliteConnection physical;
+
+        try (Connection reader = this.dataSource.getConnection()) {
+            reader.setReadOnly(true);
+            this.queryName(reader);
+            physical = reader.unwrap(SqliteConnection.class);
+        }
+
+        long hits = physical.getStatementCache().getHits();
+
+        try (Connection reader = this.dataSource.getConnection()) {
+            reader.setReadOnly(true);
+            this.queryName(reader);
+            assertSame(physical, reader.unwrap(SqliteConnection.class));
+        }
+        assertEquals(hits + 1, physical.getStatementCache().getHits());
+    }
+
+    @Test
+    public void testCloseRollsBack() throws Exception {
+        try (Connection conn = this.dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'rolled back')");
+            }
+        }
+        try (Connection conn = this.dataSource.getConnection()) {
+            assertTrue(conn.getAutoCommit());
+            assertEquals(1, this.countRows(conn));
+        }
+    }
+
+    @Test
+    public void testSwitchBetweenWriterAndReader() throws Exception {
+        try (Connection conn = this.dataSource.getConnection()) {
+            SqliteConnection writer = conn.unwrap(SqliteConnection.class);
+
+            conn.setReadOnly(true);
+            assertTrue(conn.isReadOnly());
+            assertNotSame(writer, conn.unwrap(SqliteConnection.class));
+            conn.setReadOnly(false);
+            assertSame(writer, conn.unwrap(SqliteConnection.class));
+        }
+    }
+
+    @Test(expected = SQLTransientConnectionException.class)
+    public void testWriterTimeout() throws Exception {
+        this.dataSource.setLoginTimeout(1);
+        try (Connection first = this.dataSource.getConnection();
+             Connection second = this.dataSource.getConnection()) {
+            first.createStatement().close();
+            second.createStatement().close();
+        }
+    }
+
+    @Test
+    public void testSameThreadWriterFailsFast() throws Exception {
+        try (Connection first = this.dataSource.getConnection();
+             Connection second = this.dataSource.getConnection()) {
+            long start = System.currentTimeMillis();
+
+            first.createStatement().close();
+            try {
+                second.createStatement().close();
+                fail("second handle should not get the writer");
+            }
+            catch (SQLTransientConnectionException e) {
+                assertTrue(System.currentTimeMillis() - start < 1000);
+            }
+        }
+    }
+
+    @Test
+    public void testHandleIsTheConnection() throws Exception {
+        try (Connection conn = this.dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                assertSame(conn, stmt.getConnection());
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM test_table")) {
+                assertSame(conn, ps.getConnection());
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertSame(conn, rs.getStatement().getConnection());
+                }
+            }
+            assertSame(conn, conn.getMetaData().getConnection());
+        }
+    }
+
+    @Test
+    public void testMemoryDatabaseHasNoReaders() throws Exception {
+        try (SqliteDataSource memory = new SqliteDataSource("jdbc:sqlite::memory:")) {
+            try (Connection conn = memory.getConnection()) {
+                conn.setReadOnly(true);
+                try (Statement stmt = conn.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                        assertTrue(rs.next());
+                    }
+                }
+            }
+            assertEquals(1, memory.getOpenConnectionCount());
+        }
+    }
+
+    @Test
+    public void testPooledConnection() throws Exception {
+        final AtomicInteger closedEvents = new AtomicInteger();
+        PooledConnection pooled = this.dataSource.getPooledConnection();
+
+        pooled.addConnectionEventListener(new ConnectionEventListener() {
+            @Override
+            public void connectionClosed(ConnectionEvent event) {
+                closedEvents.incrementAndGet();
+            }
+
+            @Override
+            public void connectionErrorOccurred(ConnectionEvent event) {
+            }
+        });
+        try {
+            Connection first = pooled.getConnection();
+
+            assertEquals(1, this.countRows(first));
+
+            Connection second = pooled.getConnection();
+
+            assertTrue(first.isClosed());
+            assertEquals(0, closedEvents.get());
+            second.close();
+            assertEquals(1, closedEvents.get());
+        }
+        finally {
+            pooled.close();
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.sqlitejdbcng;
 
 import org.junit.Test;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -178,6 +179,38 @@ public class SqliteDatabaseMetadataTest extends SqliteTestHelper {
         }
     }
 
+    @Test
+    public void testGetColumnsAfterReattach() throws Exception {
+        File first = this.testFolder.newFile("first.db");
+        File second = this.testFolder.newFile("second.db");
+
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("ATTACH '" + first.getAbsolutePath() + "' AS aux");
+            stmt.executeUpdate("CREATE TABLE aux.alpha (x INTEGER, y TEXT)");
+            stmt.executeUpdate("DETACH aux");
+            stmt.executeUpdate("ATTACH '" + second.getAbsolutePath() + "' AS aux");
+            stmt.executeUpdate("CREATE TABLE aux.beta (z BLOB, w REAL)");
+            stmt.executeUpdate("DETACH aux");
+            stmt.executeUpdate("ATTACH '" + first.getAbsolutePath() + "' AS aux");
+        }
+
+        try (ResultSet rs = this.dbMetadata.getColumns("aux", null, "%", "%")) {
+            assertTrue(rs.next());
+            assertEquals("alpha", rs.getString("TABLE_NAME"));
+        }
+
+        /* Both files are at the same schema_version. */
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("DETACH aux");
+            stmt.executeUpdate("ATTACH '" + second.getAbsolutePath() + "' AS aux");
+        }
+
+        try (ResultSet rs = this.dbMetadata.getColumns("aux", null, "%", "%")) {
+            assertTrue(rs.next());
+            assertEquals("beta", rs.getString("TABLE_NAME"));
+        }
+    }
+
     private static final String PK_DUMP_HEADER =
             "|TABLE_CAT|TABLE_SCHEM|TABLE_NAME|COLUMN_NAME|KEY_SEQ|PK_NAME|";
 
@@ -204,11 +237,73 @@ public class SqliteDatabaseMetadataTest extends SqliteTestHelper {
             assertEquals(PK_DUMP_HEADER, this.formatResultSetHeader(rsm));
             assertArrayEquals(new String[0], this.formatResultSet(rs));
         }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TEMP TABLE scratch (id INTEGER PRIMARY KEY, name TEXT)");
+            stmt.executeUpdate("CREATE TEMP TABLE nokey (id INTEGER PRIMARY KEY)");
+        }
+
+        try (ResultSet rs = this.dbMetadata.getPrimaryKeys(null, null, "scratch")) {
+            assertArrayEquals(new String[] { "|null|null|scratch|id|1|null|" }, this.formatResultSet(rs));
+        }
+
+        /* The temp table hides the one in main, like it does for a query. */
+        try (ResultSet rs = this.dbMetadata.getPrimaryKeys(null, null, "nokey")) {
+            assertArrayEquals(new String[] { "|null|null|nokey|id|1|null|" }, this.formatResultSet(rs));
+        }
+
+        try (ResultSet rs = this.dbMetadata.getPrimaryKeys("main", null, "nokey")) {
+            assertArrayEquals(new String[0], this.formatResultSet(rs));
+        }
     }
 
     private static final String CLIENT_INFO_HEADER =
             "|NAME|MAX_LEN|DEFAULT_VALUE|DESCRIPTION|";
 
+    @Test
+    public void testGetColumnsLargeSchema() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            for (int lpc = 0; lpc < 600; lpc++) {
+                stmt.executeUpdate("CREATE TABLE wide_" + lpc + " (id INTEGER PRIMARY KEY, " +
+                        "label VARCHAR(32) NOT NULL DEFAULT 'it''s', parent INTEGER REFERENCES wide_0(id))");
+            }
+        }
+
+        try (ResultSet rs = this.dbMetadata.getColumns(null, null, "WIDE_%", null)) {
+            int count = 0;
+
+            while (rs.next()) {
+                count += 1;
+            }
+            assertEquals(1800, count);
+        }
+
+        try (ResultSet rs = this.dbMetadata.getColumns(null, null, "wide_42", "lab_l")) {
+            assertTrue(rs.next());
+            assertEquals("label", rs.getString("COLUMN_NAME"));
+            assertEquals("'it''s'", rs.getString("COLUMN_DEF"));
+            assertEquals("NO", rs.getString("IS_NULLABLE"));
+            assertFalse(rs.next());
+        }
+
+        try (ResultSet rs = this.dbMetadata.getExportedKeys("main", null, "wide_0")) {
+            int count = 0;
+
+            while (rs.next()) {
+                count += 1;
+            }
+            assertEquals(600, count);
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE wide_42 ADD COLUMN extra TEXT");
+        }
+
+        try (ResultSet rs = this.dbMetadata.getColumns(null, null, "wide_42", null)) {
+            assertEquals(4, this.formatResultSet(rs).length);
+        }
+    }
+
     @Test
     public void testGetClientInfo() throws Exception {
         DatabaseMetaData dmd = this.conn.getMetaData();
@@ -292,5 +387,19 @@ public class SqliteDatabaseMetadataTest extends SqliteTestHelper {
             assertEquals(IMPORTED_KEY_HEADER, this.formatResultSetHeader(rsm));
             assertArrayEquals(IMPORTED_KEY_DUMP, this.formatResultSet(rs));
         }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.executeUpdate("CREATE TEMP TABLE playlist(" +
+                    " playlistid INTEGER PRIMARY KEY, " +
+                    " playlisttrack INTEGER REFERENCES playlist(playlistid))");
+        }
+
+        try (ResultSet rs = this.dbMetadata.getImportedKeys(null, null, "playlist")) {
+            assertEquals(1, this.formatResultSet(rs).length);
+        }
+
+        try (ResultSet rs = this.dbMetadata.getImportedKeys(null, null, "track")) {
+            assertEquals(1, this.formatResultSet(rs).length);
+        }
     }
 }
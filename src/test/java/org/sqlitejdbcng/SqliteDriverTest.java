@@ -32,15 +32,20 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sqlitejdbcng.SqliteDriver;
 import org.sqlitejdbcng.SqliteUrl;
+import org.sqlitejdbcng.bridj.Sqlite3;
 
 import java.io.File;
 import java.io.PrintWriter;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.Properties;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SqliteDriverTest {
     @Rule
@@ -125,6 +130,129 @@ public class SqliteDriverTest {
 
     @Test
     public void testProperties() throws Exception {
-        assertArrayEquals(new DriverPropertyInfo[0], driver.getPropertyInfo("jdbc:sqlite::memory:", new Properties()));
+        DriverPropertyInfo[] infos = driver.getPropertyInfo("jdbc:sqlite::memory:?journal_mode=WAL",
+                new Properties());
+        boolean sawJournal = false, sawLimit = false;
+
+        assertEquals(SqliteProperty.values().length + Sqlite3.Limit.values().length, infos.length);
+        for (DriverPropertyInfo info : infos) {
+            assertNotNull(info.description);
+            if (info.name.equals("journal_mode")) {
+                assertEquals("WAL", info.value);
+                assertTrue(Arrays.asList(info.choices).contains("WAL"));
+                sawJournal = true;
+            }
+            if (info.name.equals("limit.variable_number"))
+                sawLimit = true;
+        }
+        assertTrue(sawJournal);
+        assertTrue(sawLimit);
+    }
+
+    @Test
+    public void testUrlProperties() throws Exception {
+        SqliteUrl url = new SqliteUrl("jdbc:sqlite:file:test.db?mode=memory&cache_size=-4096&limit.attached=2");
+        Properties info = new Properties();
+
+        info.setProperty("cache_size", "100");
+        info.setProperty("synchronous", "OFF");
+        assertEquals("file:test.db?mode=memory", url.getPath());
+        assertEquals("-4096", url.merge(info).getProperty("cache_size"));
+        assertEquals("OFF", url.merge(info).getProperty("synchronous"));
+        assertEquals("2", url.getProperties().getProperty("limit.attached"));
+        assertEquals("/tmp/test.db", new SqliteUrl("jdbc:sqlite:/tmp/test.db?busy_timeout=10").getPath());
+    }
+
+    @Test
+    public void testAppliedProperties() throws Exception {
+        File dbFile = testFolder.newFile("tuned.db");
+        Properties info = new Properties();
+
+        info.setProperty("synchronous", "normal");
+        info.setProperty("statement_cache_size", "8");
+        try (Connection conn = driver.connect("jdbc:sqlite:" + dbFile.getAbsolutePath() +
+                "?journal_mode=WAL&cache_size=-2048&page_size=8192&temp_store=MEMORY&limit.attached=1", info)) {
+            SqliteConnection sqliteConn = (SqliteConnection) conn;
+
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_journal_mode")) {
+                    assertTrue(rs.next());
+                    assertEquals("wal", rs.getString(1).toLowerCase());
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_synchronous")) {
+                    assertTrue(rs.next());
+                    assertEquals(1, rs.getInt(1));
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_cache_size")) {
+                    assertTrue(rs.next());
+                    assertEquals(-2048, rs.getInt(1));
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_page_size")) {
+                    assertTrue(rs.next());
+                    assertEquals(8192, rs.getInt(1));
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM pragma_temp_store")) {
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                }
+            }
+            assertEquals(1, Sqlite3.sqlite3_limit(sqliteConn.getHandle(),
+                    Sqlite3.Limit.SQLITE_LIMIT_ATTACHED.value(), -1));
+            assertEquals(8, sqliteConn.getStatementCache().getCapacity());
+        }
+    }
+
+    @Test(expected = SQLNonTransientConnectionException.class)
+    public void testInvalidPropertyValue() throws Exception {
+        driver.connect("jdbc:sqlite::memory:?journal_mode=sideways", null);
+    }
+
+    @Test
+    public void testJournalModeNotApplied() throws Exception {
+        try {
+            driver.connect("jdbc:sqlite::memory:?journal_mode=WAL", null);
+            fail("An in-memory database cannot use WAL");
+        }
+        catch (SQLNonTransientConnectionException e) {
+            assertTrue(e.getMessage().contains("memory"));
+        }
+
+        try (Connection conn = driver.connect("jdbc:sqlite::memory:?journal_mode=off&locking_mode=exclusive",
+                null)) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test(expected = SQLNonTransientConnectionException.class)
+    public void testInvalidPageSize() throws Exception {
+        Properties info = new Properties();
+
+        info.setProperty("page_size", "1000");
+        driver.connect("jdbc:sqlite::memory:", info);
+    }
+
+    @Test(expected = SQLNonTransientConnectionException.class)
+    public void testUnknownLimit() throws Exception {
+        driver.connect("jdbc:sqlite::memory:?limit.bogus=1", null);
+    }
+
+    @Test
+    public void testThreadingMode() throws Exception {
+        try (SqliteConnection conn = (SqliteConnection) driver.connect(
+                "jdbc:sqlite::memory:?threading_mode=multithread", null)) {
+            assertFalse(conn.isMutexEnabled());
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                    assertTrue(rs.next());
+                }
+            }
+        }
+
+        Properties info = new Properties();
+
+        info.setProperty("threading_mode", "SERIALIZED");
+        try (SqliteConnection conn = (SqliteConnection) driver.connect("jdbc:sqlite::memory:", info)) {
+            assertTrue(conn.isMutexEnabled());
+        }
     }
 }
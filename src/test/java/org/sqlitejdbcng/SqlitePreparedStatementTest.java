@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.junit.Test;
+import org.sqlitejdbcng.internal.NativeCallCounter;
+
+import java.sql.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class SqlitePreparedStatementTest extends SqliteTestHelper {
+    @Test
+    public void testPrimitiveParameters() throws Exception {
+        try (PreparedStatement ps = this.conn.prepareStatement(
+                "INSERT INTO prim_table (id, b, bi, f, d) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, 1);
+            ps.setBoolean(2, true);
+            ps.setLong(3, Long.MAX_VALUE);
+            ps.setFloat(4, 1.5f);
+            ps.setDouble(5, -2.25);
+            assertEquals(1, ps.executeUpdate());
+
+            ps.setInt(1, 2);
+            ps.setObject(2, false, Types.BOOLEAN);
+            ps.setObject(3, 10, Types.BIGINT);
+            ps.setObject(4, 2.5f, Types.REAL);
+            ps.setNull(5, Types.DOUBLE);
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM prim_table ORDER BY id")) {
+                assertArrayEquals(new String[] {
+                        "|1|1|9223372036854775807|1.5|-2.25|",
+                        "|2|0|10|2.5|null|",
+                }, this.formatResultSet(rs));
+            }
+        }
+    }
+
+    @Test
+    public void testRebindOnlyChanged() throws Exception {
+        assumeTrue(NativeCallCounter.ENABLED);
+
+        try (PreparedStatement ps = this.conn.prepareStatement(
+                "INSERT INTO type_table (name, height, eyes) VALUES (?, ?, ?)")) {
+            long start;
+
+            ps.setString(1, "a");
+            ps.setDouble(2, 1.0);
+            ps.setInt(3, 2);
+
+            /* reset, three binds and a step */
+            start = NativeCallCounter.get();
+            ps.executeUpdate();
+            assertEquals(5, NativeCallCounter.get() - start);
+
+            ps.setString(1, "b");
+            ps.setDouble(2, 1.0);
+            ps.setInt(3, 2);
+
+            start = NativeCallCounter.get();
+            ps.executeUpdate();
+            assertEquals(3, NativeCallCounter.get() - start);
+
+            ps.clearParameters();
+            ps.setString(1, "c");
+
+            start = NativeCallCounter.get();
+            ps.executeUpdate();
+            assertEquals(5, NativeCallCounter.get() - start);
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT name, height, eyes FROM type_table ORDER BY name")) {
+                assertArrayEquals(new String[] {
+                        "|a|1.0|2|",
+                        "|b|1.0|2|",
+                        "|c|null|null|",
+                }, this.formatResultSet(rs));
+            }
+        }
+    }
+
+    @Test
+    public void testTextAndBlobParameters() throws Exception {
+        String[] names = { "", "plain", "caf\u00e9", "\ud83d\ude00", "longer than the last one" };
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT CAST(? AS BLOB), ?, length(?)")) {
+            for (String name : names) {
+                byte[] bytes = name.getBytes("UTF-8");
+
+                ps.setString(1, name);
+                ps.setBytes(2, bytes);
+                ps.setString(3, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertArrayEquals(bytes, rs.getBytes(1));
+                    assertFalse(rs.wasNull());
+                    assertArrayEquals(bytes, rs.getBytes(2));
+                    assertEquals(name.codePointCount(0, name.length()), rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExecuteBatch() throws Exception {
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            ps.setInt(1, 2);
+            ps.setString(2, "two");
+            ps.addBatch();
+            ps.setInt(1, 3);
+            ps.setString(2, "three");
+            ps.addBatch();
+
+            assertArrayEquals(new int[] { 1, 1 }, ps.executeBatch());
+            assertArrayEquals(new int[0], ps.executeBatch());
+
+            /* The parameters need to be bound again after a batch. */
+            ps.setInt(1, 4);
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM test_table")) {
+                assertArrayEquals(new String[] {
+                        "|1|test|",
+                        "|2|two|",
+                        "|3|three|",
+                        "|4|three|",
+                }, this.formatResultSet(rs));
+            }
+        }
+    }
+
+    @Test
+    public void testExecuteBatchUpdateCounts() throws Exception {
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            for (int lpc = 2; lpc <= 4; lpc++) {
+                ps.setInt(1, lpc);
+                ps.setString(2, "row");
+                ps.addBatch();
+            }
+            assertArrayEquals(new int[] { 1, 1, 1 }, ps.executeBatch());
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("UPDATE test_table SET name = ? WHERE id >= ?")) {
+            ps.setString(1, "big");
+            ps.setInt(2, 3);
+            ps.addBatch();
+            ps.setInt(2, 10);
+            ps.addBatch();
+            ps.setInt(2, 1);
+            ps.addBatch();
+            assertArrayEquals(new int[] { 2, 0, 4 }, ps.executeBatch());
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table WHERE id = ?")) {
+            ps.setInt(1, 1);
+            ps.addBatch();
+            assertArrayEquals(new int[] { Statement.SUCCESS_NO_INFO }, ps.executeBatch());
+        }
+    }
+
+    @Test
+    public void testExecuteBatchFailure() throws Exception {
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            for (int id : new int[] { 2, 3, 1, 4 }) {
+                ps.setInt(1, id);
+                ps.setString(2, "row");
+                ps.addBatch();
+            }
+
+            try {
+                ps.executeBatch();
+                fail("executeBatch should not have succeeded");
+            }
+            catch (BatchUpdateException e) {
+                assertArrayEquals(new int[] { 1, 1 }, e.getUpdateCounts());
+            }
+
+            /* The rows before the failure are committed and the batch is cleared. */
+            assertTrue(this.conn.getAutoCommit());
+            assertArrayEquals(new int[0], ps.executeBatch());
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(3, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testRewriteBatchedInserts() throws Exception {
+        this.sqliteConnection.setRewriteBatchedInserts(true);
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            int[] expected = new int[1000];
+            long start;
+
+            for (int lpc = 0; lpc < expected.length; lpc++) {
+                ps.setInt(1, lpc + 2);
+                ps.setString(2, "row " + lpc);
+                ps.addBatch();
+                expected[lpc] = 1;
+            }
+
+            start = NativeCallCounter.get();
+            assertArrayEquals(expected, ps.executeBatch());
+            if (NativeCallCounter.ENABLED) {
+                /* A bind per value and 1000 = 3 * 256 + 128 + 64 + 32 + 8, so 7 steps. */
+                assertTrue(NativeCallCounter.get() - start < 2 * 1000 + 20);
+            }
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*), sum(id), max(name) FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(1001, rs.getInt(1));
+                assertEquals(501501, rs.getInt(2));
+                assertEquals("test", rs.getString(3));
+            }
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT OR IGNORE INTO test_table VALUES (?, ?)")) {
+            for (int id : new int[] { 1, 2000, 2001, 2002, 2003 }) {
+                ps.setInt(1, id);
+                ps.setString(2, "ignore");
+                ps.addBatch();
+            }
+            assertArrayEquals(new int[] {
+                    Statement.SUCCESS_NO_INFO,
+                    Statement.SUCCESS_NO_INFO,
+                    Statement.SUCCESS_NO_INFO,
+                    Statement.SUCCESS_NO_INFO,
+                    1,
+            }, ps.executeBatch());
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            for (int id : new int[] { 3000, 3001, 3002, 3003, 3004, 1 }) {
+                ps.setInt(1, id);
+                ps.setString(2, "fail");
+                ps.addBatch();
+            }
+
+            try {
+                ps.executeBatch();
+                fail("executeBatch should not have succeeded");
+            }
+            catch (BatchUpdateException e) {
+                /* The first chunk of four rows made it in, the second chunk failed. */
+                assertArrayEquals(new int[] { 1, 1, 1, 1 }, e.getUpdateCounts());
+            }
+        }
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table WHERE name = 'fail'")) {
+                assertTrue(rs.next());
+                assertEquals(4, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testExecuteBatchInTransaction() throws Exception {
+        this.conn.setAutoCommit(false);
+        try (PreparedStatement ps = this.conn.prepareStatement("INSERT INTO test_table VALUES (?, ?)")) {
+            ps.setInt(1, 2);
+            ps.setString(2, "two");
+            ps.addBatch();
+            assertArrayEquals(new int[] { 1 }, ps.executeBatch());
+            assertFalse(this.conn.getAutoCommit());
+        }
+        this.conn.rollback();
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+}
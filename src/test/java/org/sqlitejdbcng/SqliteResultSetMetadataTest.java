@@ -29,6 +29,7 @@ package org.sqlitejdbcng;
 import org.junit.Test;
 import org.sqlitejdbcng.bridj.Sqlite3;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
@@ -80,4 +81,63 @@ public class SqliteResultSetMetadataTest extends SqliteTestHelper {
             }
         }
     }
+
+    @Test
+    public void testExpressionTypeIsTakenFromCurrentRow() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            ResultSetMetaData rsm;
+
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 + 1, 'a' || 'b'")) {
+                assertTrue(rs.next());
+                rsm = rs.getMetaData();
+                assertFalse(rs.next());
+                assertEquals(Types.INTEGER, rsm.getColumnType(1));
+            }
+            assertEquals(Types.VARCHAR, rsm.getColumnType(2));
+            assertEquals("TEXT", rsm.getColumnTypeName(2));
+        }
+    }
+
+    @Test
+    public void testPreparedStatementMetadata() throws Exception {
+        assumeTrue(Sqlite3.SQLITE_ENABLE_COLUMN_METADATA);
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT *, 1 + 1 AS two FROM type_table")) {
+            ResultSetMetaData first;
+
+            try (ResultSet rs = ps.executeQuery()) {
+                first = rs.getMetaData();
+                assertEquals(6, first.getColumnCount());
+                assertEquals(Types.DECIMAL, first.getColumnType(5));
+            }
+
+            /* Columns that were never asked about are resolved at close. */
+            assertEquals("birthdate", first.getColumnName(2));
+            assertEquals(Types.TIMESTAMP, first.getColumnType(2));
+            assertEquals("two", first.getColumnLabel(6));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData rsm = rs.getMetaData();
+
+                assertEquals(10, rsm.getPrecision(5));
+                assertEquals(2, rsm.getScale(5));
+            }
+
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE type_table RENAME COLUMN birthdate TO born");
+                stmt.executeUpdate("INSERT INTO type_table VALUES ('bob', NULL, 1.5, 2, 3.25)");
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+
+                ResultSetMetaData rsm = rs.getMetaData();
+
+                assertEquals("born", rsm.getColumnName(2));
+                assertEquals("born", rsm.getColumnLabel(2));
+                assertEquals(Types.INTEGER, rsm.getColumnType(6));
+            }
+            assertEquals("birthdate", first.getColumnName(2));
+        }
+    }
 }
@@ -27,6 +27,7 @@
 package org.sqlitejdbcng;
 
 import org.junit.Test;
+import org.sqlitejdbcng.internal.NativeCallCounter;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -38,6 +39,7 @@ import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class SqliteResultSetTest extends SqliteTestHelper {
     @Test
@@ -63,6 +65,49 @@ public class SqliteResultSetTest extends SqliteTestHelper {
         }
     }
 
+    @Test
+    public void testFindColumn() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name, id AS Id2 FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.findColumn("id"));
+                assertEquals(2, rs.findColumn("NAME"));
+                assertEquals(3, rs.findColumn("id2"));
+                assertEquals("test", rs.getString("Name"));
+                try {
+                    rs.findColumn("bogus");
+                    fail("found a column that does not exist?");
+                }
+                catch (SQLNonTransientException e) {
+                    assertEquals("Result set does not contain label -- bogus", e.getMessage());
+                }
+            }
+        }
+
+        try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("test", rs.getString("NAME"));
+            }
+
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE test_table RENAME COLUMN name TO title");
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("test", rs.getString("title"));
+                try {
+                    rs.findColumn("name");
+                    fail("found a column that was renamed?");
+                }
+                catch (SQLNonTransientException e) {
+
+                }
+            }
+        }
+    }
+
     @Test
     public void testBadIndex() throws Exception {
         try (Statement stmt = this.conn.createStatement()) {
@@ -106,6 +151,67 @@ public class SqliteResultSetTest extends SqliteTestHelper {
         }
     }
 
+    @Test
+    public void testEmptyBlob() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT x'', null")) {
+                assertTrue(rs.next());
+                assertArrayEquals(new byte[0], rs.getBytes(1));
+                assertFalse(rs.wasNull());
+                assertEquals(0, rs.getBlob(1).length());
+                assertFalse(rs.wasNull());
+                assertNull(rs.getBytes(2));
+                assertTrue(rs.wasNull());
+                assertNull(rs.getBlob(2));
+                assertTrue(rs.wasNull());
+            }
+        }
+    }
+
+    @Test
+    public void testNativeCalls() throws Exception {
+        assumeTrue(NativeCallCounter.ENABLED);
+
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT 1, 0, null, 'abc'")) {
+                long start;
+
+                assertTrue(rs.next());
+
+                start = NativeCallCounter.get();
+                assertEquals(1, rs.getInt(1));
+                assertEquals(1, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertFalse(rs.wasNull());
+                assertEquals(0, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertEquals(0, rs.getLong(2));
+                assertFalse(rs.wasNull());
+                assertEquals(2, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertEquals(0, rs.getLong(3));
+                assertTrue(rs.wasNull());
+                assertEquals(2, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertEquals("abc", rs.getString(4));
+                assertFalse(rs.wasNull());
+                assertEquals(1, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertEquals("abc", rs.getObject(4));
+                assertEquals(2, NativeCallCounter.get() - start);
+
+                start = NativeCallCounter.get();
+                assertFalse(rs.next());
+                assertEquals(1, NativeCallCounter.get() - start);
+            }
+        }
+    }
+
     @Test
     public void testGetDate() throws Exception {
         long testDate = 1376611200L * 1000L;
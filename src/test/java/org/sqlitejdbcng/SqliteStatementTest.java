@@ -154,6 +154,7 @@ public class SqliteStatementTest extends SqliteTestHelper {
                 if (endTime - startTime < 1000) {
                     fail("Timeout expired early -- " + (endTime - startTime));
                 }
+                assertTrue("Timeout expired late -- " + (endTime - startTime), endTime - startTime < 5000);
             }
 
             try {
@@ -169,6 +170,83 @@ public class SqliteStatementTest extends SqliteTestHelper {
         }
     }
 
+    @Test
+    public void testQueryTimeoutInterrupt() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.setQueryTimeout(1);
+
+            long startTime = System.currentTimeMillis();
+
+            try (ResultSet rs = stmt.executeQuery("WITH RECURSIVE c(x) AS " +
+                    "(SELECT 1 UNION ALL SELECT x + 1 FROM c) SELECT count(*) FROM c")) {
+                rs.next();
+                fail("Expected a timeout exception");
+            }
+            catch (SQLTimeoutException e) {
+                long elapsed = System.currentTimeMillis() - startTime;
+
+                assertTrue("Timeout expired early -- " + elapsed, elapsed >= 1000);
+                assertTrue("Timeout expired late -- " + elapsed, elapsed < 5000);
+            }
+
+            /* A query that finishes in time is not affected by the earlier interrupt. */
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testQueryTimeoutCoversAllRows() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            stmt.setQueryTimeout(1);
+
+            long startTime = System.currentTimeMillis();
+
+            /* Each row comes back quickly, but the rows never end. */
+            try (ResultSet rs = stmt.executeQuery("WITH RECURSIVE c(x) AS " +
+                    "(SELECT 1 UNION ALL SELECT x + 1 FROM c) SELECT x FROM c")) {
+                while (rs.next()) {
+                    if (System.currentTimeMillis() - startTime > 10000)
+                        fail("The timeout was restarted for each row");
+                }
+                fail("Expected a timeout exception");
+            }
+            catch (SQLTimeoutException e) {
+                long elapsed = System.currentTimeMillis() - startTime;
+
+                assertTrue("Timeout expired early -- " + elapsed, elapsed >= 1000);
+                assertTrue("Timeout expired late -- " + elapsed, elapsed < 5000);
+            }
+        }
+    }
+
+    @Test
+    public void testQueryTimeoutLowered() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            /* Leaves a timer for the longer deadline behind in the watchdog. */
+            stmt.setQueryTimeout(20);
+            stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'two')");
+
+            stmt.setQueryTimeout(1);
+
+            long startTime = System.currentTimeMillis();
+
+            try {
+                stmt.executeUpdate("WITH RECURSIVE c(x) AS (SELECT 3 UNION ALL SELECT x + 1 FROM c) " +
+                        "INSERT INTO test_table SELECT x, 'runaway' FROM c");
+                fail("Expected a timeout exception");
+            }
+            catch (SQLTimeoutException e) {
+                long elapsed = System.currentTimeMillis() - startTime;
+
+                assertTrue("Timeout expired early -- " + elapsed, elapsed >= 1000);
+                assertTrue("Timeout expired late -- " + elapsed, elapsed < 5000);
+            }
+        }
+    }
+
     @Test
     public void testMaxRows() throws Exception {
         try (Statement stmt = this.conn.createStatement()) {
@@ -300,6 +378,108 @@ public class SqliteStatementTest extends SqliteTestHelper {
         }
     }
 
+    @Test
+    public void testExecuteScript() throws Exception {
+        SqliteStatement stmt = (SqliteStatement)this.conn.createStatement();
+
+        try {
+            String script = "CREATE TABLE script_tab (id INTEGER PRIMARY KEY, name VARCHAR);\n" +
+                    "-- a comment\n" +
+                    "INSERT INTO script_tab VALUES (1, 'caf\u00e9');\n" +
+                    "INSERT INTO script_tab VALUES (2, 'two'), (3, 'three');\n" +
+                    "SELECT * FROM script_tab;\n" +
+                    "UPDATE script_tab SET name = 'x' WHERE id > 1;\n" +
+                    "   ;  \n";
+
+            assertArrayEquals(new int[] { 0, 1, 2, Statement.SUCCESS_NO_INFO, 2 },
+                    stmt.executeScript(script, false));
+
+            assertEquals(0, stmt.getUpdateCount());
+            assertFalse(stmt.getMoreResults());
+            assertEquals(1, stmt.getUpdateCount());
+            assertFalse(stmt.getMoreResults());
+            assertEquals(2, stmt.getUpdateCount());
+            assertFalse(stmt.getMoreResults());
+            assertEquals(Statement.SUCCESS_NO_INFO, stmt.getUpdateCount());
+            assertFalse(stmt.getMoreResults());
+            assertEquals(2, stmt.getUpdateCount());
+            assertFalse(stmt.getMoreResults());
+            assertEquals(-1, stmt.getUpdateCount());
+
+            try (ResultSet rs = stmt.executeQuery("SELECT length(name) FROM script_tab WHERE id = 1")) {
+                assertTrue(rs.next());
+                assertEquals(4, rs.getInt(1));
+            }
+
+            try {
+                stmt.executeScript("INSERT INTO script_tab VALUES (4, 'four'); " +
+                        "INSERT INTO script_tab VALUES (1, 'dup'); " +
+                        "INSERT INTO script_tab VALUES (5, 'five');", true);
+                fail("script with a constraint violation should have failed");
+            }
+            catch (BatchUpdateException e) {
+                assertArrayEquals(new int[0], e.getUpdateCounts());
+            }
+            assertTrue(this.conn.getAutoCommit());
+
+            try {
+                stmt.executeScript("INSERT INTO script_tab VALUES (4, 'four'); THIS IS BAD SQL;", false);
+                fail("script with a syntax error should have failed");
+            }
+            catch (BatchUpdateException e) {
+                assertArrayEquals(new int[] { 1 }, e.getUpdateCounts());
+            }
+
+            this.conn.setAutoCommit(false);
+            try {
+                stmt.executeScript("INSERT INTO script_tab VALUES (5, 'five'); " +
+                        "INSERT INTO script_tab VALUES (1, 'dup');", true);
+                fail("script with a constraint violation should have failed");
+            }
+            catch (BatchUpdateException e) {
+            }
+            assertFalse(this.conn.getAutoCommit());
+
+            /* The savepoint is gone, so the cleanup fails too, but the script error is the one reported. */
+            try {
+                stmt.executeScript("RELEASE sqlitejdbcng_script; " +
+                        "INSERT INTO script_tab VALUES (1, 'dup');", true);
+                fail("script with a constraint violation should have failed");
+            }
+            catch (BatchUpdateException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("UNIQUE"));
+                assertNotNull(e.getNextException());
+            }
+            assertFalse(this.conn.getAutoCommit());
+            this.conn.commit();
+            this.conn.setAutoCommit(true);
+
+            try (ResultSet rs = stmt.executeQuery("SELECT group_concat(id) FROM script_tab")) {
+                assertTrue(rs.next());
+                assertEquals("1,2,3,4", rs.getString(1));
+            }
+        }
+        finally {
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void testGetMoreResults() throws Exception {
+        try (Statement stmt = this.conn.createStatement()) {
+            assertEquals(1, stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'testing')"));
+            assertFalse(stmt.getMoreResults());
+            assertEquals(-1, stmt.getUpdateCount());
+
+            ResultSet rs = stmt.executeQuery("SELECT * FROM test_table");
+
+            assertFalse(stmt.getMoreResults());
+            assertTrue(rs.isClosed());
+            assertNull(stmt.getResultSet());
+            assertEquals(-1, stmt.getUpdateCount());
+        }
+    }
+
     private static final String[] ESCAPE_RESULTS = {
             "||",
             "|1|",
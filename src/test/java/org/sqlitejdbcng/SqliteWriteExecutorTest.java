@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng;
+
+import org.junit.Test;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SqliteWriteExecutorTest extends SqliteTestHelper {
+    private int countRows() throws SQLException {
+        try (Statement stmt = this.conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM test_table")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private SqliteWriteExecutor.Unit<Void> blockOn(final CountDownLatch latch) {
+        return new SqliteWriteExecutor.Unit<Void>() {
+            @Override
+            public Void run(SqliteConnection conn) throws SQLException {
+                try {
+                    latch.await();
+                }
+                catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        try (SqliteWriteExecutor executor = new SqliteWriteExecutor(this.sqliteConnection)) {
+            Future<Void> blocker = executor.submit(this.blockOn(latch));
+
+            for (int lpc = 0; lpc < 100; lpc++) {
+                futures.add(executor.submitUpdate("INSERT INTO test_table VALUES (?, ?)", lpc + 10, "row" + lpc));
+            }
+            assertFalse(futures.get(0).isDone());
+            latch.countDown();
+            blocker.get(10, TimeUnit.SECONDS);
+            for (Future<Integer> future : futures) {
+                assertEquals(1, (int) future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(101, executor.getUnitCount());
+            assertTrue(executor.getGroupCount() <= 3);
+        }
+        assertEquals(101, this.countRows());
+    }
+
+    @Test
+    public void testCancelledUnitIsSkipped() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        try (SqliteWriteExecutor executor = new SqliteWriteExecutor(this.sqliteConnection)) {
+            Future<Void> blocker = executor.submit(new SqliteWriteExecutor.Unit<Void>() {
+                @Override
+                public Void run(SqliteConnection conn) throws SQLException {
+                    started.countDown();
+                    return SqliteWriteExecutorTest.this.blockOn(latch).run(conn);
+                }
+            });
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<Integer> cancelled = executor.submitUpdate("INSERT INTO test_table VALUES (?, ?)", 10, "cancelled");
+
+            /* A running unit cannot be cancelled, a queued one can. */
+            assertFalse(blocker.cancel(false));
+            assertTrue(cancelled.cancel(false));
+            latch.countDown();
+            blocker.get(10, TimeUnit.SECONDS);
+            assertEquals(1, (int) executor.submitUpdate(
+                    "INSERT INTO test_table VALUES (?, ?)", 11, "after").get(10, TimeUnit.SECONDS));
+            assertEquals(2, executor.getUnitCount());
+        }
+        assertEquals(2, this.countRows());
+    }
+
+    @Test
+    public void testWriterSurvivesSourceFailure() throws Exception {
+        final SqliteConnection conn = this.sqliteConnection;
+
+        try (SqliteWriteExecutor executor = new SqliteWriteExecutor(new SqliteConnectionHandle.Source() {
+            private boolean failed;
+
+            @Override
+            public SqliteConnection acquire(boolean readOnly) throws SQLException {
+                if (!this.failed) {
+                    this.failed = true;
+                    throw new IllegalStateException("no writer");
+                }
+                return conn;
+            }
+
+            @Override
+            public void release(SqliteConnection conn) throws SQLException {
+            }
+
+            @Override
+            public void handleClosed(SqliteConnectionHandle handle) {
+            }
+        })) {
+            try {
+                executor.submitUpdate("INSERT INTO test_table VALUES (?, ?)", 10, "lost").get(10, TimeUnit.SECONDS);
+                fail("the first group should fail");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(1, (int) executor.submitUpdate(
+                    "INSERT INTO test_table VALUES (?, ?)", 11, "kept").get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, this.countRows());
+    }
+
+    @Test
+    public void testFailedUnitIsIsolated() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try (SqliteWriteExecutor executor = new SqliteWriteExecutor(this.sqliteConnection)) {
+            executor.submit(this.blockOn(latch));
+
+            Future<Integer> before = executor.submitUpdate("INSERT INTO test_table VALUES (2, 'before')");
+            Future<Integer> duplicate = executor.submitUpdate("INSERT INTO test_table VALUES (1, 'duplicate')");
+            Future<Integer> after = executor.submitUpdate("INSERT INTO test_table VALUES (3, 'after')");
+
+            latch.countDown();
+            assertEquals(1, (int) before.get(10, TimeUnit.SECONDS));
+            assertEquals(1, (int) after.get(10, TimeUnit.SECONDS));
+            try {
+                duplicate.get(10, TimeUnit.SECONDS);
+                fail("Duplicate insert should have failed");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLIntegrityConstraintViolationException);
+            }
+        }
+        assertEquals(3, this.countRows());
+        assertTrue(this.conn.getAutoCommit());
+    }
+
+    @Test
+    public void testCloseDrainsQueue() throws Exception {
+        SqliteWriteExecutor executor = new SqliteWriteExecutor(this.sqliteConnection);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int lpc = 0; lpc < 10; lpc++) {
+            futures.add(executor.submitUpdate("INSERT INTO test_table VALUES (?, 'drained')", lpc + 10));
+        }
+        executor.close();
+        for (Future<Integer> future : futures) {
+            assertTrue(future.isDone());
+            assertEquals(1, (int) future.get());
+        }
+        try {
+            executor.submitUpdate("INSERT INTO test_table VALUES (100, 'late')");
+            fail("Closed executor should not accept units");
+        }
+        catch (SQLNonTransientException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testDataSourceExecutor() throws Exception {
+        try (SqliteDataSource dataSource = new SqliteDataSource("jdbc:sqlite:" + this.dbFile.getAbsolutePath())) {
+            SqliteWriteExecutor executor = dataSource.getWriteExecutor();
+
+            assertSame(executor, dataSource.getWriteExecutor());
+            assertEquals(1, (int) executor.submitUpdate("INSERT INTO test_table VALUES (2, 'pooled')")
+                    .get(10, TimeUnit.SECONDS));
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setReadOnly(true);
+                try (Statement stmt = conn.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT name FROM test_table WHERE id = 2")) {
+                        assertTrue(rs.next());
+                        assertEquals("pooled", rs.getString(1));
+                    }
+                }
+            }
+        }
+    }
+}
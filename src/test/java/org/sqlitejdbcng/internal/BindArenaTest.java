@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.bridj.Pointer;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BindArenaTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testEncode() throws Exception {
+        String[] strings = {
+                "",
+                "abc",
+                "café",
+                "€100",
+                "😀 smile",
+                "x\ud800y",
+                "\udc00",
+        };
+        BindArena arena = new BindArena(1);
+
+        try {
+            for (String str : strings) {
+                byte[] expected = str.getBytes(UTF8);
+                Pointer<Byte> ptr = arena.putString(0, str);
+
+                assertEquals(str, expected.length, arena.length(0));
+                assertArrayEquals(str, expected, ptr.getBytes(arena.length(0)));
+                assertEquals(str, expected.length, Math.min(expected.length, BindArena.utf8Length(str)));
+            }
+        }
+        finally {
+            arena.release();
+        }
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        BindArena arena = new BindArena(2);
+
+        try {
+            Pointer<Byte> first = arena.putString(0, "first");
+            Pointer<Byte> bytes = arena.putBytes(1, new byte[] { 1, 2, 3 });
+
+            assertSame(first, arena.putString(0, "second"));
+            assertSame(bytes, arena.putBytes(1, new byte[] { 4, 5 }));
+            assertEquals(2, arena.length(1));
+            assertArrayEquals(new byte[] { 4, 5 }, bytes.getBytes(2));
+
+            StringBuilder sb = new StringBuilder();
+
+            for (int lpc = 0; lpc < 100; lpc++) {
+                sb.append("grow");
+            }
+
+            Pointer<Byte> grown = arena.putString(0, sb.toString());
+
+            assertEquals(400, arena.length(0));
+            assertEquals(sb.toString(), new String(grown.getBytes(400), UTF8));
+        }
+        finally {
+            arena.release();
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.Types;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class ColumnDataTest extends SqliteTestHelper {
     private ColumnData build(String fullType) {
@@ -80,4 +81,22 @@ public class ColumnDataTest extends SqliteTestHelper {
         assertEquals("BLAH", cd.type);
         assertEquals(Types.VARCHAR, cd.sqlType);
     }
+
+    @Test
+    public void testTypeCache() {
+        ColumnTypeCache cache = new ColumnTypeCache(this.sqliteConnection.getHandle());
+        ColumnType ct = cache.get("decimal(10, 2)");
+
+        assertEquals("DECIMAL", ct.type);
+        assertEquals(Types.DECIMAL, ct.sqlType);
+        assertEquals(10, ct.precision);
+        assertEquals(2, ct.scale);
+        assertSame(ct, cache.get("decimal(10, 2)"));
+        assertEquals(1, cache.size());
+
+        ct = cache.get("TEXT");
+        assertEquals(Types.VARCHAR, ct.sqlType);
+        assertEquals(this.build("TEXT").precision, ct.precision);
+        assertEquals(2, cache.size());
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnLabelMapTest {
+    @Test
+    public void testGet() throws Exception {
+        ColumnLabelMap map = new ColumnLabelMap(new String[] { "id", "Name", "NAME", "count(*)" });
+
+        assertEquals(4, map.size());
+        assertEquals(1, map.get("id"));
+        assertEquals(1, map.get("ID"));
+        assertEquals(2, map.get("name"));
+        assertEquals(2, map.get("NAME"));
+        assertEquals(4, map.get("COUNT(*)"));
+        assertEquals(0, map.get("missing"));
+        assertEquals(0, map.get(""));
+    }
+
+    @Test
+    public void testManyColumns() throws Exception {
+        String[] labels = new String[300];
+
+        for (int lpc = 0; lpc < labels.length; lpc++) {
+            labels[lpc] = "col_" + lpc;
+        }
+
+        ColumnLabelMap map = new ColumnLabelMap(labels);
+
+        for (int lpc = 0; lpc < labels.length; lpc++) {
+            assertEquals(lpc + 1, map.get("COL_" + lpc));
+        }
+        assertEquals(0, map.get("col_300"));
+    }
+}
@@ -35,6 +35,9 @@ import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.sqlitejdbcng.internal.EscapeParser.mayContainEscapes;
 import static org.sqlitejdbcng.internal.EscapeParser.split;
 import static org.sqlitejdbcng.internal.EscapeParser.transform;
 
@@ -59,6 +62,14 @@ public class EscapeParserTest {
         assertEquals("limit limit 100", transform("{limit {limit 100}}", this.handlerMap));
     }
 
+    @Test
+    public void testMayContainEscapes() throws Exception {
+        assertFalse(mayContainEscapes("SELECT * FROM test_tables"));
+        assertFalse(mayContainEscapes(""));
+        assertTrue(mayContainEscapes("SELECT * FROM test_tables {limit 10}"));
+        assertTrue(mayContainEscapes("foo bar}"));
+    }
+
     @Test(expected = SQLSyntaxErrorException.class)
     public void testUnterminatedEscape() throws Exception {
         transform("{foo bar", this.handlerMap);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class InsertRewriterTest {
+    @Test
+    public void testRewrite() throws Exception {
+        InsertRewriter rewriter = InsertRewriter.forSql("INSERT INTO test_table VALUES (?, ?)", 2);
+
+        assertNotNull(rewriter);
+        assertEquals("INSERT INTO test_table VALUES (?, ?)", rewriter.getSql(1));
+        assertEquals("INSERT INTO test_table VALUES (?, ?),(?, ?),(?, ?)", rewriter.getSql(3));
+
+        rewriter = InsertRewriter.forSql(
+                "insert or ignore into main.\"my table\" (a, [b c]) values(?,?);", 2);
+        assertNotNull(rewriter);
+        assertEquals("insert or ignore into main.\"my table\" (a, [b c]) values(?,?),(?,?)", rewriter.getSql(2));
+
+        assertNotNull(InsertRewriter.forSql("REPLACE INTO t VALUES (?)", 1));
+    }
+
+    @Test
+    public void testNoRewrite() throws Exception {
+        String[] statements = {
+                "UPDATE t SET a = ?",
+                "INSERT INTO t VALUES (?, 1)",
+                "INSERT INTO t VALUES (?), (?)",
+                "INSERT INTO t VALUES (?1, ?2)",
+                "INSERT INTO t VALUES (:a, :b)",
+                "INSERT INTO t SELECT a FROM u UNION VALUES (?)",
+                "INSERT INTO t VALUES (?) ON CONFLICT DO NOTHING",
+                "INSERT INTO t VALUES (?) RETURNING a",
+                "WITH x AS (SELECT 1) INSERT INTO t VALUES (?)",
+                "INSERT INTO t DEFAULT VALUES",
+        };
+
+        for (String sql : statements) {
+            assertNull(sql, InsertRewriter.forSql(sql, 2));
+        }
+        assertNull(InsertRewriter.forSql("INSERT INTO t VALUES (?)", 2));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.junit.Test;
+
+import java.sql.Types;
+
+import static org.junit.Assert.*;
+
+public class ParameterBatchTest {
+    @Test
+    public void testAddAndLoad() throws Exception {
+        ParameterSlots slots = new ParameterSlots(3);
+        ParameterBatch batch = new ParameterBatch(3);
+
+        for (int lpc = 0; lpc < 100; lpc++) {
+            slots.setLong(0, Types.BIGINT, lpc);
+            if (lpc % 2 == 0)
+                slots.setDouble(1, lpc / 2.0);
+            else
+                slots.setNull(1);
+            slots.setObject(2, Types.VARCHAR, "row " + lpc);
+            batch.add(slots);
+        }
+        assertEquals(100, batch.size());
+
+        ParameterSlots current = new ParameterSlots(3);
+
+        for (int lpc = 0; lpc < 100; lpc++) {
+            batch.load(lpc, current);
+            assertEquals(Types.BIGINT, current.types[0]);
+            assertEquals(lpc, current.longs[0]);
+            if (lpc % 2 == 0) {
+                assertEquals(Types.DOUBLE, current.types[1]);
+                assertEquals(lpc / 2.0, current.doubles[1], 0.0);
+            }
+            else {
+                assertEquals(Types.NULL, current.types[1]);
+            }
+            assertEquals("row " + lpc, current.objects[2]);
+            current.markClean();
+        }
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void testLoadOnlyDirtiesChanges() throws Exception {
+        ParameterSlots slots = new ParameterSlots(2);
+        ParameterBatch batch = new ParameterBatch(2);
+
+        slots.setLong(0, Types.INTEGER, 1);
+        slots.setObject(1, Types.VARCHAR, "same");
+        batch.add(slots);
+        slots.setLong(0, Types.INTEGER, 2);
+        slots.setObject(1, Types.VARCHAR, new String("same"));
+        batch.add(slots);
+
+        ParameterSlots current = new ParameterSlots(2);
+
+        batch.load(0, current);
+        assertTrue(current.isDirty(0));
+        assertTrue(current.isDirty(1));
+        current.markClean();
+
+        batch.load(1, current);
+        assertTrue(current.isDirty(0));
+        assertFalse(current.isDirty(1));
+    }
+}
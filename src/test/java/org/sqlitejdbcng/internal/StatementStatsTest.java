@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementStatsTest {
+    @Test
+    public void testNormalize() throws Exception {
+        assertEquals("SELECT * FROM t WHERE a = ? AND b = ?",
+                StatementStats.normalize("SELECT *\n  FROM t WHERE a = 'it''s' AND b = 12"));
+        assertEquals("SELECT t1.a, \"col 2\", [x 1] FROM t1 WHERE c IN (?, ?, ?)",
+                StatementStats.normalize("SELECT t1.a, \"col 2\", [x 1] FROM t1 WHERE c IN (1.5, -- note\n 1e-3, 0x1F)"));
+        assertEquals("INSERT INTO blobs VALUES (?, ?)",
+                StatementStats.normalize("/* load */ INSERT INTO blobs VALUES (X'00ff', ?)"));
+        assertEquals("SELECT ?", StatementStats.normalize("  SELECT 1  "));
+    }
+}
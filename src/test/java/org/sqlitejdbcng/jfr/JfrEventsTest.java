@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013, Timothy Stack
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHORS AND CONTRIBUTORS ''AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sqlitejdbcng.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.sqlitejdbcng.SqliteTestHelper;
+import org.sqlitejdbcng.internal.DriverEvents;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JfrEventsTest extends SqliteTestHelper {
+    @Test
+    public void testEvents() throws Exception {
+        File output = this.testFolder.newFile("events.jfr");
+
+        assertTrue(DriverEvents.isAvailable());
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] { "Prepare", "Execute", "ResultSet", "Transaction", "BusyWait" }) {
+                recording.enable("org.sqlitejdbcng." + name).withoutThreshold();
+            }
+            recording.start();
+
+            this.conn.setAutoCommit(false);
+            try (Statement stmt = this.conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO test_table VALUES (2, 'second')");
+            }
+            this.conn.commit();
+            try (PreparedStatement ps = this.conn.prepareStatement("SELECT * FROM test_table")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        /* read all of the rows */
+                    }
+                }
+            }
+
+            recording.stop();
+            recording.dump(output.toPath());
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(output.toPath())) {
+            events.put(event.getEventType().getName() + ":" + event.getString("sql"), event);
+        }
+
+        assertTrue(events.containsKey("org.sqlitejdbcng.Prepare:SELECT * FROM test_table"));
+        assertEquals(1L, events.get("org.sqlitejdbcng.Execute:INSERT INTO test_table VALUES (2, 'second')")
+                .getLong("rows"));
+        assertTrue(events.containsKey("org.sqlitejdbcng.Transaction:COMMIT"));
+
+        RecordedEvent rsEvent = events.get("org.sqlitejdbcng.ResultSet:SELECT * FROM test_table");
+
+        assertEquals(2L, rsEvent.getLong("rows"));
+        assertEquals(2 * 8 + "test".length() + "second".length(), rsEvent.getLong("bytes"));
+    }
+}